@@ -0,0 +1,88 @@
+#!/bin/bash
+
+# Concurrent transfer benchmark for the load balancer
+# Usage: ./scripts/benchmark-concurrency.sh [label]
+#
+# Starts increasing numbers of simultaneous, rate-limited downloads through the load balancer
+# and reports how many complete within a tolerance of the ideal transfer time. Slow clients hold
+# their request thread for the whole transfer, so this measures how many concurrent transfers
+# the load balancer's threading mode can sustain.
+#
+# To compare threading modes, run it once per mode against the same storage nodes:
+#   LB_VIRTUAL_THREADS=false java -jar load-balancer.jar   ->  ./scripts/benchmark-concurrency.sh platform
+#   LB_VIRTUAL_THREADS=true  java -jar load-balancer.jar   ->  ./scripts/benchmark-concurrency.sh virtual
+# Virtual threads need Java 21. Give the storage nodes enough request threads for the highest
+# level (e.g. SERVER_TOMCAT_THREADS_MAX) so they are not the bottleneck.
+
+set -e
+
+LABEL="${1:-run}"
+LOAD_BALANCER_URL="${LOAD_BALANCER_URL:-http://localhost:8080}"
+USER_ID="${USER_ID:-1}"
+FILE_SIZE_KB="${FILE_SIZE_KB:-512}"
+RATE_LIMIT_KB="${RATE_LIMIT_KB:-128}"
+LEVELS="${LEVELS:-50 100 200 400 800 1600}"
+# A level is sustained when every transfer succeeds within this multiple of the ideal time
+TOLERANCE="${TOLERANCE:-1.5}"
+
+WORK_DIR="$(mktemp -d)"
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+# Colors for output
+GREEN='\033[0;32m'
+BLUE='\033[0;34m'
+RED='\033[0;31m'
+NC='\033[0m' # No Color
+
+log() {
+    echo -e "${BLUE}[INFO]${NC} $1"
+}
+
+error() {
+    echo -e "${RED}[ERROR]${NC} $1"
+    exit 1
+}
+
+log "Uploading ${FILE_SIZE_KB}KB benchmark file..."
+head -c "$((FILE_SIZE_KB * 1024))" /dev/urandom > "$WORK_DIR/payload.bin"
+UPLOAD_RESPONSE=$(curl -s -X POST \
+    -H "X-User-ID: $USER_ID" \
+    -F "file=@$WORK_DIR/payload.bin" \
+    "$LOAD_BALANCER_URL/api/v1/files/upload")
+FILE_ID=$(echo "$UPLOAD_RESPONSE" | grep -o '"fileId":[0-9]*' | grep -o '[0-9]*')
+[[ -n "$FILE_ID" ]] || error "Upload failed: $UPLOAD_RESPONSE"
+
+IDEAL_SECONDS=$(awk -v s="$FILE_SIZE_KB" -v r="$RATE_LIMIT_KB" 'BEGIN { printf "%.2f", s / r }')
+log "File $FILE_ID, client rate ${RATE_LIMIT_KB}KB/s, ideal transfer time ${IDEAL_SECONDS}s"
+
+printf "\n%-10s %-12s %-10s %-10s %-12s %-12s %-12s\n" \
+    "mode" "concurrency" "ok" "failed" "avg_s" "max_s" "wall_s"
+
+SUSTAINED=0
+for level in $LEVELS; do
+    start=$(date +%s.%N)
+    seq 1 "$level" | xargs -P "$level" -I{} curl -s -o /dev/null \
+        --limit-rate "${RATE_LIMIT_KB}k" \
+        -w "%{http_code} %{time_total}\n" \
+        -H "X-User-ID: $USER_ID" \
+        "$LOAD_BALANCER_URL/api/v1/files/$FILE_ID" > "$WORK_DIR/results.txt" || true
+    end=$(date +%s.%N)
+
+    read -r ok failed avg max <<< "$(awk '
+        $1 == 200 { ok++; sum += $2; if ($2 > max) max = $2; next }
+        { failed++ }
+        END { printf "%d %d %.2f %.2f", ok, failed, (ok ? sum / ok : 0), max }
+    ' "$WORK_DIR/results.txt")"
+    wall=$(awk -v a="$start" -v b="$end" 'BEGIN { printf "%.2f", b - a }')
+
+    printf "%-10s %-12s %-10s %-10s %-12s %-12s %-12s\n" \
+        "$LABEL" "$level" "$ok" "$failed" "$avg" "$max" "$wall"
+
+    if [[ "$failed" -eq 0 ]] && awk -v m="$max" -v i="$IDEAL_SECONDS" -v t="$TOLERANCE" \
+        'BEGIN { exit !(m <= i * t) }'; then
+        SUSTAINED=$level
+    fi
+done
+
+echo
+echo -e "${GREEN}[RESULT]${NC} $LABEL: max sustained concurrent transfers = $SUSTAINED"
@@ -0,0 +1,178 @@
+package com.loadbalancer.strategy;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.model.enums.NodeStatus;
+import com.loadbalancer.service.CapacityLedger;
+import com.loadbalancer.service.NodeRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lookup cost and key distribution of the consistent-hash ring. Run with {@code mvn -Pbenchmark
+ * test-compile exec:exec}; before the JMH runs, the distribution skew of each configuration and
+ * the share of keys moved by adding a node are printed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashRingBenchmark {
+  private static final int KEY_COUNT = 1 << 16;
+  private static final int SKEW_SAMPLES = 1_000_000;
+  private static final long GIGABYTE = 1024L * 1024 * 1024;
+
+  @Param({"4", "16", "64"})
+  private int nodeCount;
+
+  @Param({"40", "160"})
+  private int virtualNodes;
+
+  private HashRing ring;
+  private ConsistentHashStrategy strategy;
+  private List<StorageNode> snapshot;
+  private List<StorageNode> subset;
+  private String[] keys;
+  private long[] hashes;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    List<StorageNode> nodes = nodes(nodeCount);
+    ring = HashRing.build(nodes, virtualNodes, GIGABYTE);
+
+    LoadBalancerConfig config = new LoadBalancerConfig();
+    config.getConsistentHash().setVirtualNodes(virtualNodes);
+    config.getConsistentHash().setReferenceCapacity(GIGABYTE);
+    NodeRegistry nodeRegistry = new NodeRegistry();
+    nodeRegistry.replaceAll(nodes);
+    strategy = new ConsistentHashStrategy(nodeRegistry, new CapacityLedger(), config);
+    snapshot = nodeRegistry.getActiveNodes();
+    // Every other node, as a new list, like a placement pool filtered from the snapshot
+    subset = new ArrayList<>();
+    for (int i = 0; i < snapshot.size(); i += 2) {
+      subset.add(snapshot.get(i));
+    }
+    keys = new String[KEY_COUNT];
+    hashes = new long[KEY_COUNT];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = "user-" + (i % 97) + "/file-" + i + ".bin";
+      hashes[i] = HashRing.hash(keys[i]);
+    }
+  }
+
+  /** Binary search of a precomputed hash. */
+  @Benchmark
+  public StorageNode locate() {
+    return ring.locate(hashes[next++ & (KEY_COUNT - 1)]);
+  }
+
+  /** Hashing a file key and locating its node, as done for every upload. */
+  @Benchmark
+  public StorageNode hashAndLocate() {
+    return ring.locate(HashRing.hash(keys[next++ & (KEY_COUNT - 1)]));
+  }
+
+  /** Locating a node with a capacity check. */
+  @Benchmark
+  public StorageNode locateWithCapacity() {
+    return ring.locate(hashes[next++ & (KEY_COUNT - 1)], GIGABYTE);
+  }
+
+  /** A pick by the strategy among all active nodes, as for an upload without a pool. */
+  @Benchmark
+  public StorageNode strategySelect() {
+    return strategy.selectNode(snapshot, GIGABYTE, keys[next++ & (KEY_COUNT - 1)]);
+  }
+
+  /** A pick by the strategy among half of the active nodes, as for an upload to a pool. */
+  @Benchmark
+  public StorageNode strategySelectFromSubset() {
+    return strategy.selectNode(subset, GIGABYTE, keys[next++ & (KEY_COUNT - 1)]);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int nodeCount : new int[] {4, 16, 64}) {
+      for (int virtualNodes : new int[] {40, 160}) {
+        printSkew(nodeCount, virtualNodes);
+      }
+    }
+    new Runner(new OptionsBuilder().include(HashRingBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+
+  /**
+   * Places sample keys and prints the largest deviation of a node's load from its capacity
+   * share, and the keys moved when one node is added.
+   */
+  private static void printSkew(int nodeCount, int virtualNodes) {
+    List<StorageNode> nodes = nodes(nodeCount);
+    HashRing ring = HashRing.build(nodes, virtualNodes, GIGABYTE);
+    long totalCapacity = nodes.stream().mapToLong(StorageNode::getCapacity).sum();
+
+    Map<Long, Integer> placed = new HashMap<>();
+    for (int i = 0; i < SKEW_SAMPLES; i++) {
+      placed.merge(ring.locate(HashRing.hash("key-" + i)).getContainerId(), 1, Integer::sum);
+    }
+    double maxSkew = 0;
+    for (StorageNode node : nodes) {
+      double expected = (double) SKEW_SAMPLES * node.getCapacity() / totalCapacity;
+      double actual = placed.getOrDefault(node.getContainerId(), 0);
+      maxSkew = Math.max(maxSkew, Math.abs(actual - expected) / expected);
+    }
+
+    // Ideally exactly the new node's capacity share moves, all of it to the new node
+    List<StorageNode> grownNodes = nodes(nodeCount + 1);
+    StorageNode added = grownNodes.get(nodeCount);
+    double ideal = (double) added.getCapacity() / (totalCapacity + added.getCapacity());
+    HashRing grown = HashRing.build(grownNodes, virtualNodes, GIGABYTE);
+    double moved =
+        HashRing.diff(ring, grown).stream().mapToDouble(HashRing.MovedRange::fraction).sum();
+
+    System.out.printf(
+        "nodes=%d virtualNodes=%d points=%d maxSkew=%.2f%% movedOnAdd=%.2f%% (ideal %.2f%%)%n",
+        nodeCount,
+        virtualNodes,
+        ring.getPointCount(),
+        maxSkew * 100,
+        moved * 100,
+        ideal * 100);
+  }
+
+  /** Nodes of 1, 2 and 4 GB in turn, so the capacity weighting is exercised. */
+  private static List<StorageNode> nodes(int count) {
+    List<StorageNode> nodes = new ArrayList<>(count);
+    for (long id = 1; id <= count; id++) {
+      nodes.add(
+          StorageNode.builder()
+              .containerId(id)
+              .containerName("node" + id)
+              .hostAddress("localhost")
+              .port(8080 + (int) id)
+              .capacity(GIGABYTE << (id % 3))
+              .usedSpace(0L)
+              .status(NodeStatus.ACTIVE)
+              .build());
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,170 @@
+package com.loadbalancer.strategy;
+
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.model.enums.NodeStatus;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Pick cost of the alias-table weighted round-robin against the previous implementation, which
+ * recomputed every node's weight twice per pick. Run with {@code mvn -Pbenchmark test-compile
+ * exec:exec -Dbenchmark.mainClass=com.loadbalancer.strategy.WeightedRoundRobinBenchmark}; before
+ * the JMH runs, the largest deviation of each node's share of picks from its weight is printed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeightedRoundRobinBenchmark {
+  private static final long GIGABYTE = 1024L * 1024 * 1024;
+  private static final long FILE_SIZE = 1024 * 1024;
+  private static final int SKEW_ROUNDS = 1000;
+
+  @Param({"10", "100", "1000"})
+  private int nodeCount;
+
+  private List<StorageNode> nodes;
+  private List<StorageNode> subset;
+  private AliasTable table;
+  private final AtomicLong counter = new AtomicLong(0);
+  private final LegacyWeightedRoundRobin legacy = new LegacyWeightedRoundRobin();
+
+  @Setup
+  public void setUp() {
+    nodes = nodes(nodeCount);
+    // Another list of the same nodes, as a pool or tier filter produces on every selection
+    subset = new ArrayList<>(nodes);
+    table = AliasTable.build(nodes);
+  }
+
+  /** A pick from the precomputed table, as done while the node snapshot is unchanged. */
+  @Benchmark
+  public StorageNode aliasTablePick() {
+    return table.pick(counter.getAndIncrement());
+  }
+
+  /**
+   * A pick from a subset of the snapshot, whose cached table is found by the identities of its
+   * nodes.
+   */
+  @Benchmark
+  public StorageNode aliasTableSubsetPick(Blackhole blackhole) {
+    blackhole.consume(AliasTable.signature(subset));
+    if (!table.isBuiltFor(subset)) {
+      throw new IllegalStateException("Table not built for the subset");
+    }
+    return table.pick(counter.getAndIncrement());
+  }
+
+  /** Rebuilding the table, as done once per new node snapshot or subset. */
+  @Benchmark
+  public AliasTable aliasTableBuild() {
+    return AliasTable.build(nodes);
+  }
+
+  /** A pick by the previous implementation. */
+  @Benchmark
+  public StorageNode legacyPick() {
+    return legacy.selectNode(nodes, FILE_SIZE);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int nodeCount : new int[] {10, 100, 1000}) {
+      printSkew(nodeCount);
+    }
+    new Runner(
+            new OptionsBuilder().include(WeightedRoundRobinBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+
+  /**
+   * Makes {@code SKEW_ROUNDS} picks per node and prints the largest deviation of a node's picks
+   * from its share of the free space.
+   */
+  private static void printSkew(int nodeCount) {
+    List<StorageNode> nodes = nodes(nodeCount);
+    AliasTable table = AliasTable.build(nodes);
+    long totalFree = nodes.stream().mapToLong(AliasTable::freeSpace).sum();
+    int picks = nodeCount * SKEW_ROUNDS;
+
+    Map<Long, Integer> picked = new HashMap<>();
+    for (long sequence = 0; sequence < picks; sequence++) {
+      picked.merge(table.pick(sequence).getContainerId(), 1, Integer::sum);
+    }
+    double maxSkew = 0;
+    for (StorageNode node : nodes) {
+      double expected = (double) picks * AliasTable.freeSpace(node) / totalFree;
+      double actual = picked.getOrDefault(node.getContainerId(), 0);
+      maxSkew = Math.max(maxSkew, Math.abs(actual - expected) / expected);
+    }
+    System.out.printf("nodes=%d picks=%d maxSkew=%.2f%%%n", nodeCount, picks, maxSkew * 100);
+  }
+
+  /** Nodes of 1, 2 and 4 GB in turn, half full in steps, so the weights differ. */
+  private static List<StorageNode> nodes(int count) {
+    List<StorageNode> nodes = new ArrayList<>(count);
+    for (long id = 1; id <= count; id++) {
+      long capacity = GIGABYTE << (id % 3);
+      nodes.add(
+          StorageNode.builder()
+              .containerId(id)
+              .containerName("node" + id)
+              .hostAddress("localhost")
+              .port(8080 + (int) id)
+              .capacity(capacity)
+              .usedSpace(capacity / 8 * (id % 5))
+              .status(NodeStatus.ACTIVE)
+              .build());
+    }
+    return nodes;
+  }
+
+  /** The weighted round-robin as it was before the alias table, for comparison. */
+  private static final class LegacyWeightedRoundRobin {
+    private static final int MEGABYTE = 1024 * 1024;
+    private final AtomicInteger counter = new AtomicInteger(0);
+
+    StorageNode selectNode(List<StorageNode> nodes, long fileSize) {
+      int totalWeight = nodes.stream().mapToInt(node -> calculateWeight(node, fileSize)).sum();
+      int position = counter.getAndIncrement() % totalWeight;
+      int currentWeight = 0;
+      for (StorageNode node : nodes) {
+        currentWeight += calculateWeight(node, fileSize);
+        if (position < currentWeight) {
+          return node;
+        }
+      }
+      return nodes.get(0);
+    }
+
+    private int calculateWeight(StorageNode node, long fileSize) {
+      long availableSpace = node.getCapacity() - node.getUsedSpace();
+      if (availableSpace < fileSize) {
+        return 0;
+      }
+      return (int) (availableSpace / MEGABYTE);
+    }
+  }
+}
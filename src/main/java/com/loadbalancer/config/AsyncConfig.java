@@ -2,8 +2,12 @@
 package com.loadbalancer.config;
 
 import java.util.concurrent.Executor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -12,6 +16,7 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 public class AsyncConfig {
 
   @Bean(name = "taskExecutor")
+  @ConditionalOnThreading(Threading.PLATFORM)
   public Executor taskExecutor() {
     ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
     executor.setCorePoolSize(5);
@@ -21,4 +26,60 @@ public class AsyncConfig {
     executor.initialize();
     return executor;
   }
+
+  /**
+   * Used instead of the fixed pool when spring.threads.virtual.enabled is set on Java 21+. Each
+   * task gets its own virtual thread, so blocking calls to slow storage nodes park cheaply
+   * instead of occupying one of a handful of pool threads.
+   */
+  @Bean(name = "taskExecutor")
+  @ConditionalOnThreading(Threading.VIRTUAL)
+  public Executor virtualThreadTaskExecutor() {
+    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("LoadBalancer-");
+    executor.setVirtualThreads(true);
+    return executor;
+  }
+
+  /** Fetches stripe units of striped downloads from storage nodes in parallel. */
+  @Bean(name = "stripeFetchExecutor")
+  @ConditionalOnThreading(Threading.PLATFORM)
+  public AsyncTaskExecutor stripeFetchExecutor(LoadBalancerConfig config) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(config.getStriping().getFetchThreads());
+    executor.setMaxPoolSize(config.getStriping().getFetchThreads());
+    executor.setThreadNamePrefix("StripeFetch-");
+    executor.initialize();
+    return executor;
+  }
+
+  @Bean(name = "stripeFetchExecutor")
+  @ConditionalOnThreading(Threading.VIRTUAL)
+  public AsyncTaskExecutor virtualThreadStripeFetchExecutor() {
+    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("StripeFetch-");
+    executor.setVirtualThreads(true);
+    return executor;
+  }
+
+  /**
+   * Serves the leaders of coalesced downloads from the shared buffer while their fetch fills it,
+   * so the fetch does not wait for the leader's client.
+   */
+  @Bean(name = "coalescingRelayExecutor")
+  @ConditionalOnThreading(Threading.PLATFORM)
+  public AsyncTaskExecutor coalescingRelayExecutor(LoadBalancerConfig config) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(config.getCoalescing().getRelayThreads());
+    executor.setMaxPoolSize(config.getCoalescing().getRelayThreads());
+    executor.setThreadNamePrefix("CoalescingRelay-");
+    executor.initialize();
+    return executor;
+  }
+
+  @Bean(name = "coalescingRelayExecutor")
+  @ConditionalOnThreading(Threading.VIRTUAL)
+  public AsyncTaskExecutor virtualThreadCoalescingRelayExecutor() {
+    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("CoalescingRelay-");
+    executor.setVirtualThreads(true);
+    return executor;
+  }
 }
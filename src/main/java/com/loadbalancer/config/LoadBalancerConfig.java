@@ -1,12 +1,24 @@
 // config/LoadBalancerConfig.java
 package com.loadbalancer.config;
 
+import com.loadbalancer.model.enums.StorageTier;
+import com.loadbalancer.util.InstrumentedConnectionManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.Getter;
 import lombok.Setter;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
@@ -18,10 +30,62 @@ public class LoadBalancerConfig {
   private HealthCheck healthCheck;
   private Metrics metrics;
   private Queue queue;
+  private Transfer transfer = new Transfer();
+  private HttpClient httpClient = new HttpClient();
+  private Reactive reactive = new Reactive();
+  private Direct direct = new Direct();
+  private Coalescing coalescing = new Coalescing();
+  private Cache cache = new Cache();
+  private Batch batch = new Batch();
+  private Striping striping = new Striping();
+  private Compression compression = new Compression();
+  private AccessTracking accessTracking = new AccessTracking();
+  private Registry registry = new Registry();
+  private ConsistentHash consistentHash = new ConsistentHash();
+  private PeakEwma peakEwma = new PeakEwma();
+  private Placement placement = new Placement();
+  private Tiering tiering = new Tiering();
+  private Concurrency concurrency = new Concurrency();
+
+  /**
+   * Connection pool shared by all load balancer to storage node requests, with one route (and
+   * connection limit) per node.
+   */
+  @Bean(destroyMethod = "close")
+  public InstrumentedConnectionManager nodeConnectionManager() {
+    InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager();
+    connectionManager.setMaxTotal(httpClient.getMaxTotal());
+    connectionManager.setDefaultMaxPerRoute(httpClient.getMaxPerNode());
+    connectionManager.setDefaultConnectionConfig(
+        ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.ofMilliseconds(httpClient.getConnectTimeout()))
+            .setSocketTimeout(Timeout.ofMilliseconds(httpClient.getReadTimeout()))
+            .setValidateAfterInactivity(
+                TimeValue.ofMilliseconds(httpClient.getValidateAfterInactivity()))
+            .setTimeToLive(TimeValue.ofMilliseconds(httpClient.getTimeToLive()))
+            .build());
+    return connectionManager;
+  }
+
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient nodeHttpClient(InstrumentedConnectionManager nodeConnectionManager) {
+    return HttpClients.custom()
+        .setConnectionManager(nodeConnectionManager)
+        .setDefaultRequestConfig(
+            RequestConfig.custom()
+                .setConnectionRequestTimeout(
+                    Timeout.ofMilliseconds(httpClient.getConnectionRequestTimeout()))
+                .build())
+        // Compressed node responses are relayed to clients as they are, never decompressed here
+        .disableContentCompression()
+        .evictExpiredConnections()
+        .evictIdleConnections(TimeValue.ofMilliseconds(httpClient.getIdleTimeout()))
+        .build();
+  }
 
   @Bean
-  public RestTemplate restTemplate() {
-    return new RestTemplate();
+  public RestTemplate restTemplate(CloseableHttpClient nodeHttpClient) {
+    return new RestTemplate(new HttpComponentsClientHttpRequestFactory(nodeHttpClient));
   }
 
   @Getter
@@ -49,6 +113,192 @@ public class LoadBalancerConfig {
     private int maxResponseTimeEntries;
   }
 
+  @Getter
+  @Setter
+  public static class HttpClient {
+    private int maxTotal = 200;
+    private int maxPerNode = 50;
+    private long connectTimeout = 2000;
+    // Maximum gap between reads, not a limit on total transfer time
+    private long readTimeout = 60000;
+    private long connectionRequestTimeout = 5000;
+    private long idleTimeout = 30000;
+    private long validateAfterInactivity = 2000;
+    private long timeToLive = 300000;
+  }
+
+  @Getter
+  @Setter
+  public static class Reactive {
+    private boolean enabled = false;
+    private int port = 8090;
+  }
+
+  @Getter
+  @Setter
+  public static class Direct {
+    // Redirect downloads to the owning node instead of relaying them
+    private boolean enabled = false;
+    // Shared with storage nodes to sign and verify direct URLs
+    private String secret;
+    // Lifetime of a signed URL in seconds
+    private long urlTtl = 300;
+  }
+
+  @Getter
+  @Setter
+  public static class Coalescing {
+    private boolean enabled = false;
+    // Largest file whose body is shared between concurrent downloads (bytes)
+    private long maxFileSize = 16 * 1024 * 1024;
+    // Threads serving leaders from the shared buffer, shared by all coalesced downloads
+    private int relayThreads = 32;
+  }
+
+  @Getter
+  @Setter
+  public static class Cache {
+    private boolean enabled = false;
+    private int maxEntries = 10000;
+    // Total size of cached file content, held off-heap (bytes)
+    private long maxBytes = 256L * 1024 * 1024;
+    // Largest file admitted to the cache (bytes)
+    private long maxFileSize = 1024 * 1024;
+    // Time a cached file is served without checking its metadata (ms)
+    private long ttl = 300000;
+  }
+
+  @Getter
+  @Setter
+  public static class Batch {
+    // Maximum number of files accepted in one batch request
+    private int maxFiles = 1000;
+    // Rows per JDBC batch when inserting file metadata
+    private int insertBatchSize = 500;
+  }
+
+  @Getter
+  @Setter
+  public static class Striping {
+    private boolean enabled = false;
+    // Size of one stripe unit; consecutive units are placed on different nodes (bytes)
+    private long stripeSize = 8 * 1024 * 1024;
+    // Maximum number of nodes one file is striped across
+    private int maxWidth = 4;
+    // Stripe units fetched ahead of the one being sent to the client, per download
+    private int readAhead = 4;
+    // Threads shared by all striped downloads for fetching stripe units
+    private int fetchThreads = 32;
+  }
+
+  @Getter
+  @Setter
+  public static class ConsistentHash {
+    // Points on the hash ring for a node of the reference capacity; others get proportionally more
+    private int virtualNodes = 160;
+    // Node capacity that gets virtualNodes points (bytes)
+    private long referenceCapacity = 10737418240L;
+  }
+
+  @Getter
+  @Setter
+  public static class Placement {
+    // JSON file with pools and rules that replace the ones below; reloaded when it changes
+    private String rulesFile;
+    // Interval between checks of the rules file for changes (ms)
+    private long reloadInterval = 10000;
+    // Node pools by name, each a list of node IDs
+    private Map<String, List<Long>> pools = new LinkedHashMap<>();
+    // Rules in priority order; the first that matches an upload decides its strategy and pool
+    private List<Rule> rules = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Rule {
+      private String name;
+      // User IDs the rule applies to; any user if empty
+      private List<Long> tenants = new ArrayList<>();
+      // Content types such as image/png or video/*; any type if empty
+      private List<String> contentTypes = new ArrayList<>();
+      // Size bounds in bytes, inclusive; a bound only matches uploads of known size
+      private Long minSize;
+      private Long maxSize;
+      // Strategy bean name; the default strategy if not set
+      private String strategy;
+      // Pool name; all active nodes if not set
+      private String pool;
+      // Tiers preferred for the upload; the size class decides if not set
+      private List<StorageTier> tiers = new ArrayList<>();
+    }
+  }
+
+  @Getter
+  @Setter
+  public static class Tiering {
+    // Prefer tiers by file size for uploads whose placement rule names no tiers
+    private boolean enabled = true;
+    // Files up to this size prefer the fast tiers (bytes)
+    private long smallFileMaxSize = 1048576;
+    // Files of at least this size prefer the dense tiers (bytes)
+    private long largeFileMinSize = 268435456;
+    private List<StorageTier> fastTiers =
+        new ArrayList<>(List.of(StorageTier.NVME, StorageTier.SSD));
+    private List<StorageTier> denseTiers = new ArrayList<>(List.of(StorageTier.HDD));
+  }
+
+  @Getter
+  @Setter
+  public static class Concurrency {
+    // Limit the requests in flight to each node, adapting the limit to the node's responses
+    private boolean enabled = false;
+    private int initialLimit = 50;
+    private int minLimit = 4;
+    private int maxLimit = 500;
+    // Factor applied to the limit after a failed or slow request
+    private double backoffRatio = 0.9;
+    // Time to a download's first byte above which it counts as a sign of overload (ms)
+    private long latencyThreshold = 5000;
+  }
+
+  @Getter
+  @Setter
+  public static class PeakEwma {
+    // Time for an old response time to lose 63% of its weight in the estimate, or of its value
+    // while the node sends no new responses (ms)
+    private long decayTime = 10000;
+    // Response time counted for a failed request, and per request to a node not yet measured (ms)
+    private double failurePenalty = 5000;
+  }
+
+  @Getter
+  @Setter
+  public static class Registry {
+    // Interval between reloads of the in-memory node registry from the database (ms)
+    private long refreshInterval = 30000;
+  }
+
+  @Getter
+  @Setter
+  public static class AccessTracking {
+    // Interval between writes of buffered file access times to the database (ms)
+    private long flushInterval = 5000;
+  }
+
+  @Getter
+  @Setter
+  public static class Compression {
+    private boolean enabled = true;
+    // Content encodings requested from storage nodes, in order of preference
+    private List<String> encodings = List.of("zstd", "gzip");
+  }
+
+  @Getter
+  @Setter
+  public static class Transfer {
+    // Size of the per-request relay buffer; bounds proxy memory per transfer
+    private int bufferSize = 64 * 1024;
+  }
+
   @Getter
   @Setter
   public static class Queue {
@@ -0,0 +1,73 @@
+package com.loadbalancer.config;
+
+import com.loadbalancer.controller.ReactiveFileHandler;
+import io.netty.channel.ChannelOption;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Optional non-blocking gateway that serves the file transfer API on a separate port. Uploads and
+ * downloads are streamed between clients and storage nodes with backpressure on an event loop, so
+ * slow clients do not each hold a thread. Enabled with loadbalancer.reactive.enabled.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "loadbalancer.reactive", name = "enabled", havingValue = "true")
+@Slf4j
+public class ReactiveGatewayConfig {
+
+  /**
+   * Non-blocking client for storage node traffic. Reactor Netty keeps a separate connection pool
+   * per node address, sized like the servlet path's pooled client.
+   */
+  @Bean
+  public WebClient nodeWebClient(WebClient.Builder builder, LoadBalancerConfig config) {
+    LoadBalancerConfig.HttpClient settings = config.getHttpClient();
+    ConnectionProvider connectionProvider =
+        ConnectionProvider.builder("storage-nodes")
+            .maxConnections(settings.getMaxPerNode())
+            .pendingAcquireTimeout(Duration.ofMillis(settings.getConnectionRequestTimeout()))
+            .maxIdleTime(Duration.ofMillis(settings.getIdleTimeout()))
+            .maxLifeTime(Duration.ofMillis(settings.getTimeToLive()))
+            .build();
+
+    HttpClient httpClient =
+        HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.getConnectTimeout());
+
+    return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+  }
+
+  @Bean(destroyMethod = "disposeNow")
+  public DisposableServer reactiveGatewayServer(
+      ReactiveFileHandler fileHandler, LoadBalancerConfig config) {
+    RouterFunction<ServerResponse> routes =
+        RouterFunctions.route()
+            .POST("/api/v1/files/upload", fileHandler::uploadFile)
+            .GET("/api/v1/files/{fileId}", fileHandler::downloadFile)
+            .build();
+
+    HttpHandler httpHandler = RouterFunctions.toHttpHandler(routes);
+    DisposableServer server =
+        HttpServer.create()
+            .port(config.getReactive().getPort())
+            .handle(new ReactorHttpHandlerAdapter(httpHandler))
+            .bindNow();
+
+    log.info("Reactive gateway listening on port {}", server.port());
+    return server;
+  }
+}
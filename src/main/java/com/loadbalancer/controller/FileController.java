@@ -1,22 +1,40 @@
 package com.loadbalancer.controller;
 
+import com.loadbalancer.config.LoadBalancerConfig;
 import com.loadbalancer.exception.FileDownloadException;
 import com.loadbalancer.exception.FileOperationException;
-import com.loadbalancer.model.entity.FileMetadata;
+import com.loadbalancer.exception.LoadBalancerException;
+import com.loadbalancer.exception.NodeOverloadedException;
+import com.loadbalancer.model.dto.PlacementDecision;
+import com.loadbalancer.model.dto.SignedUrl;
+import com.loadbalancer.model.entity.FileStripe;
 import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.BatchFileService;
+import com.loadbalancer.service.CapacityLedger;
+import com.loadbalancer.service.DownloadCoalescer;
+import com.loadbalancer.service.FileTransferService;
+import com.loadbalancer.service.FileTransferService.DownloadTap;
+import com.loadbalancer.service.HotFileCache;
+import com.loadbalancer.service.InFlightTracker;
 import com.loadbalancer.service.LoadBalancerService;
+import com.loadbalancer.service.PlacementPolicyService;
 import com.loadbalancer.service.StorageNodeService;
+import com.loadbalancer.service.StripedFileService;
+import com.loadbalancer.util.ContentEncodingNegotiator;
+import com.loadbalancer.util.UrlSigner;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.*;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -31,93 +49,108 @@ import org.springframework.web.multipart.MultipartFile;
 public class FileController {
   private final LoadBalancerService loadBalancerService;
   private final StorageNodeService storageNodeService;
+  private final FileTransferService fileTransferService;
+  private final DownloadCoalescer downloadCoalescer;
+  private final HotFileCache hotFileCache;
+  private final BatchFileService batchFileService;
+  private final StripedFileService stripedFileService;
+  private final PlacementPolicyService placementPolicyService;
   private final RestTemplate restTemplate;
+  private final UrlSigner urlSigner;
+  private final ContentEncodingNegotiator encodingNegotiator;
+  private final LoadBalancerConfig config;
 
   // Constants for duplicated literals
   private static final String HEADER_USER_ID = "X-User-ID";
+  private static final String HEADER_FILE_NAME = "X-File-Name";
+  private static final String HEADER_PLACEMENT_POLICY = "X-Placement-Policy";
   private static final String KEY_ERROR = "error";
   private static final String KEY_MESSAGE = "message";
   private static final String KEY_TIMESTAMP = "timestamp";
-  private static final String FILE_PARAM = "file";
   private static final String UPLOAD_PATH = "upload";
+  private static final String METADATA_PATH = "%d/metadata";
+  private static final String FILES_PATH = "/api/v1/files/";
   private static final String UPLOAD_FAILED = "Upload failed";
   private static final String DOWNLOAD_FAILED = "Download failed: ";
   private static final String DELETION_FAILED = "Deletion failed";
   private static final String FILE_UPLOAD_FAILED_LOG = "File upload failed";
   private static final String FILE_DOWNLOAD_FAILED_LOG = "File download failed";
   private static final String FILE_DELETION_FAILED_LOG = "File deletion failed";
+  private static final String NOT_MULTIPART = "Upload request must be multipart/form-data";
+  private static final String NODE_NOT_FOUND = "Storage node not found: ";
+  private static final String FILE_NOT_ON_NODE = "File not found on node: ";
+  private static final String FILE_OWNER_MISMATCH = "File was not uploaded by this user";
+  private static final String FILE_STRIPED = "Striped files are only served by the load balancer";
+  private static final String STRIPE_DELETION_FAILED = "Not all stripes could be deleted";
 
   // Move URI path formats to configuration
   @Value("${api.storage.path.format:http://%s:%d/api/v1/files/%s}")
   private String apiPathFormat;
 
   /**
-   * Uploads a file to the selected storage node.
+   * Uploads a file to the selected storage node. The multipart body is relayed to the node as it
+   * arrives instead of being parsed and buffered by the load balancer.
    *
-   * @param file The file to upload
+   * @param request The incoming multipart request
    * @param userId The ID of the user uploading the file
+   * @param fileName The file name, optional; used as placement key by key-affine strategies and
+   *     to match placement rules by content type
+   * @param policyName The placement policy to apply, optional; placement rules decide otherwise
    * @return Response from the storage node
    */
   @PostMapping("/upload")
   public ResponseEntity<Map<String, Object>> uploadFile(
-          @RequestParam(FILE_PARAM) MultipartFile file, @RequestHeader(HEADER_USER_ID) Long userId) {
+          HttpServletRequest request,
+          @RequestHeader(HEADER_USER_ID) Long userId,
+          @RequestHeader(value = HEADER_FILE_NAME, required = false) String fileName,
+          @RequestHeader(value = HEADER_PLACEMENT_POLICY, required = false) String policyName) {
     long startTime = System.currentTimeMillis();
+    long contentLength = request.getContentLengthLong();
+    PlacementDecision placement = placementPolicyService.resolve(
+            userId, contentLength, PlacementPolicyService.contentTypeFor(fileName), policyName);
     StorageNode selectedNode = null;
     try {
-      selectedNode = loadBalancerService.selectNode(null, file.getSize());
-      log.info(
-              "Selected node {} for file upload, size: {}",
-              selectedNode.getContainerId(),
-              file.getSize());
-
-      String uploadUrl = String.format(
-              apiPathFormat,
-              selectedNode.getHostAddress(),
-              selectedNode.getPort(),
-              UPLOAD_PATH);
+      MediaType contentType = resolveMultipartContentType(request);
 
-      HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-      headers.set(HEADER_USER_ID, userId.toString());
+      Map<String, Object> responseMap;
+      try (CapacityLedger.Reservation reservation = loadBalancerService.reserveNode(
+              placement,
+              Math.max(contentLength, 0),
+              LoadBalancerService.fileKey(userId, fileName))) {
+        selectedNode = reservation.getNode();
+        log.info(
+                "Selected node {} for file upload, size: {}",
+                selectedNode.getContainerId(),
+                contentLength);
 
-      MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-      body.add(
-              FILE_PARAM,
-              createByteResource(file));
+        String uploadUrl = nodeUrl(selectedNode, HttpMethod.POST, UPLOAD_PATH, userId);
 
-      // Use explicit HashMap type to match the return type
-      @SuppressWarnings("unchecked")
-      HashMap<String, Object> responseMap = restTemplate.postForObject(
-              uploadUrl,
-              new HttpEntity<>(body, headers),
-              HashMap.class
-      );
-
-      if (responseMap != null && responseMap.containsKey("fileId")) {
-        // Store metadata in database
-        Long fileId = Long.valueOf(responseMap.get("fileId").toString());
-        String storedFilename = responseMap.get("fileName") != null ?
-                responseMap.get("fileName").toString() : file.getOriginalFilename();
-
-        loadBalancerService.storeFileMetadata(
-                file.getOriginalFilename(),
-                storedFilename,
-                file.getSize(),
-                file.getContentType(),
-                selectedNode.getContainerId(),
-                userId,
-                null // checksum - can be added later
-        );
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HEADER_USER_ID, userId.toString());
+
+        try (InFlightTracker.Transfer transfer = loadBalancerService.beginLimitedTransfer(
+                selectedNode, Math.max(contentLength, 0))) {
+          responseMap = fileTransferService.streamUpload(
+                  uploadUrl,
+                  request.getInputStream(),
+                  contentType,
+                  contentLength,
+                  headers);
+        }
 
-        // Update response with node information
-        responseMap.put("nodeId", selectedNode.getContainerId());
-        responseMap.put("nodeName", selectedNode.getContainerName());
+        if (responseMap != null && responseMap.containsKey("fileId")) {
+          reservation.commit();
+          recordUploadedFile(responseMap, selectedNode, userId);
+        }
       }
 
       long duration = System.currentTimeMillis() - startTime;
       loadBalancerService.recordRequest(selectedNode.getContainerId().toString(), true, duration);
 
       return ResponseEntity.ok(responseMap);
+    } catch (NodeOverloadedException e) {
+      // Rejected before the node was contacted, so it says nothing about the node's health
+      throw e;
     } catch (Exception e) {
       log.error(FILE_UPLOAD_FAILED_LOG, e);
       if (selectedNode != null) {
@@ -136,60 +169,273 @@ public class FileController {
   }
 
   /**
-   * Creates a ByteArrayResource for file transfer.
+   * Uploads many small files in one request. Files are placed individually, then each storage
+   * node receives all of its files in a single call and the metadata is stored in one batch.
    *
-   * @param file The MultipartFile to convert
-   * @return ByteArrayResource with the file's content
-   * @throws FileOperationException If reading the file fails
+   * @param files The files to upload
+   * @param userId The ID of the user uploading the files
+   * @param policyName The placement policy to apply, optional; placement rules decide otherwise
+   * @return Per-file results in request order, with success and failure counts
    */
-  private ByteArrayResource createByteResource(final MultipartFile file) throws FileOperationException {
+  @PostMapping("/upload/batch")
+  public ResponseEntity<Map<String, Object>> uploadFiles(
+          @RequestParam("files") List<MultipartFile> files,
+          @RequestHeader(HEADER_USER_ID) Long userId,
+          @RequestHeader(value = HEADER_PLACEMENT_POLICY, required = false) String policyName) {
+    List<Map<String, Object>> results = batchFileService.uploadFiles(files, userId, policyName);
+    long failed = results.stream().filter(result -> result.containsKey(KEY_ERROR)).count();
+
+    Map<String, Object> response = new HashMap<>();
+    response.put("files", results);
+    response.put("succeeded", results.size() - failed);
+    response.put("failed", failed);
+    response.put(KEY_TIMESTAMP, Instant.now());
+    return ResponseEntity.ok(response);
+  }
+
+  /**
+   * Uploads a file striped across several storage nodes, so it can later be downloaded from all
+   * of them in parallel. The request body is the raw file content and must have a Content-Length.
+   *
+   * @param fileName The original file name
+   * @param userId The ID of the user uploading the file
+   * @param request The incoming request carrying the file content
+   * @return The stored file details and the nodes holding its stripes
+   * @throws IOException If the request body cannot be read
+   */
+  @PostMapping("/upload/striped")
+  public ResponseEntity<Map<String, Object>> uploadStripedFile(
+          @RequestParam String fileName,
+          @RequestHeader(HEADER_USER_ID) Long userId,
+          HttpServletRequest request) throws IOException {
+    Map<String, Object> response = stripedFileService.upload(
+            fileName,
+            request.getContentType(),
+            request.getContentLengthLong(),
+            request.getInputStream(),
+            userId);
+    response.put(KEY_TIMESTAMP, Instant.now());
+    return ResponseEntity.ok(response);
+  }
+
+  /**
+   * Issues a signed URL that lets the client upload a file straight to the selected storage
+   * node. After the upload, the client reports the node's file ID to {@code /upload-complete} so
+   * the file metadata can be recorded.
+   *
+   * @param size The expected file size in bytes, used for node selection
+   * @param fileName The file name, optional; used as placement key by key-affine strategies and
+   *     to match placement rules by content type
+   * @param userId The ID of the user uploading the file
+   * @param policyName The placement policy to apply, optional; placement rules decide otherwise
+   * @return The signed upload URL and the node it points at
+   */
+  @PostMapping("/upload-url")
+  public ResponseEntity<SignedUrl> createUploadUrl(
+          @RequestParam(defaultValue = "0") long size,
+          @RequestParam(required = false) String fileName,
+          @RequestHeader(HEADER_USER_ID) Long userId,
+          @RequestHeader(value = HEADER_PLACEMENT_POLICY, required = false) String policyName) {
+    PlacementDecision placement = placementPolicyService.resolve(
+            userId, size, PlacementPolicyService.contentTypeFor(fileName), policyName);
+    StorageNode selectedNode = loadBalancerService.selectNode(
+            placement, size, LoadBalancerService.fileKey(userId, fileName));
+    log.info(
+            "Issued direct upload URL on node {}, size: {}",
+            selectedNode.getContainerId(),
+            size);
+    return ResponseEntity.ok(
+            urlSigner.sign(selectedNode, HttpMethod.POST, FILES_PATH + UPLOAD_PATH, userId));
+  }
+
+  /**
+   * Records the metadata of a file uploaded directly to a storage node. The details are read
+   * from the node itself rather than trusted from the client.
+   *
+   * @param request The node ID and the file ID returned by the node
+   * @param userId The ID of the user who uploaded the file
+   * @return The recorded file details
+   */
+  @PostMapping("/upload-complete")
+  public ResponseEntity<Map<String, Object>> completeUpload(
+          @RequestBody Map<String, Long> request,
+          @RequestHeader(HEADER_USER_ID) Long userId) {
+    Long nodeId = request.get("nodeId");
+    Long nodeFileId = request.get("fileId");
+    StorageNode node = storageNodeService.getNode(nodeId)
+            .orElseThrow(() -> new LoadBalancerException(
+                    NODE_NOT_FOUND + nodeId, HttpStatus.NOT_FOUND, "NODE_NOT_FOUND"));
+
+    String metadataUrl = String.format(
+            apiPathFormat,
+            node.getHostAddress(),
+            node.getPort(),
+            String.format(METADATA_PATH, nodeFileId));
+
+    Map<String, Object> nodeMetadata;
     try {
-      return new ByteArrayResource(file.getBytes()) {
-        @Override
-        public String getFilename() {
-          return file.getOriginalFilename();
-        }
-      };
-    } catch (Exception e) {
-      throw new FileOperationException("Failed to read file bytes", e);
+      @SuppressWarnings("unchecked")
+      Map<String, Object> metadata = restTemplate.getForObject(metadataUrl, Map.class);
+      nodeMetadata = metadata;
+    } catch (HttpClientErrorException.NotFound e) {
+      nodeMetadata = null;
+    }
+    if (nodeMetadata == null) {
+      throw new LoadBalancerException(
+              FILE_NOT_ON_NODE + nodeFileId, HttpStatus.NOT_FOUND, "FILE_NOT_FOUND");
+    }
+    if (!userId.toString().equals(String.valueOf(nodeMetadata.get("userId")))) {
+      throw new LoadBalancerException(
+              FILE_OWNER_MISMATCH, HttpStatus.FORBIDDEN, "FILE_OWNER_MISMATCH");
+    }
+
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put("fileId", nodeMetadata.get("fileId"));
+    responseMap.put("fileName", nodeMetadata.get("originalFileName"));
+    responseMap.put("storedFileName", nodeMetadata.get("fileName"));
+    responseMap.put("fileSize", nodeMetadata.get("fileSize"));
+    responseMap.put("contentType", nodeMetadata.get("contentType"));
+    responseMap.put(KEY_TIMESTAMP, Instant.now());
+    recordUploadedFile(responseMap, node, userId);
+
+    return ResponseEntity.ok(responseMap);
+  }
+
+  /**
+   * Stores metadata for a file the node reports as uploaded and adds the node details to the
+   * response.
+   */
+  private void recordUploadedFile(Map<String, Object> responseMap, StorageNode node, Long userId) {
+    String originalFilename = String.valueOf(responseMap.get("fileName"));
+    Long fileSize = Long.valueOf(responseMap.get("fileSize").toString());
+    String fileContentType = responseMap.get("contentType") != null ?
+            responseMap.get("contentType").toString() : null;
+
+    loadBalancerService.storeFileMetadata(
+            originalFilename,
+            LoadBalancerService.storedFileName(responseMap),
+            fileSize,
+            fileContentType,
+            node.getContainerId(),
+            userId,
+            null // checksum - can be added later
+    );
+
+    // Update response with node information
+    responseMap.put("nodeId", node.getContainerId());
+    responseMap.put("nodeName", node.getContainerName());
+  }
+
+  /**
+   * Resolves the content type of an upload request, which must be multipart so the storage node
+   * can parse it.
+   *
+   * @param request The incoming request
+   * @return The request content type, including its boundary
+   * @throws FileOperationException If the request is not a multipart request
+   */
+  private MediaType resolveMultipartContentType(HttpServletRequest request) throws FileOperationException {
+    String contentType = request.getContentType();
+    if (contentType == null) {
+      throw new FileOperationException(NOT_MULTIPART);
+    }
+    MediaType mediaType = MediaType.parseMediaType(contentType);
+    if (!MediaType.MULTIPART_FORM_DATA.includes(mediaType)) {
+      throw new FileOperationException(NOT_MULTIPART);
     }
+    return mediaType;
   }
 
   /**
-   * Downloads a file from the storage node containing it.
+   * Downloads a file from the storage node containing it. The node's response is relayed to the
+   * client as it arrives, so the first byte is sent before the whole file has been read.
+   *
+   * Range requests are forwarded to the owning node, which answers with partial content.
+   * When direct access is enabled, the client is instead redirected to a signed URL on the
+   * owning node and the content does not pass through the load balancer.
+   *
+   * Concurrent full downloads of the same file share one node lookup and upstream fetch, and
+   * small hot files may be served from the load balancer's cache without contacting a node.
+   * Striped files are always relayed, fetching their stripes from several nodes in parallel.
+   *
+   * The configured content encodings the client accepts are requested from the node, which sends a
+   * compressed copy as it is when its encoding is among them, and a compressed response is relayed
+   * without being decompressed.
    *
    * @param fileId The ID of the file to download
    * @param userId The ID of the user downloading the file
-   * @return The file content
+   * @param range Optional byte range(s) to download
+   * @param acceptEncoding The content encodings the client accepts
+   * @param response The response the file content is streamed to
    * @throws FileDownloadException If the download fails
    */
   @GetMapping("/{fileId}")
-  public ResponseEntity<byte[]> downloadFile(
-          @PathVariable Long fileId, @RequestHeader(HEADER_USER_ID) Long userId) {
+  public void downloadFile(
+          @PathVariable Long fileId,
+          @RequestHeader(HEADER_USER_ID) Long userId,
+          @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                  String acceptEncoding,
+          HttpServletResponse response) {
+    String acceptedEncodings = encodingNegotiator.negotiate(acceptEncoding);
+    if (range == null && !config.getDirect().isEnabled()) {
+      try {
+        if (hotFileCache.serve(fileId, acceptedEncodings, response)) {
+          loadBalancerService.updateFileAccess(fileId);
+          return;
+        }
+        if (downloadCoalescer.isEnabled()) {
+          downloadCoalescer.download(fileId, acceptedEncodings, response,
+                  tap -> fetchDownload(fileId, userId, null, acceptedEncodings, response, tap));
+          return;
+        }
+      } catch (IOException e) {
+        log.error(FILE_DOWNLOAD_FAILED_LOG, e);
+        throw new FileDownloadException(DOWNLOAD_FAILED + e.getMessage(), e);
+      }
+    }
+    fetchDownload(fileId, userId, range, acceptedEncodings, response,
+            (status, headers, out) -> out);
+  }
+
+  /**
+   * Looks up the node holding a file and either redirects the client to it or relays the file.
+   */
+  private void fetchDownload(Long fileId, Long userId, String range, String acceptedEncodings,
+                             HttpServletResponse response, DownloadTap tap) {
     long startTime = System.currentTimeMillis();
     StorageNode node = null;
     try {
-      node = loadBalancerService.getNodeForFile(fileId);
-      String downloadUrl = String.format(
-              apiPathFormat,
-              node.getHostAddress(),
-              node.getPort(),
-              fileId.toString());
+      List<FileStripe> stripes = stripedFileService.getStripes(fileId);
+      if (!stripes.isEmpty()) {
+        stripedFileService.download(fileId, stripes, range, response, tap, userId);
+        loadBalancerService.updateFileAccess(fileId);
+        return;
+      }
 
-      HttpHeaders headers = new HttpHeaders();
-      headers.set(HEADER_USER_ID, userId.toString());
+      node = loadBalancerService.getNodeForFile(fileId);
 
-      ResponseEntity<byte[]> response =
-              restTemplate.exchange(
-                      downloadUrl, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+      if (config.getDirect().isEnabled()) {
+        SignedUrl signedUrl = urlSigner.sign(node, HttpMethod.GET, FILES_PATH + fileId, userId);
+        response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+        response.setHeader(HttpHeaders.LOCATION, signedUrl.getUrl());
+      } else if (range == null && hotFileCache.isEnabled()) {
+        HotFileCache.Capture capture = hotFileCache.capture(fileId, acceptedEncodings);
+        proxyDownload(node, fileId, userId, null, acceptedEncodings, response,
+                capture.wrap(tap));
+        capture.commit();
+      } else {
+        proxyDownload(node, fileId, userId, range, acceptedEncodings, response, tap);
+      }
 
       // Update file access time
       loadBalancerService.updateFileAccess(fileId);
 
       long duration = System.currentTimeMillis() - startTime;
       loadBalancerService.recordRequest(node.getContainerId().toString(), true, duration);
-
-      return ResponseEntity.ok().headers(response.getHeaders()).body(response.getBody());
+    } catch (NodeOverloadedException e) {
+      // Rejected before the node was contacted, so it says nothing about the node's health
+      throw e;
     } catch (Exception e) {
       log.error(FILE_DOWNLOAD_FAILED_LOG, e);
       if (node != null) {
@@ -200,6 +446,79 @@ public class FileController {
     }
   }
 
+  /**
+   * Issues a signed URL for downloading a file straight from the storage node that holds it.
+   *
+   * @param fileId The ID of the file to download
+   * @param userId The ID of the user downloading the file
+   * @return The signed download URL and the node it points at
+   */
+  @GetMapping("/{fileId}/url")
+  public ResponseEntity<SignedUrl> createDownloadUrl(
+          @PathVariable Long fileId, @RequestHeader(HEADER_USER_ID) Long userId) {
+    if (!stripedFileService.getStripes(fileId).isEmpty()) {
+      throw new LoadBalancerException(FILE_STRIPED, HttpStatus.CONFLICT, "FILE_STRIPED");
+    }
+    StorageNode node = loadBalancerService.getNodeForFile(fileId);
+    SignedUrl signedUrl = urlSigner.sign(node, HttpMethod.GET, FILES_PATH + fileId, userId);
+    signedUrl.setFileId(fileId);
+    return ResponseEntity.ok(signedUrl);
+  }
+
+  /** Relays a file from its storage node to the client. */
+  private void proxyDownload(StorageNode node, Long fileId, Long userId, String range,
+                             String acceptedEncodings, HttpServletResponse response,
+                             DownloadTap tap) {
+    String downloadUrl = nodeUrl(node, HttpMethod.GET, fileId.toString(), userId);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HEADER_USER_ID, userId.toString());
+    if (range != null) {
+      headers.set(HttpHeaders.RANGE, range);
+    }
+    if (acceptedEncodings != null) {
+      headers.set(HttpHeaders.ACCEPT_ENCODING, acceptedEncodings);
+    }
+
+    // The length is known once the node answers; count it from then until the relay ends
+    try (InFlightTracker.Transfer transfer = loadBalancerService.beginLimitedTransfer(node, 0)) {
+      long startTime = System.currentTimeMillis();
+      fileTransferService.streamDownload(downloadUrl, headers, response,
+              (status, nodeHeaders, out) -> {
+                loadBalancerService.recordFirstByte(node, System.currentTimeMillis() - startTime);
+                transfer.addBytes(nodeHeaders.getContentLength());
+                return tap.attach(status, nodeHeaders, out);
+              });
+    }
+  }
+
+  /**
+   * Builds the URL of a file operation on a storage node. When URL signing is configured the URL
+   * is signed, so nodes that require signatures accept proxied requests too.
+   */
+  private String nodeUrl(StorageNode node, HttpMethod method, String path, Long userId) {
+    if (urlSigner.isEnabled()) {
+      return urlSigner.sign(node, method, FILES_PATH + path, userId).getUrl();
+    }
+    return String.format(apiPathFormat, node.getHostAddress(), node.getPort(), path);
+  }
+
+  /**
+   * Deletes many files in one request. Each storage node receives one request for all of its
+   * files, and the deleted files are tombstoned with a bulk update.
+   *
+   * @param fileIds The IDs of the files to delete
+   * @param userId The ID of the user deleting the files
+   * @return The deleted file IDs and a reason for each file that could not be deleted
+   */
+  @PostMapping("/delete/batch")
+  public ResponseEntity<Map<String, Object>> deleteFiles(
+          @RequestBody List<Long> fileIds, @RequestHeader(HEADER_USER_ID) Long userId) {
+    Map<String, Object> response = batchFileService.deleteFiles(fileIds, userId);
+    response.put(KEY_TIMESTAMP, Instant.now());
+    return ResponseEntity.ok(response);
+  }
+
   /**
    * Deletes a file from the storage node containing it.
    *
@@ -213,20 +532,29 @@ public class FileController {
     long startTime = System.currentTimeMillis();
     StorageNode node = null;
     try {
+      List<FileStripe> stripes = stripedFileService.getStripes(fileId);
+      if (!stripes.isEmpty()) {
+        if (!stripedFileService.delete(stripes, userId)) {
+          throw new FileOperationException(STRIPE_DELETION_FAILED);
+        }
+        loadBalancerService.deleteFileMetadata(fileId);
+        return ResponseEntity.noContent().build();
+      }
+
       node = loadBalancerService.getNodeForFile(fileId);
-      String deleteUrl = String.format(
-              apiPathFormat,
-              node.getHostAddress(),
-              node.getPort(),
-              fileId.toString());
+      String deleteUrl = nodeUrl(node, HttpMethod.DELETE, fileId.toString(), userId);
 
       HttpHeaders headers = new HttpHeaders();
       headers.set(HEADER_USER_ID, userId.toString());
 
-      restTemplate.exchange(deleteUrl, HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+      try (InFlightTracker.Transfer transfer = loadBalancerService.beginTransfer(node, 0)) {
+        restTemplate.exchange(
+                deleteUrl, HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+      }
 
       // Mark file as deleted in database
       loadBalancerService.deleteFileMetadata(fileId);
+      hotFileCache.invalidate(fileId);
 
       long duration = System.currentTimeMillis() - startTime;
       loadBalancerService.recordRequest(node.getContainerId().toString(), true, duration);
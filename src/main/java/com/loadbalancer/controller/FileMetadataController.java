@@ -1,6 +1,7 @@
 package com.loadbalancer.controller;
 
 import com.loadbalancer.model.entity.FileMetadata;
+import com.loadbalancer.model.enums.StorageTier;
 import com.loadbalancer.service.FileMetadataService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -54,6 +55,14 @@ public class FileMetadataController {
         return ResponseEntity.ok(stats);
     }
 
+    @GetMapping("/storage/statistics/tiers")
+    public ResponseEntity<Map<StorageTier, FileMetadataService.TierStorageStats>>
+            getTierStorageStatistics() {
+        Map<StorageTier, FileMetadataService.TierStorageStats> stats =
+            fileMetadataService.getTierStorageStatistics();
+        return ResponseEntity.ok(stats);
+    }
+
     @GetMapping("/files/inactive")
     public ResponseEntity<List<FileMetadata>> getInactiveFiles(
             @RequestParam(defaultValue = "30") int daysOld) {
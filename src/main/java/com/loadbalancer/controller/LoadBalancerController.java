@@ -3,8 +3,16 @@ package com.loadbalancer.controller;
 
 import com.loadbalancer.model.entity.StorageNode;
 import com.loadbalancer.service.LoadBalancerService;
+import com.loadbalancer.service.PlacementPolicyService;
+import com.loadbalancer.service.StorageNodeService;
+import com.loadbalancer.strategy.ConsistentHashStrategy;
+import com.loadbalancer.strategy.RendezvousHashStrategy;
+import java.util.List;
+import java.time.Instant;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,12 +22,18 @@ import org.springframework.web.bind.annotation.*;
 @Slf4j
 public class LoadBalancerController {
   private final LoadBalancerService loadBalancerService;
+  private final ConsistentHashStrategy consistentHashStrategy;
+  private final RendezvousHashStrategy rendezvousHashStrategy;
+  private final StorageNodeService storageNodeService;
+  private final PlacementPolicyService placementPolicyService;
 
   @GetMapping("/node")
   public ResponseEntity<StorageNode> getNode(
-      @RequestParam(required = false) String strategy, @RequestParam long fileSize) {
+      @RequestParam(required = false) String strategy,
+      @RequestParam long fileSize,
+      @RequestParam(required = false) String key) {
     try {
-      StorageNode node = loadBalancerService.selectNode(strategy, fileSize);
+      StorageNode node = loadBalancerService.selectNode(strategy, fileSize, key);
       loadBalancerService.incrementNodeConnections(node.getContainerId().toString());
       return ResponseEntity.ok(node);
     } catch (IllegalStateException e) {
@@ -27,6 +41,68 @@ public class LoadBalancerController {
     }
   }
 
+  /**
+   * Gets the consistent-hash ring: each node's share of the key space and the key ranges moved
+   * by the last membership change.
+   *
+   * @return The ring statistics
+   */
+  @GetMapping("/ring")
+  public ResponseEntity<Map<String, Object>> getRing() {
+    return ResponseEntity.ok(consistentHashStrategy.getRingStats());
+  }
+
+  /**
+   * Computes the rendezvous-hash placement of a key: the highest-ranked active nodes with room
+   * for the file, e.g. for its replicas. Nothing is stored or looked up.
+   *
+   * @param key The file key
+   * @param fileSize The size of the file in bytes
+   * @param count The number of nodes wanted
+   * @return Up to {@code count} nodes, best first
+   */
+  @GetMapping("/placement")
+  public ResponseEntity<List<StorageNode>> getPlacement(
+      @RequestParam String key,
+      @RequestParam(defaultValue = "0") long fileSize,
+      @RequestParam(defaultValue = "1") int count) {
+    return ResponseEntity.ok(
+        rendezvousHashStrategy.selectNodes(
+            storageNodeService.getAvailableNodes(), fileSize, key, Math.max(count, 1)));
+  }
+
+  /**
+   * Gets the placement policy rules in force: where they were loaded from and when, and the node
+   * pools they define.
+   *
+   * @return The policy statistics
+   */
+  @GetMapping("/policies")
+  public ResponseEntity<Map<String, Object>> getPolicies() {
+    return ResponseEntity.ok(placementPolicyService.getPolicyStats());
+  }
+
+  /**
+   * Reloads the placement policy rules now instead of at the next scheduled check. Invalid rules
+   * are rejected and the current ones stay in force.
+   *
+   * @return The reloaded policy statistics, or the reason the rules were rejected
+   */
+  @PostMapping("/policies/reload")
+  public ResponseEntity<Map<String, Object>> reloadPolicies() {
+    try {
+      return ResponseEntity.ok(placementPolicyService.reload());
+    } catch (IllegalArgumentException e) {
+      log.warn("Rejected placement rules: {}", e.getMessage());
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+          .body(
+              Map.of(
+                  "error", "Invalid placement rules",
+                  "message", e.getMessage(),
+                  "timestamp", Instant.now()));
+    }
+  }
+
   @PostMapping("/node/{nodeId}/complete")
   public ResponseEntity<Void> completeRequest(@PathVariable String nodeId) {
     loadBalancerService.decrementNodeConnections(nodeId);
@@ -1,8 +1,20 @@
 package com.loadbalancer.controller;
 
+import com.loadbalancer.model.dto.CoalescingStats;
+import com.loadbalancer.model.dto.ConnectionPoolStats;
+import com.loadbalancer.model.dto.FileCacheStats;
 import com.loadbalancer.model.dto.RequestStats;
+import com.loadbalancer.model.dto.TransferStats;
+import com.loadbalancer.service.AccessTimeBuffer;
+import com.loadbalancer.service.CapacityLedger;
+import com.loadbalancer.service.ConcurrencyLimiter;
+import com.loadbalancer.service.DownloadCoalescer;
+import com.loadbalancer.service.HotFileCache;
+import com.loadbalancer.service.InFlightTracker;
 import com.loadbalancer.service.MetricsService;
 import com.loadbalancer.service.StorageNodeService;
+import com.loadbalancer.strategy.PeakEwmaStrategy;
+import com.loadbalancer.util.InstrumentedConnectionManager;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +32,14 @@ import org.springframework.web.bind.annotation.*;
 public class MetricsController {
   private final MetricsService metricsService;
   private final StorageNodeService storageNodeService;
+  private final InstrumentedConnectionManager nodeConnectionManager;
+  private final DownloadCoalescer downloadCoalescer;
+  private final HotFileCache hotFileCache;
+  private final AccessTimeBuffer accessTimeBuffer;
+  private final InFlightTracker inFlightTracker;
+  private final PeakEwmaStrategy peakEwmaStrategy;
+  private final CapacityLedger capacityLedger;
+  private final ConcurrencyLimiter concurrencyLimiter;
 
   // Constants for duplicated literals
   private static final String KEY_ERROR = "error";
@@ -36,6 +56,24 @@ public class MetricsController {
   private static final String FAILED_NODES_STATS = "Failed to get nodes stats";
   private static final String SYSTEM_SUMMARY_ERROR = "Error getting system summary";
   private static final String FAILED_SYSTEM_SUMMARY = "Failed to get system summary";
+  private static final String TRANSFER_STATS_ERROR = "Error getting transfer stats";
+  private static final String FAILED_TRANSFER_STATS = "Failed to get transfer stats";
+  private static final String CONNECTION_POOL_STATS_ERROR = "Error getting connection pool stats";
+  private static final String FAILED_CONNECTION_POOL_STATS = "Failed to get connection pool stats";
+  private static final String COALESCING_STATS_ERROR = "Error getting coalescing stats";
+  private static final String FAILED_COALESCING_STATS = "Failed to get coalescing stats";
+  private static final String CACHE_STATS_ERROR = "Error getting file cache stats";
+  private static final String FAILED_CACHE_STATS = "Failed to get file cache stats";
+  private static final String ACCESS_STATS_ERROR = "Error getting access time stats";
+  private static final String FAILED_ACCESS_STATS = "Failed to get access time stats";
+  private static final String IN_FLIGHT_STATS_ERROR = "Error getting in-flight stats";
+  private static final String FAILED_IN_FLIGHT_STATS = "Failed to get in-flight stats";
+  private static final String PEAK_EWMA_STATS_ERROR = "Error getting peak EWMA scores";
+  private static final String FAILED_PEAK_EWMA_STATS = "Failed to get peak EWMA scores";
+  private static final String RESERVATION_STATS_ERROR = "Error getting capacity reservations";
+  private static final String FAILED_RESERVATION_STATS = "Failed to get capacity reservations";
+  private static final String CONCURRENCY_STATS_ERROR = "Error getting concurrency limits";
+  private static final String FAILED_CONCURRENCY_STATS = "Failed to get concurrency limits";
 
   /**
    * Get global request statistics.
@@ -129,4 +167,172 @@ public class MetricsController {
       return ResponseEntity.internalServerError().body(errorResponse);
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Get statistics for file transfers relayed through the load balancer.
+   *
+   * @return Response containing active transfers and bytes in flight
+   */
+  @GetMapping("/transfers")
+  public ResponseEntity<Object> getTransferStats() {
+    try {
+      TransferStats stats = metricsService.getTransferStats();
+      return ResponseEntity.ok(stats);
+    } catch (Exception e) {
+      log.error(TRANSFER_STATS_ERROR, e);
+      Map<String, String> errorResponse = new HashMap<>();
+      errorResponse.put(KEY_ERROR, FAILED_TRANSFER_STATS);
+      errorResponse.put(KEY_MESSAGE, e.getMessage());
+      return ResponseEntity.internalServerError().body(errorResponse);
+    }
+  }
+
+  /**
+   * Get utilization and lease wait statistics for the storage node connection pool.
+   *
+   * @return Response containing pool statistics, overall and per node
+   */
+  @GetMapping("/connection-pool")
+  public ResponseEntity<Object> getConnectionPoolStats() {
+    try {
+      ConnectionPoolStats stats = nodeConnectionManager.getConnectionPoolStats();
+      return ResponseEntity.ok(stats);
+    } catch (Exception e) {
+      log.error(CONNECTION_POOL_STATS_ERROR, e);
+      Map<String, String> errorResponse = new HashMap<>();
+      errorResponse.put(KEY_ERROR, FAILED_CONNECTION_POOL_STATS);
+      errorResponse.put(KEY_MESSAGE, e.getMessage());
+      return ResponseEntity.internalServerError().body(errorResponse);
+    }
+  }
+
+  /**
+   * Get statistics for downloads served from a shared in-flight fetch of the same file.
+   *
+   * @return Response containing upstream fetches, coalesced requests and the coalescing ratio
+   */
+  @GetMapping("/coalescing")
+  public ResponseEntity<Object> getCoalescingStats() {
+    try {
+      CoalescingStats stats = downloadCoalescer.getCoalescingStats();
+      return ResponseEntity.ok(stats);
+    } catch (Exception e) {
+      log.error(COALESCING_STATS_ERROR, e);
+      Map<String, String> errorResponse = new HashMap<>();
+      errorResponse.put(KEY_ERROR, FAILED_COALESCING_STATS);
+      errorResponse.put(KEY_MESSAGE, e.getMessage());
+      return ResponseEntity.internalServerError().body(errorResponse);
+    }
+  }
+
+  /**
+   * Get hit, miss and eviction statistics for the hot file cache.
+   *
+   * @return Response containing cache size and counters
+   */
+  @GetMapping("/cache")
+  public ResponseEntity<Object> getFileCacheStats() {
+    try {
+      FileCacheStats stats = hotFileCache.getCacheStats();
+      return ResponseEntity.ok(stats);
+    } catch (Exception e) {
+      log.error(CACHE_STATS_ERROR, e);
+      Map<String, String> errorResponse = new HashMap<>();
+      errorResponse.put(KEY_ERROR, FAILED_CACHE_STATS);
+      errorResponse.put(KEY_MESSAGE, e.getMessage());
+      return ResponseEntity.internalServerError().body(errorResponse);
+    }
+  }
+
+  /**
+   * Get statistics for the write-behind buffer of file access times.
+   *
+   * @return Response containing recorded accesses, flushed updates and buffered files
+   */
+  @GetMapping("/access-times")
+  public ResponseEntity<Object> getAccessTimeStats() {
+    try {
+      return ResponseEntity.ok(accessTimeBuffer.getStats());
+    } catch (Exception e) {
+      log.error(ACCESS_STATS_ERROR, e);
+      Map<String, String> errorResponse = new HashMap<>();
+      errorResponse.put(KEY_ERROR, FAILED_ACCESS_STATS);
+      errorResponse.put(KEY_MESSAGE, e.getMessage());
+      return ResponseEntity.internalServerError().body(errorResponse);
+    }
+  }
+
+  /**
+   * Get the requests and bytes currently in flight to each node.
+   *
+   * @return Response containing the in-flight requests and bytes by node ID
+   */
+  @GetMapping("/in-flight")
+  public ResponseEntity<Object> getInFlightStats() {
+    try {
+      return ResponseEntity.ok(inFlightTracker.getStats());
+    } catch (Exception e) {
+      log.error(IN_FLIGHT_STATS_ERROR, e);
+      Map<String, String> errorResponse = new HashMap<>();
+      errorResponse.put(KEY_ERROR, FAILED_IN_FLIGHT_STATS);
+      errorResponse.put(KEY_MESSAGE, e.getMessage());
+      return ResponseEntity.internalServerError().body(errorResponse);
+    }
+  }
+
+  /**
+   * Get the live peak-EWMA score of each active node.
+   *
+   * @return Response containing each node's response time estimate, requests in flight and cost
+   */
+  @GetMapping("/peak-ewma")
+  public ResponseEntity<Object> getPeakEwmaScores() {
+    try {
+      return ResponseEntity.ok(peakEwmaStrategy.getScores());
+    } catch (Exception e) {
+      log.error(PEAK_EWMA_STATS_ERROR, e);
+      Map<String, String> errorResponse = new HashMap<>();
+      errorResponse.put(KEY_ERROR, FAILED_PEAK_EWMA_STATS);
+      errorResponse.put(KEY_MESSAGE, e.getMessage());
+      return ResponseEntity.internalServerError().body(errorResponse);
+    }
+  }
+
+  /**
+   * Get the space reserved by uploads in progress and the space committed by finished uploads
+   * that the nodes' heartbeats do not show yet.
+   *
+   * @return Response containing the reserved and committed bytes by node ID
+   */
+  @GetMapping("/reservations")
+  public ResponseEntity<Object> getReservationStats() {
+    try {
+      return ResponseEntity.ok(capacityLedger.getStats());
+    } catch (Exception e) {
+      log.error(RESERVATION_STATS_ERROR, e);
+      Map<String, String> errorResponse = new HashMap<>();
+      errorResponse.put(KEY_ERROR, FAILED_RESERVATION_STATS);
+      errorResponse.put(KEY_MESSAGE, e.getMessage());
+      return ResponseEntity.internalServerError().body(errorResponse);
+    }
+  }
+
+  /**
+   * Get the adaptive concurrency limit of each node, with its requests in flight and the requests
+   * rejected at the limit.
+   *
+   * @return Response containing the limit, in-flight and rejection counts by node ID
+   */
+  @GetMapping("/concurrency-limits")
+  public ResponseEntity<Object> getConcurrencyLimits() {
+    try {
+      return ResponseEntity.ok(concurrencyLimiter.getStats());
+    } catch (Exception e) {
+      log.error(CONCURRENCY_STATS_ERROR, e);
+      Map<String, String> errorResponse = new HashMap<>();
+      errorResponse.put(KEY_ERROR, FAILED_CONCURRENCY_STATS);
+      errorResponse.put(KEY_MESSAGE, e.getMessage());
+      return ResponseEntity.internalServerError().body(errorResponse);
+    }
+  }
+}
@@ -2,9 +2,11 @@ package com.loadbalancer.controller;
 
 import com.loadbalancer.model.entity.StorageNode;
 import com.loadbalancer.model.enums.NodeStatus;
+import com.loadbalancer.model.enums.StorageTier;
 import com.loadbalancer.service.StorageNodeService;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +33,10 @@ public class NodeRegistrationController {
   private static final String KEY_PORT = "port";
   private static final String KEY_CAPACITY = "capacity";
   private static final String KEY_USED_SPACE = "usedSpace";
+  private static final String KEY_TIMESTAMP = "timestamp";
+  private static final String KEY_TIER = "tier";
+  private static final String KEY_READ_THROUGHPUT = "readThroughput";
+  private static final String KEY_WRITE_THROUGHPUT = "writeThroughput";
   private static final String VALUE_SUCCESS = "success";
   private static final String VALUE_ERROR = "error";
   private static final String NODE_ALREADY_REGISTERED = "Node already registered and activated";
@@ -68,10 +74,13 @@ public class NodeRegistrationController {
       }
 
       Long containerId = Long.valueOf(nodeData.get(KEY_CONTAINER_ID).toString());
+      StorageTier tier = parseTier(nodeData.get(KEY_TIER));
+      Long readThroughput = parseOptionalLong(nodeData.get(KEY_READ_THROUGHPUT));
+      Long writeThroughput = parseOptionalLong(nodeData.get(KEY_WRITE_THROUGHPUT));
 
       // Check if node already exists and is active
       if (storageNodeService.isNodeRegistered(containerId)) {
-        storageNodeService.activateNode(containerId);
+        storageNodeService.activateNode(containerId, tier, readThroughput, writeThroughput);
         Map<String, Object> response = new HashMap<>();
         response.put(KEY_STATUS, VALUE_SUCCESS);
         response.put(KEY_MESSAGE, NODE_ALREADY_REGISTERED);
@@ -86,6 +95,9 @@ public class NodeRegistrationController {
                       .hostAddress(nodeData.get(KEY_HOST_ADDRESS).toString())
                       .port(Integer.valueOf(nodeData.get(KEY_PORT).toString()))
                       .capacity(Long.valueOf(nodeData.get(KEY_CAPACITY).toString()))
+                      .tier(tier != null ? tier : StorageTier.SSD)
+                      .readThroughput(readThroughput)
+                      .writeThroughput(writeThroughput)
                       .status(NodeStatus.ACTIVE)
                       .usedSpace(0L)
                       .createdAt(LocalDateTime.now())
@@ -108,6 +120,18 @@ public class NodeRegistrationController {
     }
   }
 
+  /** Parses an advertised tier, e.g. {@code nvme}; null if the node does not advertise one. */
+  private static StorageTier parseTier(Object value) {
+    if (value == null || value.toString().isBlank()) {
+      return null;
+    }
+    return StorageTier.valueOf(value.toString().trim().toUpperCase(Locale.ROOT));
+  }
+
+  private static Long parseOptionalLong(Object value) {
+    return value == null ? null : Long.valueOf(value.toString());
+  }
+
   /**
    * Processes heartbeat messages from storage nodes.
    *
@@ -117,12 +141,17 @@ public class NodeRegistrationController {
   @PostMapping("/heartbeat")
   public ResponseEntity<Map<String, Object>> nodeHeartbeat(
           @RequestBody Map<String, Object> heartbeatData) {
+    long receivedAt = System.currentTimeMillis();
     try {
       Long containerId = Long.valueOf(heartbeatData.get(KEY_CONTAINER_ID).toString());
       String status = heartbeatData.getOrDefault(KEY_STATUS, VALUE_ACTIVE).toString();
       Long usedSpace = Long.valueOf(heartbeatData.getOrDefault(KEY_USED_SPACE, 0L).toString());
+      Long timestamp = parseOptionalLong(heartbeatData.get(KEY_TIMESTAMP));
+      // A node clock running ahead must not settle uploads committed after the heartbeat was sent
+      long measuredAt = timestamp == null ? receivedAt : Math.min(timestamp, receivedAt);
 
-      storageNodeService.updateNodeStatus(containerId, NodeStatus.valueOf(status), usedSpace);
+      storageNodeService.updateNodeStatus(
+              containerId, NodeStatus.valueOf(status), usedSpace, measuredAt);
 
       Map<String, Object> response = new HashMap<>();
       response.put(KEY_STATUS, VALUE_SUCCESS);
@@ -0,0 +1,367 @@
+package com.loadbalancer.controller;
+
+import com.loadbalancer.exception.LoadBalancerException;
+import com.loadbalancer.exception.NodeOverloadedException;
+import com.loadbalancer.model.dto.PlacementDecision;
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.FileMetadataService;
+import com.loadbalancer.service.FileTransferService;
+import com.loadbalancer.service.InFlightTracker;
+import com.loadbalancer.service.LoadBalancerService;
+import com.loadbalancer.service.MetricsService;
+import com.loadbalancer.service.PlacementPolicyService;
+import com.loadbalancer.util.ContentEncodingNegotiator;
+import com.loadbalancer.util.UrlSigner;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Handler functions for the reactive gateway. Mirrors the upload and download endpoints of
+ * {@link FileController}, but relays request and response bodies as backpressured streams of
+ * buffers instead of copying them on a request thread. Routing and metadata calls are blocking
+ * JPA work and run on the bounded elastic scheduler.
+ */
+@Component
+@ConditionalOnProperty(prefix = "loadbalancer.reactive", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveFileHandler {
+  private final LoadBalancerService loadBalancerService;
+  private final FileMetadataService fileMetadataService;
+  private final MetricsService metricsService;
+  private final PlacementPolicyService placementPolicyService;
+  private final WebClient nodeWebClient;
+  private final UrlSigner urlSigner;
+  private final ContentEncodingNegotiator encodingNegotiator;
+
+  // Constants for duplicated literals
+  private static final String HEADER_USER_ID = "X-User-ID";
+  private static final String HEADER_FILE_NAME = "X-File-Name";
+  private static final String HEADER_PLACEMENT_POLICY = "X-Placement-Policy";
+  private static final String KEY_ERROR = "error";
+  private static final String KEY_MESSAGE = "message";
+  private static final String KEY_TIMESTAMP = "timestamp";
+  private static final String UPLOAD_PATH = "upload";
+  private static final String FILES_PATH = "/api/v1/files/";
+  private static final String UPLOAD_FAILED = "Upload failed";
+  private static final String DOWNLOAD_FAILED = "Download failed";
+  private static final String NOT_MULTIPART = "Upload request must be multipart/form-data";
+  private static final String MISSING_USER_ID = "Missing X-User-ID header";
+  private static final String FILE_STRIPED = "Striped files are only served by the servlet API";
+  private static final String RETRY_AFTER_SECONDS = "1";
+  private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_MAP_TYPE =
+      new ParameterizedTypeReference<>() {};
+
+  @Value("${api.storage.path.format:http://%s:%d/api/v1/files/%s}")
+  private String apiPathFormat;
+
+  /**
+   * Streams a multipart upload to the selected storage node and records its metadata.
+   *
+   * @param request The incoming multipart request
+   * @return Response from the storage node, or an error response
+   */
+  public Mono<ServerResponse> uploadFile(ServerRequest request) {
+    String userId = request.headers().firstHeader(HEADER_USER_ID);
+    MediaType contentType = request.headers().contentType().orElse(null);
+    if (userId == null) {
+      return errorResponse(HttpStatus.BAD_REQUEST, UPLOAD_FAILED, MISSING_USER_ID);
+    }
+    if (contentType == null || !MediaType.MULTIPART_FORM_DATA.includes(contentType)) {
+      return errorResponse(HttpStatus.BAD_REQUEST, UPLOAD_FAILED, NOT_MULTIPART);
+    }
+
+    long contentLength = request.headers().contentLength().orElse(-1);
+    long startTime = System.currentTimeMillis();
+
+    String fileName = request.headers().firstHeader(HEADER_FILE_NAME);
+    PlacementDecision placement;
+    try {
+      placement =
+          placementPolicyService.resolve(
+              Long.valueOf(userId),
+              contentLength,
+              PlacementPolicyService.contentTypeFor(fileName),
+              request.headers().firstHeader(HEADER_PLACEMENT_POLICY));
+    } catch (LoadBalancerException e) {
+      return errorResponse(e.getStatus(), UPLOAD_FAILED, e.getMessage());
+    }
+
+    return blocking(
+            () ->
+                loadBalancerService.reserveNode(
+                    placement,
+                    Math.max(contentLength, 0),
+                    LoadBalancerService.fileKey(Long.valueOf(userId), fileName)))
+        .flatMap(
+            reservation -> {
+              StorageNode node = reservation.getNode();
+              return Mono.using(
+                      () ->
+                          loadBalancerService.beginLimitedTransfer(
+                              node, Math.max(contentLength, 0)),
+                      transfer -> uploadToNode(request, node, userId, contentType, contentLength),
+                      InFlightTracker.Transfer::close)
+                  .doOnSuccess(
+                      response -> {
+                        reservation.commit();
+                        recordRequest(node, true, startTime);
+                      })
+                  // Rejected before the node was contacted, so not a sign of the node's health
+                  .doOnError(
+                      e -> !(e instanceof NodeOverloadedException),
+                      e -> recordRequest(node, false, startTime))
+                  .doFinally(signal -> reservation.close());
+            })
+        .flatMap(response -> ServerResponse.ok().bodyValue(response))
+        .onErrorResume(NodeOverloadedException.class, this::overloadedResponse)
+        .onErrorResume(
+            e -> {
+              log.error("Reactive file upload failed", e);
+              return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, UPLOAD_FAILED, e.getMessage());
+            });
+  }
+
+  /** Streams the upload body to a node and records the metadata of the stored file. */
+  private Mono<Map<String, Object>> uploadToNode(
+      ServerRequest request,
+      StorageNode node,
+      String userId,
+      MediaType contentType,
+      long contentLength) {
+    return nodeWebClient
+        .post()
+        .uri(nodeUrl(node, HttpMethod.POST, UPLOAD_PATH, userId))
+        .headers(
+            headers -> {
+              headers.set(HEADER_USER_ID, userId);
+              headers.setContentType(contentType);
+              if (contentLength >= 0) {
+                headers.setContentLength(contentLength);
+              }
+            })
+        .body(BodyInserters.fromDataBuffers(metered(request.bodyToFlux(DataBuffer.class))))
+        .retrieve()
+        .bodyToMono(RESPONSE_MAP_TYPE)
+        .flatMap(response -> blocking(() -> storeMetadata(response, node, userId)));
+  }
+
+  /**
+   * Streams a file from the storage node that holds it, forwarding any Range header.
+   *
+   * @param request The incoming request
+   * @return The streamed file content, or an error response
+   */
+  public Mono<ServerResponse> downloadFile(ServerRequest request) {
+    String userId = request.headers().firstHeader(HEADER_USER_ID);
+    if (userId == null) {
+      return errorResponse(HttpStatus.BAD_REQUEST, DOWNLOAD_FAILED, MISSING_USER_ID);
+    }
+
+    Long fileId = Long.valueOf(request.pathVariable("fileId"));
+    String range = request.headers().firstHeader(HttpHeaders.RANGE);
+    String acceptedEncodings =
+        encodingNegotiator.negotiate(request.headers().firstHeader(HttpHeaders.ACCEPT_ENCODING));
+    long startTime = System.currentTimeMillis();
+
+    return blocking(() -> nodeForUnstripedFile(fileId))
+        .flatMap(
+            node -> {
+              // Ends when the relayed body does, which is after the response has been returned
+              InFlightTracker.Transfer transfer = loadBalancerService.beginLimitedTransfer(node, 0);
+              long requestTime = System.currentTimeMillis();
+              return nodeWebClient
+                  .get()
+                  .uri(nodeUrl(node, HttpMethod.GET, fileId.toString(), userId))
+                  .headers(
+                      headers -> {
+                        headers.set(HEADER_USER_ID, userId);
+                        if (range != null) {
+                          headers.set(HttpHeaders.RANGE, range);
+                        }
+                        if (acceptedEncodings != null) {
+                          headers.set(HttpHeaders.ACCEPT_ENCODING, acceptedEncodings);
+                        }
+                      })
+                  .retrieve()
+                  // Pass unsatisfiable ranges through instead of treating them as failures
+                  .onStatus(
+                      status -> status.value() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(),
+                      response -> Mono.empty())
+                  .toEntityFlux(DataBuffer.class)
+                  .flatMap(
+                      entity ->
+                          relayDownload(entity, node, fileId, startTime, requestTime, transfer))
+                  .doOnError(
+                      e -> {
+                        transfer.close();
+                        recordRequest(node, false, startTime);
+                      });
+            })
+        .onErrorResume(NodeOverloadedException.class, this::overloadedResponse)
+        .onErrorResume(
+            e -> {
+              log.error("Reactive file download failed", e);
+              return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, DOWNLOAD_FAILED, e.getMessage());
+            });
+  }
+
+  /** Looks up the node holding a file; striped files span several nodes and are rejected. */
+  private StorageNode nodeForUnstripedFile(Long fileId) {
+    if (!fileMetadataService.getStripes(fileId).isEmpty()) {
+      throw new LoadBalancerException(FILE_STRIPED, HttpStatus.CONFLICT, "FILE_STRIPED");
+    }
+    return loadBalancerService.getNodeForFile(fileId);
+  }
+
+  private Mono<ServerResponse> relayDownload(
+      ResponseEntity<Flux<DataBuffer>> entity,
+      StorageNode node,
+      Long fileId,
+      long startTime,
+      long requestTime,
+      InFlightTracker.Transfer transfer) {
+    // The entity arrives with the node's response headers, before any of the body
+    loadBalancerService.recordFirstByte(node, System.currentTimeMillis() - requestTime);
+    ServerResponse.BodyBuilder builder =
+        ServerResponse.status(entity.getStatusCode())
+            .headers(
+                headers ->
+                    FileTransferService.RELAYED_RESPONSE_HEADERS.forEach(
+                        name -> {
+                          if (entity.getHeaders().containsKey(name)) {
+                            headers.put(name, entity.getHeaders().get(name));
+                          }
+                        }));
+    if (entity.getStatusCode().value() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+      transfer.close();
+      return builder.build();
+    }
+
+    transfer.addBytes(entity.getHeaders().getContentLength());
+    Flux<DataBuffer> body =
+        metered(entity.getBody() != null ? entity.getBody() : Flux.empty())
+            .doFinally(signal -> transfer.close())
+            .doOnComplete(
+                () ->
+                    blocking(
+                            () -> {
+                              loadBalancerService.updateFileAccess(fileId);
+                              return fileId;
+                            })
+                        .subscribe(
+                            id -> recordRequest(node, true, startTime),
+                            e -> log.warn("Failed to update access time for file {}", fileId, e)));
+
+    return builder.body(BodyInserters.fromDataBuffers(body));
+  }
+
+  private Map<String, Object> storeMetadata(
+      Map<String, Object> response, StorageNode node, String userId) {
+    if (response.containsKey("fileId")) {
+      String originalFilename = String.valueOf(response.get("fileName"));
+      Long fileSize = Long.valueOf(response.get("fileSize").toString());
+      String fileContentType =
+          response.get("contentType") != null ? response.get("contentType").toString() : null;
+
+      loadBalancerService.storeFileMetadata(
+          originalFilename,
+          LoadBalancerService.storedFileName(response),
+          fileSize,
+          fileContentType,
+          node.getContainerId(),
+          Long.valueOf(userId),
+          null);
+
+      Map<String, Object> result = new HashMap<>(response);
+      result.put("nodeId", node.getContainerId());
+      result.put("nodeName", node.getContainerName());
+      return result;
+    }
+    return response;
+  }
+
+  /**
+   * Wraps a body stream so each relayed buffer is counted in the transfer metrics, as the
+   * servlet path does per buffer copy.
+   */
+  private Flux<DataBuffer> metered(Flux<DataBuffer> body) {
+    return Flux.defer(
+        () -> {
+          AtomicLong transferred = new AtomicLong(0);
+          metricsService.recordTransferStarted();
+          return body.doOnNext(
+                  buffer -> {
+                    int bytes = buffer.readableByteCount();
+                    transferred.addAndGet(bytes);
+                    metricsService.recordTransferProgress(bytes);
+                  })
+              .doFinally(
+                  signal ->
+                      metricsService.recordTransferFinished(
+                          transferred.get(), signal == SignalType.ON_COMPLETE));
+        });
+  }
+
+  private <T> Mono<T> blocking(Callable<T> call) {
+    return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+  }
+
+  private String nodeUrl(StorageNode node, HttpMethod method, String path, String userId) {
+    if (urlSigner.isEnabled()) {
+      return urlSigner.sign(node, method, FILES_PATH + path, Long.valueOf(userId)).getUrl();
+    }
+    return String.format(apiPathFormat, node.getHostAddress(), node.getPort(), path);
+  }
+
+  private void recordRequest(StorageNode node, boolean success, long startTime) {
+    long duration = System.currentTimeMillis() - startTime;
+    loadBalancerService.recordRequest(node.getContainerId().toString(), success, duration);
+  }
+
+  /**
+   * Answers a request rejected at a node's concurrency limit the way the servlet API does, with
+   * a 503 telling the client to retry shortly.
+   */
+  private Mono<ServerResponse> overloadedResponse(NodeOverloadedException e) {
+    log.warn("Rejected request: {}", e.getMessage());
+    return ServerResponse.status(e.getStatus())
+        .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+        .bodyValue(errorBody(e.getStatus().getReasonPhrase(), e.getMessage()));
+  }
+
+  private Mono<ServerResponse> errorResponse(HttpStatus status, String error, String message) {
+    return ServerResponse.status(status).bodyValue(errorBody(error, message));
+  }
+
+  private Map<String, Object> errorBody(String error, String message) {
+    Map<String, Object> errorResponse = new HashMap<>();
+    errorResponse.put(KEY_ERROR, error);
+    errorResponse.put(KEY_MESSAGE, message);
+    errorResponse.put(KEY_TIMESTAMP, Instant.now());
+    return errorResponse;
+  }
+}
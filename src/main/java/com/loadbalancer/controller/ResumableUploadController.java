@@ -0,0 +1,120 @@
+package com.loadbalancer.controller;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.model.dto.SignedUrl;
+import com.loadbalancer.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for resumable uploads of large files. A client initiates an upload, uploads the
+ * parts (in parallel, retrying failed parts on their own), and completes the upload once every
+ * part has been received. Progress can be queried at any time to find the parts still missing.
+ */
+@RestController
+@RequestMapping("/api/v1/files/uploads")
+@RequiredArgsConstructor
+public class ResumableUploadController {
+  private final ResumableUploadService resumableUploadService;
+  private final LoadBalancerConfig config;
+
+  // Constants
+  private static final String HEADER_USER_ID = "X-User-ID";
+  private static final String HEADER_PLACEMENT_POLICY = "X-Placement-Policy";
+  private static final String KEY_TIMESTAMP = "timestamp";
+
+  /**
+   * Initiates a resumable upload.
+   *
+   * @param request The fileName, contentType, fileSize and optional partSize
+   * @param userId The ID of the user uploading the file
+   * @param policyName The placement policy to apply, optional; placement rules decide otherwise
+   * @return The upload ID and the part size and count to upload
+   */
+  @PostMapping
+  public ResponseEntity<Map<String, Object>> initiateUpload(
+          @RequestBody Map<String, Object> request,
+          @RequestHeader(HEADER_USER_ID) Long userId,
+          @RequestHeader(value = HEADER_PLACEMENT_POLICY, required = false) String policyName) {
+    Map<String, Object> response = resumableUploadService.initiate(request, userId, policyName);
+    return ResponseEntity.status(HttpStatus.CREATED).body(response);
+  }
+
+  /**
+   * Uploads one part of a resumable upload. The request body is the raw part content; every part
+   * but the last must be exactly the part size. When direct access is enabled, the client is
+   * redirected to a signed URL on the node holding the upload.
+   *
+   * @param uploadId The upload ID
+   * @param partNumber The part number, starting at 1
+   * @param userId The ID of the user uploading the file
+   * @param request The incoming request carrying the part
+   * @return The receipt for the part, or a redirect to the storage node
+   * @throws IOException If the request body cannot be read
+   */
+  @PutMapping("/{uploadId}/parts/{partNumber}")
+  public ResponseEntity<Map<String, Object>> uploadPart(
+          @PathVariable String uploadId,
+          @PathVariable int partNumber,
+          @RequestHeader(HEADER_USER_ID) Long userId,
+          HttpServletRequest request) throws IOException {
+    if (config.getDirect().isEnabled()) {
+      SignedUrl signedUrl = resumableUploadService.createPartUrl(uploadId, partNumber, userId);
+      return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+              .location(URI.create(signedUrl.getUrl()))
+              .build();
+    }
+    long contentLength = request.getContentLengthLong();
+    return ResponseEntity.ok(resumableUploadService.uploadPart(
+            uploadId, partNumber, request.getInputStream(), contentLength, userId));
+  }
+
+  /**
+   * Gets the progress of a resumable upload.
+   *
+   * @param uploadId The upload ID
+   * @param userId The ID of the user uploading the file
+   * @return The received and missing parts, and when the upload expires if left idle
+   */
+  @GetMapping("/{uploadId}")
+  public ResponseEntity<Map<String, Object>> getUploadProgress(
+          @PathVariable String uploadId, @RequestHeader(HEADER_USER_ID) Long userId) {
+    return ResponseEntity.ok(resumableUploadService.getProgress(uploadId, userId));
+  }
+
+  /**
+   * Completes a resumable upload once every part has been received.
+   *
+   * @param uploadId The upload ID
+   * @param userId The ID of the user uploading the file
+   * @return The stored file details
+   */
+  @PostMapping("/{uploadId}/complete")
+  public ResponseEntity<Map<String, Object>> completeUpload(
+          @PathVariable String uploadId, @RequestHeader(HEADER_USER_ID) Long userId) {
+    Map<String, Object> response = resumableUploadService.complete(uploadId, userId);
+    response.put(KEY_TIMESTAMP, Instant.now());
+    return ResponseEntity.ok(response);
+  }
+
+  /**
+   * Aborts a resumable upload and discards the parts received so far.
+   *
+   * @param uploadId The upload ID
+   * @param userId The ID of the user uploading the file
+   * @return No content
+   */
+  @DeleteMapping("/{uploadId}")
+  public ResponseEntity<Void> abortUpload(
+          @PathVariable String uploadId, @RequestHeader(HEADER_USER_ID) Long userId) {
+    resumableUploadService.abort(uploadId, userId);
+    return ResponseEntity.noContent().build();
+  }
+}
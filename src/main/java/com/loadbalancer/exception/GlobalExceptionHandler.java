@@ -5,6 +5,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @RestControllerAdvice
 @Slf4j
 public class GlobalExceptionHandler {
+  private static final String RETRY_AFTER_SECONDS = "1";
 
   @ExceptionHandler(LoadBalancerException.class)
   public ResponseEntity<Map<String, Object>> handleLoadBalancerException(LoadBalancerException ex) {
@@ -28,6 +30,27 @@ public class GlobalExceptionHandler {
     return new ResponseEntity<>(response, ex.getStatus());
   }
 
+  /**
+   * Answers a request rejected at a node's concurrency limit. Rejections are expected under
+   * overload, so they are logged briefly, and the client is told to retry shortly.
+   */
+  @ExceptionHandler(NodeOverloadedException.class)
+  public ResponseEntity<Map<String, Object>> handleNodeOverloadedException(
+      NodeOverloadedException ex) {
+    log.warn("Rejected request: {}", ex.getMessage());
+
+    Map<String, Object> response = new HashMap<>();
+    response.put("timestamp", LocalDateTime.now());
+    response.put("status", ex.getStatus().value());
+    response.put("error", ex.getStatus().getReasonPhrase());
+    response.put("message", ex.getMessage());
+    response.put("errorCode", ex.getErrorCode());
+
+    return ResponseEntity.status(ex.getStatus())
+        .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+        .body(response);
+  }
+
   @ExceptionHandler(Exception.class)
   public ResponseEntity<Map<String, Object>> handleGenericException(Exception ex) {
     log.error("Unexpected error: {}", ex.getMessage(), ex);
@@ -0,0 +1,11 @@
+// exception/NodeOverloadedException.java
+package com.loadbalancer.exception;
+
+import org.springframework.http.HttpStatus;
+
+/** Thrown when a request is rejected because its node is at its concurrency limit. */
+public class NodeOverloadedException extends LoadBalancerException {
+  public NodeOverloadedException(String message) {
+    super(message, HttpStatus.SERVICE_UNAVAILABLE, "NODE_OVERLOADED");
+  }
+}
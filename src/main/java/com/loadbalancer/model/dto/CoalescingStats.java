@@ -0,0 +1,15 @@
+package com.loadbalancer.model.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CoalescingStats {
+  private int inFlight;
+  private long upstreamFetches;
+  private long coalescedRequests;
+  private long fallbackFetches;
+  private double coalescingRatio;
+  private long maxFileSize;
+}
@@ -0,0 +1,30 @@
+// model/dto/ConnectionPoolStats.java
+package com.loadbalancer.model.dto;
+
+import java.util.Map;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ConnectionPoolStats {
+  private int leased;
+  private int available;
+  private int pending;
+  private int maxTotal;
+  private int maxPerNode;
+  private double utilization;
+  private long leaseRequests;
+  private double averageLeaseWaitMs;
+  private double maxLeaseWaitMs;
+  private Map<String, NodePoolStats> nodes;
+
+  @Data
+  @Builder
+  public static class NodePoolStats {
+    private int leased;
+    private int available;
+    private int pending;
+    private int max;
+  }
+}
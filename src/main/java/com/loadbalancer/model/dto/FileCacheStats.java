@@ -0,0 +1,19 @@
+package com.loadbalancer.model.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class FileCacheStats {
+  private boolean enabled;
+  private long entries;
+  private long cachedBytes;
+  private int maxEntries;
+  private long maxBytes;
+  private long maxFileSize;
+  private long hitCount;
+  private long missCount;
+  private double hitRate;
+  private long evictionCount;
+}
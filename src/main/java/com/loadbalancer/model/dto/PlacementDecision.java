@@ -0,0 +1,36 @@
+package com.loadbalancer.model.dto;
+
+import com.loadbalancer.model.enums.StorageTier;
+import java.util.Set;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Where an upload goes: the strategy to select its node with, the pool to select it from and the
+ * tiers to prefer within the pool.
+ */
+@Data
+@Builder(toBuilder = true)
+public class PlacementDecision {
+  // Name of the matching rule; null if no rule matched
+  private String rule;
+  // Strategy bean name; null for the default strategy
+  private String strategy;
+  // Pool name; null for all active nodes
+  private String pool;
+  // IDs of the nodes in the pool; null for all active nodes
+  private Set<Long> nodeIds;
+  // Tiers preferred within the pool, falling back to any tier; null for no preference
+  private Set<StorageTier> tiers;
+
+  /**
+   * A placement on any active node with the given strategy, for callers that name a strategy
+   * directly.
+   *
+   * @param strategy The strategy bean name, or null for the default strategy
+   * @return The placement
+   */
+  public static PlacementDecision ofStrategy(String strategy) {
+    return PlacementDecision.builder().strategy(strategy).build();
+  }
+}
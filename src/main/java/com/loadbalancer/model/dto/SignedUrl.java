@@ -0,0 +1,15 @@
+package com.loadbalancer.model.dto;
+
+import java.time.Instant;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SignedUrl {
+  private String url;
+  private String method;
+  private Instant expiresAt;
+  private Long nodeId;
+  private Long fileId;
+}
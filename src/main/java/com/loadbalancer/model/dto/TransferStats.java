@@ -0,0 +1,18 @@
+// model/dto/TransferStats.java
+package com.loadbalancer.model.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TransferStats {
+  private long activeTransfers;
+  private long bytesInFlight;
+  private long completedTransfers;
+  private long failedTransfers;
+  private long totalBytesTransferred;
+  private long compressedTransfers;
+  private long compressedBytesTransferred;
+  private int bufferSize;
+}
@@ -0,0 +1,54 @@
+package com.loadbalancer.model.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One column of a striped file: the file stored on one node that holds every stripe unit
+ * assigned to that node. Unit {@code k} of a file striped across {@code n} columns is held by
+ * column {@code k % n}, at offset {@code (k / n) * stripeSize} in the column's file.
+ */
+@Entity
+@Table(name = "FileStripe")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileStripe {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "stripe_id")
+    private Long stripeId;
+
+    @NotNull(message = "File ID cannot be null")
+    @Column(name = "file_id", nullable = false)
+    private Long fileId;
+
+    @NotNull(message = "Stripe index cannot be null")
+    @Column(name = "stripe_index", nullable = false)
+    private Integer stripeIndex;
+
+    @NotNull(message = "Stripe count cannot be null")
+    @Column(name = "stripe_count", nullable = false)
+    private Integer stripeCount;
+
+    @NotNull(message = "Stripe size cannot be null")
+    @Column(name = "stripe_size", nullable = false)
+    private Long stripeSize;
+
+    @NotNull(message = "Node ID cannot be null")
+    @Column(name = "node_id", nullable = false)
+    private Long nodeId;
+
+    @NotNull(message = "Node file ID cannot be null")
+    @Column(name = "node_file_id", nullable = false)
+    private Long nodeFileId;
+
+    @NotNull(message = "Length cannot be null")
+    @Column(name = "length", nullable = false)
+    private Long length;
+}
@@ -1,6 +1,7 @@
 package com.loadbalancer.model.entity;
 
 import com.loadbalancer.model.enums.NodeStatus;
+import com.loadbalancer.model.enums.StorageTier;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -19,7 +20,7 @@ import org.hibernate.annotations.DynamicUpdate;
       @UniqueConstraint(columnNames = {"container_name", "host_address", "port"})
     })
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @DynamicUpdate
@@ -56,6 +57,18 @@ public class StorageNode {
   @Column(name = "status", nullable = false)
   private NodeStatus status = NodeStatus.ACTIVE;
 
+  @Builder.Default
+  @Enumerated(EnumType.STRING)
+  @Column(name = "tier", nullable = false, length = 16)
+  private StorageTier tier = StorageTier.SSD;
+
+  // Sustained throughput advertised by the node in bytes per second; null if not advertised
+  @Column(name = "read_throughput")
+  private Long readThroughput;
+
+  @Column(name = "write_throughput")
+  private Long writeThroughput;
+
   @Builder.Default
   @Version
   @Column(name = "version", nullable = false)
@@ -0,0 +1,9 @@
+// model/enums/StorageTier.java
+package com.loadbalancer.model.enums;
+
+/** Device class of a storage node, from the fastest to the densest. */
+public enum StorageTier {
+  NVME,
+  SSD,
+  HDD
+}
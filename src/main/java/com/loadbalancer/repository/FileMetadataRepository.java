@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +21,8 @@ public interface FileMetadataRepository extends JpaRepository<FileMetadata, Long
 
     List<FileMetadata> findByUserIdAndIsActiveTrue(Long userId);
 
+    List<FileMetadata> findByFileIdInAndIsActiveTrue(Collection<Long> fileIds);
+
     @Query("SELECT fm FROM FileMetadata fm WHERE fm.nodeId = :nodeId AND fm.isActive = true")
     List<FileMetadata> findActiveFilesByNode(@Param("nodeId") Long nodeId);
 
@@ -36,6 +39,10 @@ public interface FileMetadataRepository extends JpaRepository<FileMetadata, Long
     @Query("UPDATE FileMetadata fm SET fm.isActive = false WHERE fm.fileId = :fileId")
     int markAsDeleted(@Param("fileId") Long fileId);
 
+    @Modifying
+    @Query("UPDATE FileMetadata fm SET fm.isActive = false WHERE fm.fileId IN :fileIds")
+    int markAllAsDeleted(@Param("fileIds") Collection<Long> fileIds);
+
     @Modifying
     @Query("UPDATE FileMetadata fm SET fm.isActive = false WHERE fm.nodeId = :nodeId")
     int markAllFilesAsDeletedForNode(@Param("nodeId") Long nodeId);
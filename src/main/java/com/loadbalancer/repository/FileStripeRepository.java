@@ -0,0 +1,16 @@
+package com.loadbalancer.repository;
+
+import com.loadbalancer.model.entity.FileStripe;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FileStripeRepository extends JpaRepository<FileStripe, Long> {
+
+    List<FileStripe> findByFileIdOrderByStripeIndex(Long fileId);
+
+    List<FileStripe> findByFileIdInOrderByFileIdAscStripeIndexAsc(Collection<Long> fileIds);
+}
@@ -0,0 +1,96 @@
+package com.loadbalancer.service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Write-behind buffer for file access times. Downloads only record the time in memory, where
+ * repeated accesses to the same file collapse into one entry; the buffer is flushed periodically
+ * as one batched UPDATE that leaves the entity version alone, so hot files neither cost a database
+ * write per download nor conflict on optimistic locking.
+ *
+ * <p>Access times still buffered when the load balancer stops without a clean shutdown are lost;
+ * they only feed the inactive-file reports, so this is an acceptable trade.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AccessTimeBuffer {
+  private final FileMetadataService fileMetadataService;
+
+  private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+  private final AtomicLong recordedAccesses = new AtomicLong(0);
+  private final AtomicLong flushedUpdates = new AtomicLong(0);
+
+  /**
+   * Records that a file has just been accessed.
+   *
+   * @param fileId The ID of the file
+   */
+  public void record(Long fileId) {
+    pending.merge(fileId, LocalDateTime.now(), AccessTimeBuffer::latest);
+    recordedAccesses.incrementAndGet();
+  }
+
+  /** Writes the buffered access times to the database in one batch. */
+  @Scheduled(fixedDelayString = "${loadbalancer.access-tracking.flush-interval:5000}")
+  public void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    // Take each entry out on its own, so accesses recorded meanwhile wait for the next flush
+    Map<Long, LocalDateTime> batch = new HashMap<>();
+    for (Long fileId : pending.keySet()) {
+      LocalDateTime accessed = pending.remove(fileId);
+      if (accessed != null) {
+        batch.put(fileId, accessed);
+      }
+    }
+
+    try {
+      fileMetadataService.updateLastAccessedBatch(batch);
+      flushedUpdates.addAndGet(batch.size());
+      log.debug(
+          "Flushed access times of {} files ({} accesses recorded so far)",
+          batch.size(),
+          recordedAccesses.get());
+    } catch (DataAccessException e) {
+      // Keep the times for the next flush unless newer ones have been recorded since
+      batch.forEach(
+          (fileId, accessed) -> pending.merge(fileId, accessed, AccessTimeBuffer::latest));
+      log.warn("Failed to flush access times of {} files, will retry", batch.size(), e);
+    }
+  }
+
+  /** Flushes the remaining access times on shutdown. */
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  /**
+   * Gets the number of accesses recorded and the number of rows written by flushes.
+   *
+   * @return The recorded accesses and flushed updates
+   */
+  public Map<String, Long> getStats() {
+    return Map.of(
+        "recordedAccesses", recordedAccesses.get(),
+        "flushedUpdates", flushedUpdates.get(),
+        "pendingFiles", (long) pending.size());
+  }
+
+  private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+    return a.isAfter(b) ? a : b;
+  }
+}
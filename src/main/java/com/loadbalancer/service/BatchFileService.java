@@ -0,0 +1,349 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.exception.LoadBalancerException;
+import com.loadbalancer.model.dto.PlacementDecision;
+import com.loadbalancer.model.entity.FileMetadata;
+import com.loadbalancer.model.entity.FileStripe;
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.util.UrlSigner;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Service for operations on many files in one request. Files are grouped by storage node so
+ * each node is called once per batch, and metadata is written in bulk.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BatchFileService {
+  private final LoadBalancerService loadBalancerService;
+  private final StorageNodeService storageNodeService;
+  private final HotFileCache hotFileCache;
+  private final StripedFileService stripedFileService;
+  private final PlacementPolicyService placementPolicyService;
+  private final RestTemplate restTemplate;
+  private final UrlSigner urlSigner;
+  private final LoadBalancerConfig config;
+
+  // Constants
+  private static final String HEADER_USER_ID = "X-User-ID";
+  private static final String FILES_PATH = "/api/v1/files/";
+  private static final String UPLOAD_BATCH_PATH = "upload/batch";
+  private static final String DELETE_BATCH_PATH = "delete/batch";
+  private static final String KEY_ERROR = "error";
+  private static final String NO_NODE_RESULT = "No result from storage node";
+  private static final String FILE_NOT_FOUND = "File not found";
+  private static final String FILE_NOT_ON_NODE = "File not found on storage node";
+  private static final String NODE_UNAVAILABLE = "Storage node not found";
+  private static final String STRIPE_DELETION_FAILED = "Not all stripes could be deleted";
+  private static final ParameterizedTypeReference<Map<String, Object>> RESULT_MAP_TYPE =
+      new ParameterizedTypeReference<>() {};
+  private static final ParameterizedTypeReference<List<Map<String, Object>>> RESULT_LIST_TYPE =
+      new ParameterizedTypeReference<>() {};
+
+  @Value("${api.storage.path.format:http://%s:%d/api/v1/files/%s}")
+  private String apiPathFormat;
+
+  /**
+   * Uploads many files, sending each storage node all of its files in one request.
+   *
+   * @param files The files to upload
+   * @param userId The ID of the user uploading the files
+   * @param policyName The placement policy to apply to every file, or null to apply the placement
+   *     rules to each file
+   * @return One result per file, in request order, with either the stored file details or an error
+   */
+  public List<Map<String, Object>> uploadFiles(
+      List<MultipartFile> files, Long userId, String policyName) {
+    checkBatchSize(files.size());
+
+    List<Long> fileSizes = files.stream().map(MultipartFile::getSize).toList();
+    List<String> fileKeys =
+        files.stream()
+            .map(file -> LoadBalancerService.fileKey(userId, file.getOriginalFilename()))
+            .toList();
+    List<PlacementDecision> placements =
+        files.stream()
+            .map(
+                file ->
+                    placementPolicyService.resolve(
+                        userId, file.getSize(), file.getContentType(), policyName))
+            .toList();
+    List<CapacityLedger.Reservation> reservations =
+        loadBalancerService.reserveNodes(placements, fileSizes, fileKeys);
+    try {
+      // Group file positions by node, keeping request order within each group
+      Map<Long, List<Integer>> groups = new LinkedHashMap<>();
+      Map<Long, StorageNode> nodes = new HashMap<>();
+      for (int i = 0; i < files.size(); i++) {
+        StorageNode node = reservations.get(i).getNode();
+        nodes.put(node.getContainerId(), node);
+        groups.computeIfAbsent(node.getContainerId(), id -> new ArrayList<>()).add(i);
+      }
+
+      List<Map<String, Object>> results = new ArrayList<>(files.size());
+      for (MultipartFile file : files) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("fileName", file.getOriginalFilename());
+        results.add(result);
+      }
+
+      List<FileMetadata> metadata = new ArrayList<>();
+      for (Map.Entry<Long, List<Integer>> group : groups.entrySet()) {
+        StorageNode node = nodes.get(group.getKey());
+        List<Integer> positions = group.getValue();
+        List<Map<String, Object>> nodeResults = uploadToNode(node, files, positions, userId);
+
+        for (int j = 0; j < positions.size(); j++) {
+          Map<String, Object> result = results.get(positions.get(j));
+          Map<String, Object> nodeResult = j < nodeResults.size() ? nodeResults.get(j) : null;
+          if (nodeResult == null || !nodeResult.containsKey("fileId")) {
+            Object error = nodeResult != null ? nodeResult.get(KEY_ERROR) : NO_NODE_RESULT;
+            result.put(KEY_ERROR, error);
+            result.put("nodeId", node.getContainerId());
+            continue;
+          }
+
+          reservations.get(positions.get(j)).commit();
+          String contentType =
+              nodeResult.get("contentType") != null
+                  ? nodeResult.get("contentType").toString()
+                  : null;
+          Long fileSize = Long.valueOf(nodeResult.get("fileSize").toString());
+          String fileName = String.valueOf(nodeResult.get("fileName"));
+          metadata.add(
+              FileMetadata.builder()
+                  .originalFilename(fileName)
+                  .storedFilename(LoadBalancerService.storedFileName(nodeResult))
+                  .fileSize(fileSize)
+                  .contentType(contentType)
+                  .nodeId(node.getContainerId())
+                  .userId(userId)
+                  .build());
+
+          result.put("fileId", nodeResult.get("fileId"));
+          result.put("fileSize", fileSize);
+          result.put("contentType", contentType);
+          result.put("nodeId", node.getContainerId());
+          result.put("nodeName", node.getContainerName());
+        }
+      }
+
+      if (!metadata.isEmpty()) {
+        loadBalancerService.storeFileMetadataBatch(metadata);
+      }
+      return results;
+    } finally {
+      reservations.forEach(CapacityLedger.Reservation::close);
+    }
+  }
+
+  /**
+   * Deletes many files. Node locations are read with one query, each storage node receives one
+   * request for all of its files, and the files the nodes deleted are tombstoned in bulk.
+   *
+   * @param fileIds The IDs of the files to delete
+   * @param userId The ID of the user deleting the files
+   * @return The deleted file IDs and the files that could not be deleted, with the reason
+   */
+  public Map<String, Object> deleteFiles(List<Long> fileIds, Long userId) {
+    checkBatchSize(fileIds.size());
+
+    Map<Long, Long> fileNodes = loadBalancerService.getNodeIdsForFiles(fileIds);
+    Map<Long, List<FileStripe>> stripedFiles = stripedFileService.getStripes(fileNodes.keySet());
+    List<Long> deleted = new ArrayList<>();
+    List<Map<String, Object>> failed = new ArrayList<>();
+    Map<Long, List<Long>> groups = new LinkedHashMap<>();
+    for (Long fileId : new LinkedHashSet<>(fileIds)) {
+      Long nodeId = fileNodes.get(fileId);
+      if (nodeId == null) {
+        failed.add(deleteFailure(fileId, null, FILE_NOT_FOUND));
+      } else if (stripedFiles.containsKey(fileId)) {
+        // Striped files are spread over several nodes and are deleted column by column
+        if (stripedFileService.delete(stripedFiles.get(fileId), userId)) {
+          deleted.add(fileId);
+        } else {
+          failed.add(deleteFailure(fileId, nodeId, STRIPE_DELETION_FAILED));
+        }
+      } else {
+        groups.computeIfAbsent(nodeId, id -> new ArrayList<>()).add(fileId);
+      }
+    }
+
+    for (Map.Entry<Long, List<Long>> group : groups.entrySet()) {
+      Long nodeId = group.getKey();
+      List<Long> nodeFileIds = group.getValue();
+      StorageNode node = storageNodeService.getNode(nodeId).orElse(null);
+      if (node == null) {
+        nodeFileIds.forEach(fileId -> failed.add(deleteFailure(fileId, nodeId, NODE_UNAVAILABLE)));
+        continue;
+      }
+      deleteFromNode(node, nodeFileIds, userId, deleted, failed);
+    }
+
+    if (!deleted.isEmpty()) {
+      loadBalancerService.deleteFileMetadataBatch(deleted);
+      deleted.forEach(hotFileCache::invalidate);
+    }
+
+    Map<String, Object> response = new HashMap<>();
+    response.put("deleted", deleted);
+    response.put("failed", failed);
+    return response;
+  }
+
+  /**
+   * Asks one node to delete its files from the batch and sorts the outcome of each file. Files the
+   * node no longer has count as deleted, as the missing columns of a striped file do.
+   */
+  private void deleteFromNode(
+      StorageNode node,
+      List<Long> fileIds,
+      Long userId,
+      List<Long> deleted,
+      List<Map<String, Object>> failed) {
+    long startTime = System.currentTimeMillis();
+    try (InFlightTracker.Transfer transfer = loadBalancerService.beginTransfer(node, 0)) {
+      HttpHeaders headers = new HttpHeaders();
+      headers.set(HEADER_USER_ID, userId.toString());
+      headers.setContentType(MediaType.APPLICATION_JSON);
+
+      Map<String, Object> nodeResult =
+          restTemplate
+              .exchange(
+                  nodeUrl(node, HttpMethod.POST, DELETE_BATCH_PATH, userId),
+                  HttpMethod.POST,
+                  new HttpEntity<>(fileIds, headers),
+                  RESULT_MAP_TYPE)
+              .getBody();
+      loadBalancerService.recordRequest(
+          node.getContainerId().toString(), true, System.currentTimeMillis() - startTime);
+
+      Set<Long> nodeDeleted = idSet(nodeResult != null ? nodeResult.get("deleted") : null);
+      Set<Long> nodeNotFound = idSet(nodeResult != null ? nodeResult.get("notFound") : null);
+      Map<?, ?> nodeFailed =
+          nodeResult != null && nodeResult.get("failed") instanceof Map<?, ?> map ? map : Map.of();
+      for (Long fileId : fileIds) {
+        if (nodeDeleted.contains(fileId) || nodeNotFound.contains(fileId)) {
+          deleted.add(fileId);
+        } else if (nodeFailed.containsKey(fileId.toString())) {
+          String error = String.valueOf(nodeFailed.get(fileId.toString()));
+          failed.add(deleteFailure(fileId, node.getContainerId(), error));
+        } else {
+          failed.add(deleteFailure(fileId, node.getContainerId(), FILE_NOT_ON_NODE));
+        }
+      }
+      log.info(
+          "Deleted {} of {} files on node {} ({} already missing)",
+          nodeDeleted.size(),
+          fileIds.size(),
+          node.getContainerId(),
+          nodeNotFound.size());
+    } catch (Exception e) {
+      log.error("Batch deletion on node {} failed", node.getContainerId(), e);
+      loadBalancerService.recordRequest(
+          node.getContainerId().toString(), false, System.currentTimeMillis() - startTime);
+      String error = String.valueOf(e.getMessage());
+      fileIds.forEach(fileId -> failed.add(deleteFailure(fileId, node.getContainerId(), error)));
+    }
+  }
+
+  private Set<Long> idSet(Object ids) {
+    Set<Long> result = new HashSet<>();
+    if (ids instanceof List<?> list) {
+      list.forEach(id -> result.add(Long.valueOf(id.toString())));
+    }
+    return result;
+  }
+
+  private Map<String, Object> deleteFailure(Long fileId, Long nodeId, String error) {
+    Map<String, Object> failure = new HashMap<>();
+    failure.put("fileId", fileId);
+    failure.put("nodeId", nodeId);
+    failure.put(KEY_ERROR, error);
+    return failure;
+  }
+
+  /**
+   * Sends one node all of its files from the batch. A failed node call is reported as an error
+   * for each of its files rather than failing the whole batch.
+   */
+  private List<Map<String, Object>> uploadToNode(
+      StorageNode node, List<MultipartFile> files, List<Integer> positions, Long userId) {
+    long startTime = System.currentTimeMillis();
+    long bytes = positions.stream().mapToLong(position -> files.get(position).getSize()).sum();
+    try (InFlightTracker.Transfer transfer = loadBalancerService.beginTransfer(node, bytes)) {
+      MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+      for (int position : positions) {
+        body.add("files", files.get(position).getResource());
+      }
+
+      HttpHeaders headers = new HttpHeaders();
+      headers.set(HEADER_USER_ID, userId.toString());
+      headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+      List<Map<String, Object>> nodeResults =
+          restTemplate
+              .exchange(
+                  nodeUrl(node, HttpMethod.POST, UPLOAD_BATCH_PATH, userId),
+                  HttpMethod.POST,
+                  new HttpEntity<>(body, headers),
+                  RESULT_LIST_TYPE)
+              .getBody();
+
+      loadBalancerService.recordRequest(
+          node.getContainerId().toString(), true, System.currentTimeMillis() - startTime);
+      log.info("Uploaded batch of {} files to node {}", positions.size(), node.getContainerId());
+      return nodeResults != null ? nodeResults : List.of();
+    } catch (Exception e) {
+      log.error("Batch upload to node {} failed", node.getContainerId(), e);
+      loadBalancerService.recordRequest(
+          node.getContainerId().toString(), false, System.currentTimeMillis() - startTime);
+
+      List<Map<String, Object>> failures = new ArrayList<>(positions.size());
+      for (int i = 0; i < positions.size(); i++) {
+        failures.add(Map.of(KEY_ERROR, String.valueOf(e.getMessage())));
+      }
+      return failures;
+    }
+  }
+
+  private void checkBatchSize(int size) {
+    int maxFiles = config.getBatch().getMaxFiles();
+    if (size == 0 || size > maxFiles) {
+      throw new LoadBalancerException(
+          "Batch must contain between 1 and " + maxFiles + " files",
+          HttpStatus.BAD_REQUEST,
+          "INVALID_BATCH_SIZE");
+    }
+  }
+
+  private String nodeUrl(StorageNode node, HttpMethod method, String path, Long userId) {
+    if (urlSigner.isEnabled()) {
+      return urlSigner.sign(node, method, FILES_PATH + path, userId).getUrl();
+    }
+    return String.format(apiPathFormat, node.getHostAddress(), node.getPort(), path);
+  }
+}
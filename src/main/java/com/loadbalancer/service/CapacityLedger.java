@@ -0,0 +1,175 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.model.entity.StorageNode;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps track of the space promised to uploads that the nodes' reported used space does not show
+ * yet. A node's used space only changes with its heartbeat, so without this a burst of parallel
+ * uploads all see the same free space and can overfill one node.
+ *
+ * <p>Each upload takes a {@link Reservation} when its node is selected. On success the reservation
+ * is committed with the time of the commit, and its bytes stay counted until a heartbeat whose
+ * used space was measured after that time, which therefore includes the file; on failure it is
+ * released. Commits are settled by time rather than by growth in the reported used space, which
+ * also shrinks with deletes and restarts and counts files as stored, possibly compressed, so it
+ * need not grow by the bytes committed. Reservations are taken with a compare-and-set on a
+ * per-node counter, so concurrent uploads never both get the last free bytes and no lock is held.
+ */
+@Service
+public class CapacityLedger {
+  private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Reserves space on a node if its effective free space allows.
+   *
+   * @param node The node
+   * @param bytes The bytes to reserve
+   * @return The reservation, to be committed or closed; null if the node lacks the space
+   */
+  public Reservation tryReserve(StorageNode node, long bytes) {
+    long size = Math.max(bytes, 0);
+    Entry entry = entryOf(node.getContainerId());
+    while (true) {
+      long reserved = entry.reserved.get();
+      long free = node.getCapacity() - node.getUsedSpace() - entry.committed.get() - reserved;
+      if (free < size) {
+        return null;
+      }
+      if (entry.reserved.compareAndSet(reserved, reserved + size)) {
+        return new Reservation(node, entry, size);
+      }
+    }
+  }
+
+  /**
+   * Gets a node's free space less the space reserved or committed since its last heartbeat.
+   *
+   * @param node The node
+   * @return The effective free space in bytes, possibly negative if the node is overcommitted
+   */
+  public long getFreeSpace(StorageNode node) {
+    return node.getCapacity() - getUsedSpace(node);
+  }
+
+  /**
+   * Gets a node's used space plus the space reserved or committed since its last heartbeat.
+   *
+   * @param node The node
+   * @return The effective used space in bytes
+   */
+  public long getUsedSpace(StorageNode node) {
+    Entry entry = entries.get(node.getContainerId());
+    if (entry == null) {
+      return node.getUsedSpace();
+    }
+    return node.getUsedSpace() + entry.committed.get() + entry.reserved.get();
+  }
+
+  /**
+   * Checks whether a node can take a file, given its effective free space.
+   *
+   * @param node The node
+   * @param bytes The file size
+   * @return Whether the file fits
+   */
+  public boolean hasRoom(StorageNode node, long bytes) {
+    return getFreeSpace(node) >= bytes;
+  }
+
+  /**
+   * Settles committed bytes against a heartbeat: uploads committed before the heartbeat's used
+   * space was measured are included in it and stop being counted separately. Uploads committed
+   * later stay counted until a later heartbeat.
+   *
+   * @param nodeId The node ID
+   * @param measuredAt When the heartbeat's used space was measured (epoch ms)
+   */
+  public void settle(Long nodeId, long measuredAt) {
+    Entry entry = entries.get(nodeId);
+    if (entry == null) {
+      return;
+    }
+    // Commits are queued in about the order of their times; one queued behind a later commit
+    // is settled by a later heartbeat, which only keeps it counted longer
+    Commit commit;
+    while ((commit = entry.commits.peek()) != null && commit.time() < measuredAt) {
+      if (entry.commits.remove(commit)) {
+        entry.committed.addAndGet(-commit.bytes());
+      }
+    }
+  }
+
+  /**
+   * Gets the reserved and committed bytes of each node.
+   *
+   * @return The bytes by node ID
+   */
+  public Map<Long, Map<String, Long>> getStats() {
+    Map<Long, Map<String, Long>> stats = new TreeMap<>();
+    entries.forEach(
+        (nodeId, entry) ->
+            stats.put(
+                nodeId,
+                Map.of("reserved", entry.reserved.get(), "committed", entry.committed.get())));
+    return stats;
+  }
+
+  private Entry entryOf(Long nodeId) {
+    return entries.computeIfAbsent(nodeId, id -> new Entry());
+  }
+
+  private static final class Entry {
+    private final AtomicLong reserved = new AtomicLong(0);
+    private final AtomicLong committed = new AtomicLong(0);
+    private final Queue<Commit> commits = new ConcurrentLinkedQueue<>();
+  }
+
+  private record Commit(long time, long bytes) {}
+
+  /**
+   * Space reserved on a node for one upload. Closing it releases the space unless it was
+   * committed; closing or committing more than once has no further effect.
+   */
+  public static final class Reservation implements AutoCloseable {
+    private final StorageNode node;
+    private final Entry entry;
+    private final long bytes;
+    private boolean settled;
+
+    private Reservation(StorageNode node, Entry entry, long bytes) {
+      this.node = node;
+      this.entry = entry;
+      this.bytes = bytes;
+    }
+
+    public StorageNode getNode() {
+      return node;
+    }
+
+    /** Keeps the space counted as used until a heartbeat measured after now shows it. */
+    public synchronized void commit() {
+      if (!settled) {
+        settled = true;
+        // Counted as committed before it stops counting as reserved, so it is never missed
+        entry.committed.addAndGet(bytes);
+        entry.commits.add(new Commit(System.currentTimeMillis(), bytes));
+        entry.reserved.addAndGet(-bytes);
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      if (!settled) {
+        settled = true;
+        entry.reserved.addAndGet(-bytes);
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.exception.NodeOverloadedException;
+import com.loadbalancer.model.entity.StorageNode;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Limits the requests in flight to each storage node, with a limit that adapts to the node's
+ * responses by additive increase and multiplicative decrease: every failed request, or download
+ * whose first byte took longer than the latency threshold, cuts the limit by the backoff ratio,
+ * and every other finished request raises it by one while the node is using at least half of it.
+ *
+ * <p>Latency is judged by the time to the node's response headers rather than the whole
+ * transfer, which grows with the file size and the client's bandwidth. Uploads only report their
+ * outcome, since the node answers them only after the client has sent the whole body.
+ *
+ * <p>A node that slows down thus gets a lower limit within a few responses. Requests above the
+ * limit are rejected at once with a 503, or sent to another node where the request allows it,
+ * instead of waiting on the slow node while holding a request thread.
+ */
+@Service
+@Slf4j
+public class ConcurrencyLimiter {
+  private final LoadBalancerConfig.Concurrency settings;
+  private final InFlightTracker inFlightTracker;
+  private final Map<Long, Limit> limits = new ConcurrentHashMap<>();
+
+  public ConcurrencyLimiter(LoadBalancerConfig config, InFlightTracker inFlightTracker) {
+    this.settings = config.getConcurrency();
+    this.inFlightTracker = inFlightTracker;
+  }
+
+  public boolean isEnabled() {
+    return settings.isEnabled();
+  }
+
+  /**
+   * Starts a transfer to a node if the node is below its limit.
+   *
+   * @param node The node
+   * @param bytes The bytes to be transferred, if known; 0 otherwise
+   * @return The transfer, to be closed when it is over
+   * @throws NodeOverloadedException If the node is at its limit
+   */
+  public InFlightTracker.Transfer begin(StorageNode node, long bytes) {
+    Long nodeId = node.getContainerId();
+    if (!settings.isEnabled()) {
+      return inFlightTracker.begin(nodeId, bytes);
+    }
+    Limit limit = limitOf(nodeId);
+    InFlightTracker.Transfer transfer = inFlightTracker.tryBegin(nodeId, bytes, limit.current);
+    if (transfer == null) {
+      limit.rejections.incrementAndGet();
+      log.debug("Rejected a request to node {} at its limit of {}", nodeId, limit.current);
+      throw new NodeOverloadedException(
+          "Storage node " + nodeId + " is at its concurrency limit");
+    }
+    return transfer;
+  }
+
+  /**
+   * Narrows nodes to those below their limit, so that a new request can be sent elsewhere when
+   * its first choice is at its limit.
+   *
+   * @param nodes The candidate nodes
+   * @return The same list if every node is below its limit, otherwise those that are
+   * @throws NodeOverloadedException If every node is at its limit
+   */
+  public List<StorageNode> belowLimit(List<StorageNode> nodes) {
+    if (!settings.isEnabled() || nodes.stream().allMatch(this::isBelowLimit)) {
+      return nodes;
+    }
+    List<StorageNode> open = nodes.stream().filter(this::isBelowLimit).toList();
+    if (open.isEmpty()) {
+      nodes.forEach(node -> limitOf(node.getContainerId()).rejections.incrementAndGet());
+      throw new NodeOverloadedException("All storage nodes are at their concurrency limit");
+    }
+    return open;
+  }
+
+  /**
+   * Adapts a node's limit to a finished request.
+   *
+   * @param nodeId The node ID
+   * @param success Whether the request succeeded
+   */
+  public void observe(Long nodeId, boolean success) {
+    if (!settings.isEnabled()) {
+      return;
+    }
+    Limit limit = limitOf(nodeId);
+    // The finished request has already left the count, so it is added back
+    int inFlight = inFlightTracker.getRequests(nodeId) + 1;
+    synchronized (limit) {
+      if (!success) {
+        adjust(limit, limit.value * settings.getBackoffRatio());
+      } else if (inFlight * 2 >= limit.value) {
+        adjust(limit, limit.value + 1);
+      }
+    }
+  }
+
+  /**
+   * Adapts a node's limit to the time it took to start answering a download.
+   *
+   * @param nodeId The node ID
+   * @param firstByteTime The time until the node's response headers arrived (ms)
+   */
+  public void observeFirstByte(Long nodeId, long firstByteTime) {
+    if (!settings.isEnabled() || firstByteTime <= settings.getLatencyThreshold()) {
+      return;
+    }
+    Limit limit = limitOf(nodeId);
+    synchronized (limit) {
+      adjust(limit, limit.value * settings.getBackoffRatio());
+    }
+  }
+
+  /**
+   * Gets the limit, requests in flight and rejected requests of each node.
+   *
+   * @return The limits, by node ID
+   */
+  public Map<Long, Map<String, Long>> getStats() {
+    Map<Long, Map<String, Long>> stats = new TreeMap<>();
+    limits.forEach(
+        (nodeId, limit) ->
+            stats.put(
+                nodeId,
+                Map.of(
+                    "limit", (long) limit.current,
+                    "inFlight", (long) inFlightTracker.getRequests(nodeId),
+                    "rejections", limit.rejections.get())));
+    return stats;
+  }
+
+  private boolean isBelowLimit(StorageNode node) {
+    Long nodeId = node.getContainerId();
+    return inFlightTracker.getRequests(nodeId) < limitOf(nodeId).current;
+  }
+
+  /** Sets a limit within the configured bounds; call while holding the limit's lock. */
+  private void adjust(Limit limit, double next) {
+    limit.value = Math.min(Math.max(next, settings.getMinLimit()), settings.getMaxLimit());
+    limit.current = (int) limit.value;
+  }
+
+  private Limit limitOf(Long nodeId) {
+    return limits.computeIfAbsent(nodeId, id -> new Limit(settings.getInitialLimit()));
+  }
+
+  private static final class Limit {
+    // Guarded by the instance lock; current is the whole part, read without the lock
+    private double value;
+    private volatile int current;
+    private final AtomicLong rejections = new AtomicLong(0);
+
+    private Limit(int initialLimit) {
+      this.value = initialLimit;
+      this.current = initialLimit;
+    }
+  }
+}
@@ -0,0 +1,350 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.model.dto.CoalescingStats;
+import com.loadbalancer.service.FileTransferService.DownloadTap;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service that coalesces concurrent downloads of the same file into one upstream fetch. The first
+ * request for a file (the leader) looks up the node and fetches the content on its own thread,
+ * relaying it straight to its client. Requests that arrive before the body starts (followers)
+ * make the fetch keep the body in a shared buffer instead; each follower is then served from it on
+ * its own request thread, and the leader's client is served from it on a relay thread, so neither
+ * a slow nor an aborted client holds up the fetch or the other clients.
+ *
+ * <p>Only full downloads of files up to the configured size are shared, and only between requests
+ * asking for the same content encodings. A download nobody joins is never buffered. Followers
+ * fall back to fetching the file themselves when the node's response turns out not to be
+ * shareable, or when they arrive after the leader's body has started without a buffer.
+ */
+@Service
+@Slf4j
+public class DownloadCoalescer {
+  private final FileTransferService fileTransferService;
+  private final MetricsService metricsService;
+  private final AsyncTaskExecutor coalescingRelayExecutor;
+  private final LoadBalancerConfig config;
+
+  private final Map<Variant, Flight> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong upstreamFetches = new AtomicLong(0);
+  private final AtomicLong coalescedRequests = new AtomicLong(0);
+  private final AtomicLong fallbackFetches = new AtomicLong(0);
+
+  public DownloadCoalescer(
+      FileTransferService fileTransferService,
+      MetricsService metricsService,
+      @Qualifier("coalescingRelayExecutor") AsyncTaskExecutor coalescingRelayExecutor,
+      LoadBalancerConfig config) {
+    this.fileTransferService = fileTransferService;
+    this.metricsService = metricsService;
+    this.coalescingRelayExecutor = coalescingRelayExecutor;
+    this.config = config;
+  }
+
+  /** A fetch of a file from its storage node, relaying the body through the given tap. */
+  @FunctionalInterface
+  public interface Fetch {
+    void fetch(DownloadTap tap);
+  }
+
+  public boolean isEnabled() {
+    return config.getCoalescing().isEnabled();
+  }
+
+  /**
+   * Downloads a file to the client, joining an in-flight fetch of the same file if there is one.
+   *
+   * @param fileId The ID of the file to download
+   * @param acceptedEncodings The content encodings requested from the node, or null for none
+   * @param response The client response
+   * @param fetch Performs an upstream fetch when this request has to do one
+   * @throws IOException If relaying a shared download to the client fails
+   */
+  public void download(
+      Long fileId, String acceptedEncodings, HttpServletResponse response, Fetch fetch)
+      throws IOException {
+    Variant variant = new Variant(fileId, acceptedEncodings);
+    Flight flight = new Flight();
+    Flight existing = inFlight.putIfAbsent(variant, flight);
+    if (existing == null) {
+      lead(variant, flight, fetch);
+      return;
+    }
+
+    if (follow(existing, response)) {
+      coalescedRequests.incrementAndGet();
+      return;
+    }
+
+    // The leader's response cannot be shared, so fetch independently
+    fallbackFetches.incrementAndGet();
+    upstreamFetches.incrementAndGet();
+    fetch.fetch((status, headers, out) -> out);
+  }
+
+  /**
+   * Gets the coalescing counters.
+   *
+   * @return Upstream fetches, coalesced requests and the share of downloads served by coalescing
+   */
+  public CoalescingStats getCoalescingStats() {
+    long upstream = upstreamFetches.get();
+    long coalesced = coalescedRequests.get();
+    long total = upstream + coalesced;
+    return CoalescingStats.builder()
+        .inFlight(inFlight.size())
+        .upstreamFetches(upstream)
+        .coalescedRequests(coalesced)
+        .fallbackFetches(fallbackFetches.get())
+        .coalescingRatio(total > 0 ? (double) coalesced / total : 0.0)
+        .maxFileSize(config.getCoalescing().getMaxFileSize())
+        .build();
+  }
+
+  private void lead(Variant variant, Flight flight, Fetch fetch) throws IOException {
+    upstreamFetches.incrementAndGet();
+    boolean success = false;
+    try {
+      fetch.fetch(flight::attach);
+      success = true;
+    } finally {
+      // Later requests start a new fetch; followers that already joined keep their reference
+      inFlight.remove(variant, flight);
+      flight.finish(success);
+      // The leader's client may still be reading the buffer on a relay thread
+      flight.awaitLeaderRelay(success);
+    }
+  }
+
+  private boolean follow(Flight flight, HttpServletResponse response) throws IOException {
+    if (!flight.join()) {
+      return false;
+    }
+    HttpHeaders headers = flight.awaitHeaders(config.getHttpClient().getReadTimeout());
+    if (headers == null) {
+      return false;
+    }
+
+    response.setStatus(HttpStatus.OK.value());
+    fileTransferService.copyResponseHeaders(headers, response);
+    relay(flight, response.getOutputStream(), true);
+    return true;
+  }
+
+  /**
+   * Writes the buffered body of a shared download to a client as it arrives.
+   *
+   * @param recordTransfer Whether to count the bytes as a transfer; the leader's are already
+   *     counted by the fetch
+   */
+  private void relay(Flight flight, OutputStream out, boolean recordTransfer) throws IOException {
+    long waitMillis = config.getHttpClient().getReadTimeout();
+    long transferred = 0;
+    boolean success = false;
+    if (recordTransfer) {
+      metricsService.recordTransferStarted();
+    }
+    try {
+      int index = 0;
+      byte[] chunk;
+      while ((chunk = flight.awaitChunk(index++, waitMillis)) != null) {
+        out.write(chunk);
+        transferred += chunk.length;
+        if (recordTransfer) {
+          metricsService.recordTransferProgress(chunk.length);
+        }
+      }
+      out.flush();
+      success = true;
+    } finally {
+      if (recordTransfer) {
+        metricsService.recordTransferFinished(transferred, success);
+      }
+    }
+  }
+
+  /** A file as requested with a list of content encodings; null stands for none. */
+  private record Variant(Long fileId, String acceptedEncodings) {}
+
+  /** One upstream fetch and the body chunks received so far. */
+  private final class Flight {
+    private final List<byte[]> chunks = new ArrayList<>();
+    private HttpHeaders headers;
+    private boolean shareable;
+    private boolean headersKnown;
+    private boolean followed;
+    private boolean bodyStarted;
+    private boolean buffered;
+    private boolean done;
+    private boolean failed;
+    // Set and read only on the leader's thread
+    private Future<?> leaderRelay;
+
+    /**
+     * Called by the fetch once the node has responded. The body goes straight to the leader's
+     * client unless it is shareable and followers have joined by the time it starts.
+     */
+    OutputStream attach(HttpStatusCode status, HttpHeaders nodeHeaders, OutputStream out) {
+      long length = nodeHeaders.getContentLength();
+      boolean share =
+          status.value() == HttpStatus.OK.value()
+              && length >= 0
+              && length <= config.getCoalescing().getMaxFileSize();
+      synchronized (this) {
+        headers = nodeHeaders;
+        shareable = share;
+        headersKnown = true;
+        notifyAll();
+      }
+      if (!share) {
+        return out;
+      }
+      return new OutputStream() {
+        private OutputStream target;
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          if (target == null) {
+            target = startBody(out);
+          }
+          target.write(b, off, len);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+          write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void flush() throws IOException {
+          (target != null ? target : out).flush();
+        }
+      };
+    }
+
+    /** Decides where the body goes once its first bytes arrive. */
+    private OutputStream startBody(OutputStream out) {
+      synchronized (this) {
+        bodyStarted = true;
+        buffered = followed;
+      }
+      if (!buffered) {
+        return out;
+      }
+      leaderRelay =
+          coalescingRelayExecutor.submit(
+              () -> {
+                relay(this, out, false);
+                return null;
+              });
+      return new OutputStream() {
+        @Override
+        public void write(byte[] b, int off, int len) {
+          append(Arrays.copyOfRange(b, off, off + len));
+        }
+
+        @Override
+        public void write(int b) {
+          write(new byte[] {(byte) b}, 0, 1);
+        }
+      };
+    }
+
+    /** Registers a follower; returns false if the body is already going out unbuffered. */
+    synchronized boolean join() {
+      if (bodyStarted && !buffered) {
+        return false;
+      }
+      followed = true;
+      return true;
+    }
+
+    /**
+     * Waits for the relay serving the leader's client from the buffer, if there is one.
+     *
+     * @param report Whether to throw if the relay failed, e.g. because the client went away
+     */
+    void awaitLeaderRelay(boolean report) throws IOException {
+      if (leaderRelay == null) {
+        return;
+      }
+      try {
+        leaderRelay.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted relaying shared download", e);
+      } catch (ExecutionException e) {
+        if (report) {
+          throw e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+        }
+      }
+    }
+
+    synchronized void append(byte[] chunk) {
+      chunks.add(chunk);
+      notifyAll();
+    }
+
+    synchronized void finish(boolean success) {
+      done = true;
+      failed = !success;
+      notifyAll();
+    }
+
+    /** Waits for the node's response headers; returns null if the body will not be shared. */
+    synchronized HttpHeaders awaitHeaders(long timeoutMillis) throws IOException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      while (!headersKnown && !done) {
+        waitUntil(deadline);
+      }
+      return headersKnown && shareable && !(done && failed) ? headers : null;
+    }
+
+    /** Waits for the chunk at the given index; returns null once the body is complete. */
+    synchronized byte[] awaitChunk(int index, long timeoutMillis) throws IOException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      while (index >= chunks.size() && !done) {
+        waitUntil(deadline);
+      }
+      if (index < chunks.size()) {
+        return chunks.get(index);
+      }
+      if (failed) {
+        throw new IOException("Shared download failed upstream");
+      }
+      return null;
+    }
+
+    private void waitUntil(long deadline) throws IOException {
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remaining <= 0) {
+        throw new IOException("Timed out waiting for shared download");
+      }
+      try {
+        wait(remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted waiting for shared download", e);
+      }
+    }
+  }
+}
@@ -1,15 +1,26 @@
 package com.loadbalancer.service;
 
+import com.loadbalancer.config.LoadBalancerConfig;
 import com.loadbalancer.model.entity.FileMetadata;
+import com.loadbalancer.model.entity.FileStripe;
 import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.model.enums.NodeStatus;
+import com.loadbalancer.model.enums.StorageTier;
 import com.loadbalancer.repository.FileMetadataRepository;
+import com.loadbalancer.repository.FileStripeRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -20,7 +31,20 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class FileMetadataService {
     private final FileMetadataRepository fileMetadataRepository;
+    private final FileStripeRepository fileStripeRepository;
     private final StorageNodeService storageNodeService;
+    private final JdbcTemplate jdbcTemplate;
+    private final LoadBalancerConfig config;
+
+    // IDENTITY keys stop Hibernate from batching inserts, so batches go through JDBC directly
+    private static final String INSERT_METADATA_SQL =
+            "INSERT INTO FileMetadata (original_filename, stored_filename, file_size, content_type, "
+            + "node_id, user_id, checksum, is_active, upload_time, last_accessed, version) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+    // Leaves the version alone: access times must not conflict with real metadata changes
+    private static final String UPDATE_LAST_ACCESSED_SQL =
+            "UPDATE FileMetadata SET last_accessed = ? "
+            + "WHERE file_id = ? AND (last_accessed IS NULL OR last_accessed < ?)";
 
     @Transactional
     public FileMetadata createFileMetadata(String originalFilename, String storedFilename,
@@ -42,6 +66,67 @@ public class FileMetadataService {
         return savedMetadata;
     }
 
+    /**
+     * Inserts metadata for many files using batched JDBC statements in one transaction.
+     * Generated file IDs are not read back.
+     */
+    @Transactional
+    public void createFileMetadataBatch(List<FileMetadata> metadataList) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_METADATA_SQL, metadataList,
+                config.getBatch().getInsertBatchSize(), (ps, metadata) -> {
+                    ps.setString(1, metadata.getOriginalFilename());
+                    ps.setString(2, metadata.getStoredFilename());
+                    ps.setLong(3, metadata.getFileSize());
+                    ps.setString(4, metadata.getContentType());
+                    ps.setLong(5, metadata.getNodeId());
+                    ps.setLong(6, metadata.getUserId());
+                    if (metadata.getChecksum() != null) {
+                        ps.setString(7, metadata.getChecksum());
+                    } else {
+                        ps.setNull(7, Types.VARCHAR);
+                    }
+                    ps.setBoolean(8, true);
+                    ps.setTimestamp(9, now);
+                    ps.setTimestamp(10, now);
+                });
+        log.info("Created file metadata for {} files", metadataList.size());
+    }
+
+    /**
+     * Stores the metadata of a striped file together with its stripe map.
+     */
+    @Transactional
+    public FileMetadata createStripedFileMetadata(FileMetadata metadata, List<FileStripe> stripes) {
+        FileMetadata savedMetadata = fileMetadataRepository.save(metadata);
+        stripes.forEach(stripe -> stripe.setFileId(savedMetadata.getFileId()));
+        fileStripeRepository.saveAll(stripes);
+        log.info("Created file metadata for file {} striped across {} nodes",
+                savedMetadata.getFileId(), stripes.size());
+        return savedMetadata;
+    }
+
+    /**
+     * Gets the stripe map of a file, ordered by column.
+     *
+     * @return The file's stripes, or an empty list if the file is not striped
+     */
+    @Transactional(readOnly = true)
+    public List<FileStripe> getStripes(Long fileId) {
+        return fileStripeRepository.findByFileIdOrderByStripeIndex(fileId);
+    }
+
+    /**
+     * Gets the stripe maps of several files in a single query.
+     *
+     * @return The stripes of each striped file; files that are not striped are left out
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<FileStripe>> getStripesForFiles(Collection<Long> fileIds) {
+        return fileStripeRepository.findByFileIdInOrderByFileIdAscStripeIndexAsc(fileIds).stream()
+                .collect(Collectors.groupingBy(FileStripe::getFileId));
+    }
+
     @Transactional(readOnly = true)
     public Optional<FileMetadata> getFileMetadata(Long fileId) {
         return fileMetadataRepository.findByFileIdAndIsActiveTrue(fileId);
@@ -68,11 +153,24 @@ public class FileMetadataService {
 
     @Transactional
     public void updateLastAccessed(Long fileId) {
-        Optional<FileMetadata> metadata = fileMetadataRepository.findByFileIdAndIsActiveTrue(fileId);
-        if (metadata.isPresent()) {
-            metadata.get().setLastAccessed(LocalDateTime.now());
-            fileMetadataRepository.save(metadata.get());
-        }
+        updateLastAccessedBatch(Map.of(fileId, LocalDateTime.now()));
+    }
+
+    /**
+     * Sets the last access time of many files using batched JDBC statements in one transaction.
+     * A time is only written if it is later than the stored one, and the version is not changed.
+     */
+    @Transactional
+    public void updateLastAccessedBatch(Map<Long, LocalDateTime> accessTimes) {
+        List<Map.Entry<Long, LocalDateTime>> entries = new ArrayList<>(accessTimes.entrySet());
+        jdbcTemplate.batchUpdate(UPDATE_LAST_ACCESSED_SQL, entries,
+                config.getBatch().getInsertBatchSize(), (ps, entry) -> {
+                    Timestamp accessed = Timestamp.valueOf(entry.getValue());
+                    ps.setTimestamp(1, accessed);
+                    ps.setLong(2, entry.getKey());
+                    ps.setTimestamp(3, accessed);
+                });
+        log.debug("Updated last access time of {} files", entries.size());
     }
 
     @Transactional
@@ -85,6 +183,35 @@ public class FileMetadataService {
         return false;
     }
 
+    /**
+     * Finds the node of each active file in a set, in a single query.
+     *
+     * @return The node ID of each file found; missing and deleted files are left out
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> getNodeIdsForFiles(Collection<Long> fileIds) {
+        return fileMetadataRepository.findByFileIdInAndIsActiveTrue(fileIds).stream()
+                .collect(Collectors.toMap(FileMetadata::getFileId, FileMetadata::getNodeId));
+    }
+
+    /**
+     * Marks many files as deleted with bulk updates of at most one JDBC batch of IDs each.
+     *
+     * @return The number of files marked as deleted
+     */
+    @Transactional
+    public int deleteFileMetadataBatch(Collection<Long> fileIds) {
+        List<Long> ids = new ArrayList<>(fileIds);
+        int chunkSize = config.getBatch().getInsertBatchSize();
+        int updatedRows = 0;
+        for (int start = 0; start < ids.size(); start += chunkSize) {
+            updatedRows += fileMetadataRepository.markAllAsDeleted(
+                    ids.subList(start, Math.min(start + chunkSize, ids.size())));
+        }
+        log.info("Marked {} files as deleted", updatedRows);
+        return updatedRows;
+    }
+
     @Transactional
     public void markAllFilesAsDeletedForNode(Long nodeId) {
         int updatedRows = fileMetadataRepository.markAllFilesAsDeletedForNode(nodeId);
@@ -101,10 +228,29 @@ public class FileMetadataService {
         List<Object[]> results = fileMetadataRepository.getNodeStorageStatistics();
         return results.stream().collect(Collectors.toMap(
             result -> (Long) result[0],
-            result -> new NodeStorageStats((Long) result[1], (Long) result[2])
+            result -> new NodeStorageStats((Long) result[1], (Long) result[2],
+                                           storageNodeService.getNode((Long) result[0])
+                                                   .map(StorageNode::getTier)
+                                                   .orElse(null))
         ));
     }
 
+    /**
+     * Sums the capacity, used space and stored files of the registered nodes by storage tier.
+     *
+     * @return The statistics of each tier that has nodes
+     */
+    @Transactional(readOnly = true)
+    public Map<StorageTier, TierStorageStats> getTierStorageStatistics() {
+        Map<Long, NodeStorageStats> nodeStats = getNodeStorageStatistics();
+        Map<StorageTier, TierStorageStats> tierStats = new EnumMap<>(StorageTier.class);
+        for (StorageNode node : storageNodeService.getAllNodes()) {
+            tierStats.computeIfAbsent(node.getTier(), tier -> new TierStorageStats())
+                     .add(node, nodeStats.get(node.getContainerId()));
+        }
+        return tierStats;
+    }
+
     @Transactional(readOnly = true)
     public List<FileMetadata> searchFilesByName(String filename) {
         return fileMetadataRepository.findByOriginalFilenameContainingIgnoreCaseAndIsActiveTrue(filename);
@@ -130,13 +276,46 @@ public class FileMetadataService {
     public static class NodeStorageStats {
         private final Long fileCount;
         private final Long totalSize;
+        private final StorageTier tier;
 
-        public NodeStorageStats(Long fileCount, Long totalSize) {
+        public NodeStorageStats(Long fileCount, Long totalSize, StorageTier tier) {
             this.fileCount = fileCount != null ? fileCount : 0L;
             this.totalSize = totalSize != null ? totalSize : 0L;
+            this.tier = tier;
         }
 
         public Long getFileCount() { return fileCount; }
         public Long getTotalSize() { return totalSize; }
+        public StorageTier getTier() { return tier; }
+    }
+
+    public static class TierStorageStats {
+        private int nodeCount;
+        private int activeNodeCount;
+        private long capacity;
+        private long usedSpace;
+        private long fileCount;
+        private long totalSize;
+
+        void add(StorageNode node, NodeStorageStats files) {
+            nodeCount++;
+            if (node.getStatus() == NodeStatus.ACTIVE) {
+                activeNodeCount++;
+            }
+            capacity += node.getCapacity();
+            usedSpace += node.getUsedSpace() != null ? node.getUsedSpace() : 0L;
+            if (files != null) {
+                fileCount += files.getFileCount();
+                totalSize += files.getTotalSize();
+            }
+        }
+
+        public int getNodeCount() { return nodeCount; }
+        public int getActiveNodeCount() { return activeNodeCount; }
+        public long getCapacity() { return capacity; }
+        public long getUsedSpace() { return usedSpace; }
+        public long getFreeSpace() { return Math.max(capacity - usedSpace, 0L); }
+        public long getFileCount() { return fileCount; }
+        public long getTotalSize() { return totalSize; }
     }
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Service that relays file content between clients and storage nodes through a fixed-size buffer,
+ * so proxy memory per request stays constant regardless of file size.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class FileTransferService {
+  private final RestTemplate restTemplate;
+  private final MetricsService metricsService;
+  private final LoadBalancerConfig config;
+
+  // Content headers passed from the storage node through to the client
+  public static final List<String> RELAYED_RESPONSE_HEADERS =
+      List.of(
+          HttpHeaders.CONTENT_TYPE,
+          HttpHeaders.CONTENT_LENGTH,
+          HttpHeaders.CONTENT_ENCODING,
+          HttpHeaders.VARY,
+          HttpHeaders.CONTENT_DISPOSITION,
+          HttpHeaders.CONTENT_RANGE,
+          HttpHeaders.ACCEPT_RANGES);
+
+  /**
+   * Streams a raw upload body to a storage node and returns the node's JSON response.
+   *
+   * @param uploadUrl The storage node upload URL
+   * @param body The client request body
+   * @param contentType The content type of the body, including any multipart boundary
+   * @param contentLength The body length, or -1 if unknown
+   * @param headers Additional headers to forward to the node
+   * @return The node's response body
+   */
+  public Map<String, Object> streamUpload(
+      String uploadUrl,
+      InputStream body,
+      MediaType contentType,
+      long contentLength,
+      HttpHeaders headers) {
+    return streamUpload(uploadUrl, HttpMethod.POST, body, contentType, contentLength, headers);
+  }
+
+  /**
+   * Streams a raw request body to a storage node with the given method and returns the node's
+   * JSON response.
+   *
+   * @param uploadUrl The storage node URL
+   * @param method The HTTP method, e.g. PUT for the parts of a resumable upload
+   * @param body The client request body
+   * @param contentType The content type of the body
+   * @param contentLength The body length, or -1 if unknown
+   * @param headers Additional headers to forward to the node
+   * @return The node's response body
+   */
+  public Map<String, Object> streamUpload(
+      String uploadUrl,
+      HttpMethod method,
+      InputStream body,
+      MediaType contentType,
+      long contentLength,
+      HttpHeaders headers) {
+    RequestCallback requestCallback =
+        request -> {
+          request.getHeaders().putAll(headers);
+          request.getHeaders().setContentType(contentType);
+          if (contentLength >= 0) {
+            request.getHeaders().setContentLength(contentLength);
+          }
+          writeBody(request, body);
+        };
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    HttpMessageConverterExtractor<HashMap<String, Object>> responseExtractor =
+        new HttpMessageConverterExtractor(HashMap.class, restTemplate.getMessageConverters());
+
+    return restTemplate.execute(uploadUrl, method, requestCallback, responseExtractor);
+  }
+
+  /**
+   * Streams a file from a storage node to the client response, relaying the node's status and
+   * content headers. Partial content (206) and unsatisfiable range (416) responses are passed
+   * through unchanged.
+   *
+   * @param downloadUrl The storage node download URL
+   * @param headers Headers to forward to the node, including any Range header
+   * @param response The client response
+   */
+  public void streamDownload(String downloadUrl, HttpHeaders headers, HttpServletResponse response) {
+    streamDownload(downloadUrl, headers, response, (status, nodeHeaders, out) -> out);
+  }
+
+  /**
+   * Streams a file from a storage node to the client response, letting the caller observe or
+   * wrap the client stream once the node's status and headers are known.
+   *
+   * @param downloadUrl The storage node download URL
+   * @param headers Headers to forward to the node, including any Range header
+   * @param response The client response
+   * @param tap Returns the stream the body is relayed to; not called for 416 responses
+   */
+  public void streamDownload(
+      String downloadUrl, HttpHeaders headers, HttpServletResponse response, DownloadTap tap) {
+    try {
+      restTemplate.execute(
+          downloadUrl,
+          HttpMethod.GET,
+          request -> request.getHeaders().putAll(headers),
+          nodeResponse -> {
+            response.setStatus(nodeResponse.getStatusCode().value());
+            copyResponseHeaders(nodeResponse.getHeaders(), response);
+            OutputStream out =
+                tap.attach(
+                    nodeResponse.getStatusCode(),
+                    nodeResponse.getHeaders(),
+                    response.getOutputStream());
+            long transferred = relay(nodeResponse.getBody(), out);
+            if (nodeResponse.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+              metricsService.recordCompressedTransfer(transferred);
+            }
+            return null;
+          });
+    } catch (HttpClientErrorException e) {
+      if (e.getStatusCode() != HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE) {
+        throw e;
+      }
+      response.setStatus(e.getStatusCode().value());
+      if (e.getResponseHeaders() != null) {
+        copyResponseHeaders(e.getResponseHeaders(), response);
+      }
+    }
+  }
+
+  /**
+   * Copies a stream through the relay buffer, recording the transfer in the metrics.
+   *
+   * @param in The source stream
+   * @param out The destination stream
+   * @return The number of bytes relayed
+   * @throws IOException If reading or writing fails
+   */
+  public long relay(InputStream in, OutputStream out) throws IOException {
+    byte[] buffer = new byte[config.getTransfer().getBufferSize()];
+    long transferred = 0;
+    boolean success = false;
+    metricsService.recordTransferStarted();
+    try {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        transferred += read;
+        metricsService.recordTransferProgress(read);
+      }
+      out.flush();
+      success = true;
+      return transferred;
+    } finally {
+      metricsService.recordTransferFinished(transferred, success);
+    }
+  }
+
+  /**
+   * Copies the relayed content headers of a storage node response to the client response.
+   *
+   * @param nodeHeaders The storage node response headers
+   * @param response The client response
+   */
+  public void copyResponseHeaders(HttpHeaders nodeHeaders, HttpServletResponse response) {
+    for (String name : RELAYED_RESPONSE_HEADERS) {
+      List<String> values = nodeHeaders.get(name);
+      if (values != null) {
+        values.forEach(value -> response.addHeader(name, value));
+      }
+    }
+  }
+
+  /** Hook for observing the body of a download as it is relayed to the client. */
+  @FunctionalInterface
+  public interface DownloadTap {
+    OutputStream attach(HttpStatusCode status, HttpHeaders headers, OutputStream out)
+        throws IOException;
+  }
+
+  private void writeBody(ClientHttpRequest request, InputStream body) throws IOException {
+    // Streaming requests hand the output stream to the callback; writing to getBody() would
+    // buffer the whole payload first
+    if (request instanceof StreamingHttpOutputMessage streamingRequest) {
+      streamingRequest.setBody(out -> relay(body, out));
+    } else {
+      relay(body, request.getBody());
+    }
+  }
+}
@@ -140,8 +140,7 @@ public class HealthCheckService {
     if (failures >= config.getHealthCheck().getFailureThreshold()) {
       log.warn(NODE_INACTIVE_LOG, node.getContainerId(), failures);
 
-      storageNodeService.updateNodeStatus(
-              node.getContainerId(), NodeStatus.INACTIVE, node.getUsedSpace());
+      storageNodeService.updateNodeStatus(node.getContainerId(), NodeStatus.INACTIVE);
 
       metricsService.recordStatusChange(node.getContainerId().toString(), NodeStatus.INACTIVE);
     }
@@ -159,8 +158,7 @@ public class HealthCheckService {
     if (node.getStatus() != NodeStatus.ACTIVE) {
       log.info(NODE_ACTIVE_LOG, node.getContainerId());
 
-      storageNodeService.updateNodeStatus(
-              node.getContainerId(), NodeStatus.ACTIVE, node.getUsedSpace());
+      storageNodeService.updateNodeStatus(node.getContainerId(), NodeStatus.ACTIVE);
 
       metricsService.recordStatusChange(node.getContainerId().toString(), NodeStatus.ACTIVE);
     }
@@ -0,0 +1,286 @@
+package com.loadbalancer.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.model.dto.FileCacheStats;
+import com.loadbalancer.service.FileTransferService.DownloadTap;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
+
+/**
+ * Optional cache of small, frequently downloaded files, so hot files are served by the load
+ * balancer without a metadata lookup or a storage node request.
+ *
+ * <p>Content is held off-heap in direct buffers. The cache uses Caffeine, whose W-TinyLFU policy
+ * only admits a new file over an existing one when it has been requested more often, so one-off
+ * reads do not push out hot files. The cache is bounded by total bytes; every entry weighs at
+ * least {@code maxBytes / maxEntries}, which also bounds the number of entries. A file is cached
+ * separately for each set of content encodings it has been requested with.
+ *
+ * <p>Entries expire after the configured time to live, as they are served without a metadata
+ * check. A download captured while its file is being deleted could finish after the file has been
+ * invalidated, so the time of each file's last invalidation is kept for one time to live and
+ * captures started before it are dropped.
+ */
+@Service
+@Slf4j
+public class HotFileCache {
+  private final FileTransferService fileTransferService;
+  private final MetricsService metricsService;
+  private final LoadBalancerConfig.Cache settings;
+  private final Cache<Variant, CachedFile> cache;
+  // Time (System.nanoTime) each file was last invalidated; kept as long as a capture may run
+  private final Cache<Long, Long> invalidations;
+  private final long ttlNanos;
+
+  /**
+   * Creates the cache from the cache settings; no cache is built when it is disabled.
+   *
+   * @param fileTransferService Service used to relay response headers
+   * @param metricsService Service recording served transfers
+   * @param config The load balancer configuration
+   */
+  public HotFileCache(
+      FileTransferService fileTransferService,
+      MetricsService metricsService,
+      LoadBalancerConfig config) {
+    this.fileTransferService = fileTransferService;
+    this.metricsService = metricsService;
+    this.settings = config.getCache();
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(settings.getTtl());
+
+    if (settings.isEnabled()) {
+      long minWeight = Math.max(1, settings.getMaxBytes() / Math.max(1, settings.getMaxEntries()));
+      this.cache =
+          Caffeine.newBuilder()
+              .maximumWeight(settings.getMaxBytes())
+              .weigher(
+                  (Variant variant, CachedFile file) ->
+                      (int) Math.min(Integer.MAX_VALUE, Math.max(minWeight, file.size())))
+              .expireAfterWrite(ttlNanos, TimeUnit.NANOSECONDS)
+              .recordStats()
+              .build();
+      this.invalidations =
+          Caffeine.newBuilder().expireAfterWrite(ttlNanos, TimeUnit.NANOSECONDS).build();
+      log.info(
+          "Hot file cache enabled: {} bytes, {} entries, files up to {} bytes, ttl {} ms",
+          settings.getMaxBytes(),
+          settings.getMaxEntries(),
+          settings.getMaxFileSize(),
+          settings.getTtl());
+    } else {
+      this.cache = null;
+      this.invalidations = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * Writes a cached file to the client response.
+   *
+   * @param fileId The ID of the file to serve
+   * @param acceptedEncodings The content encodings requested from the node, or null for none
+   * @param response The client response
+   * @return true if the file was cached and has been served
+   * @throws IOException If writing to the client fails
+   */
+  public boolean serve(Long fileId, String acceptedEncodings, HttpServletResponse response)
+      throws IOException {
+    if (cache == null) {
+      return false;
+    }
+    CachedFile file = cache.getIfPresent(new Variant(fileId, acceptedEncodings));
+    if (file == null) {
+      return false;
+    }
+
+    response.setStatus(HttpStatus.OK.value());
+    fileTransferService.copyResponseHeaders(file.headers(), response);
+
+    long transferred = 0;
+    boolean success = false;
+    metricsService.recordTransferStarted();
+    try {
+      // Each reader gets its own view of the shared off-heap content
+      ByteBuffer content = file.content().duplicate();
+      WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+      while (content.hasRemaining()) {
+        int written = channel.write(content);
+        transferred += written;
+        metricsService.recordTransferProgress(written);
+      }
+      response.getOutputStream().flush();
+      success = true;
+      return true;
+    } finally {
+      metricsService.recordTransferFinished(transferred, success);
+    }
+  }
+
+  /**
+   * Starts capturing a download so it can be offered to the cache once it completes.
+   *
+   * @param fileId The ID of the file being downloaded
+   * @param acceptedEncodings The content encodings requested from the node, or null for none
+   * @return A capture to wrap the download with, or null if the cache is disabled
+   */
+  public Capture capture(Long fileId, String acceptedEncodings) {
+    return cache != null ? new Capture(new Variant(fileId, acceptedEncodings)) : null;
+  }
+
+  /**
+   * Removes a file from the cache in every encoding, e.g. after it has been deleted.
+   *
+   * @param fileId The ID of the file
+   */
+  public void invalidate(Long fileId) {
+    if (cache != null) {
+      // Recorded first, so a capture committing concurrently either sees it or is removed below
+      invalidations.put(fileId, System.nanoTime());
+      cache.asMap().keySet().removeIf(variant -> variant.fileId().equals(fileId));
+    }
+  }
+
+  /** Whether a file has been invalidated since the given time (System.nanoTime). */
+  private boolean invalidatedSince(Long fileId, long time) {
+    Long invalidatedAt = invalidations.getIfPresent(fileId);
+    return invalidatedAt != null && invalidatedAt - time >= 0;
+  }
+
+  /**
+   * Gets hit, miss and eviction statistics for the cache.
+   *
+   * @return Cache statistics
+   */
+  public FileCacheStats getCacheStats() {
+    FileCacheStats.FileCacheStatsBuilder builder =
+        FileCacheStats.builder()
+            .enabled(cache != null)
+            .maxEntries(settings.getMaxEntries())
+            .maxBytes(settings.getMaxBytes())
+            .maxFileSize(settings.getMaxFileSize());
+    if (cache == null) {
+      return builder.build();
+    }
+
+    CacheStats stats = cache.stats();
+    long cachedBytes = cache.asMap().values().stream().mapToLong(CachedFile::size).sum();
+    return builder
+        .entries(cache.estimatedSize())
+        .cachedBytes(cachedBytes)
+        .hitCount(stats.hitCount())
+        .missCount(stats.missCount())
+        .hitRate(stats.hitRate())
+        .evictionCount(stats.evictionCount())
+        .build();
+  }
+
+  /** A file as requested with a list of content encodings; null stands for none. */
+  private record Variant(Long fileId, String acceptedEncodings) {}
+
+  /** A cached file: its off-heap content and the headers to serve it with. */
+  private record CachedFile(ByteBuffer content, HttpHeaders headers) {
+    long size() {
+      return content.capacity();
+    }
+  }
+
+  /**
+   * Copies a download's body as it is relayed, then offers it to the cache if the download
+   * completed and the file is small enough.
+   */
+  public final class Capture {
+    private final Variant variant;
+    private final long startedAt = System.nanoTime();
+    private ByteArrayOutputStream buffer;
+    private HttpHeaders headers;
+    private long expectedLength;
+
+    private Capture(Variant variant) {
+      this.variant = variant;
+    }
+
+    /**
+     * Wraps a download tap so the body relayed through it is also captured.
+     *
+     * @param tap The tap to wrap
+     * @return A tap that captures the body of cacheable responses
+     */
+    public DownloadTap wrap(DownloadTap tap) {
+      return (status, nodeHeaders, out) ->
+          attach(status, nodeHeaders, tap.attach(status, nodeHeaders, out));
+    }
+
+    private OutputStream attach(HttpStatusCode status, HttpHeaders nodeHeaders, OutputStream out) {
+      long length = nodeHeaders.getContentLength();
+      if (status.value() != HttpStatus.OK.value()
+          || length < 0
+          || length > settings.getMaxFileSize()) {
+        return out;
+      }
+
+      expectedLength = length;
+      headers = new HttpHeaders();
+      FileTransferService.RELAYED_RESPONSE_HEADERS.forEach(
+          name -> {
+            if (nodeHeaders.containsKey(name)) {
+              headers.put(name, nodeHeaders.get(name));
+            }
+          });
+      buffer = new ByteArrayOutputStream((int) length);
+      return new FilterOutputStream(out) {
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+          buffer.write(b, off, len);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+          write(new byte[] {(byte) b}, 0, 1);
+        }
+      };
+    }
+
+    /**
+     * Offers the captured file to the cache; call only after the download has completed. It is
+     * dropped if the file has been invalidated since the capture started, or if the capture took
+     * longer than the time to live, after which that invalidation may have been forgotten.
+     */
+    public void commit() {
+      if (buffer == null || buffer.size() != expectedLength) {
+        return;
+      }
+      Long fileId = variant.fileId();
+      if (System.nanoTime() - startedAt > ttlNanos || invalidatedSince(fileId, startedAt)) {
+        buffer = null;
+        return;
+      }
+      ByteBuffer content = ByteBuffer.allocateDirect(buffer.size());
+      content.put(buffer.toByteArray()).flip();
+      CachedFile file = new CachedFile(content.asReadOnlyBuffer(), headers);
+      cache.put(variant, file);
+      if (invalidatedSince(fileId, startedAt)) {
+        cache.asMap().remove(variant, file);
+      }
+      buffer = null;
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package com.loadbalancer.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tracks the requests and bytes in flight to each storage node. Every proxied transfer is
+ * wrapped in a {@link Transfer}, which counts it from the moment it is sent to the node until it
+ * is closed, so load-aware strategies see the current load rather than a history.
+ */
+@Service
+@RequiredArgsConstructor
+public class InFlightTracker {
+  private final MetricsService metricsService;
+  private final Map<Long, Load> loads = new ConcurrentHashMap<>();
+
+  /**
+   * Starts tracking a transfer to a node. Use it in a try-with-resources block.
+   *
+   * @param nodeId The node ID
+   * @param bytes The bytes to be transferred, if known; 0 otherwise
+   * @return The transfer, to be closed when it is over
+   */
+  public Transfer begin(Long nodeId, long bytes) {
+    Load load = loadOf(nodeId);
+    metricsService.recordConnectionCount(nodeId.toString(), load.requests.incrementAndGet());
+    load.bytes.addAndGet(Math.max(bytes, 0));
+    return new Transfer(nodeId, load, Math.max(bytes, 0));
+  }
+
+  /**
+   * Starts tracking a transfer to a node unless the node already has {@code limit} requests in
+   * flight. The check and the count are one atomic step, so concurrent callers never exceed the
+   * limit between them.
+   *
+   * @param nodeId The node ID
+   * @param bytes The bytes to be transferred, if known; 0 otherwise
+   * @param limit The most requests the node may have in flight
+   * @return The transfer, to be closed when it is over, or null if the node is at its limit
+   */
+  public Transfer tryBegin(Long nodeId, long bytes, int limit) {
+    Load load = loadOf(nodeId);
+    int requests;
+    do {
+      requests = load.requests.get();
+      if (requests >= limit) {
+        return null;
+      }
+    } while (!load.requests.compareAndSet(requests, requests + 1));
+    metricsService.recordConnectionCount(nodeId.toString(), requests + 1);
+    load.bytes.addAndGet(Math.max(bytes, 0));
+    return new Transfer(nodeId, load, Math.max(bytes, 0));
+  }
+
+  /**
+   * Counts a request whose end is reported separately through {@link #release}, e.g. by a client
+   * that was given a node to use directly.
+   *
+   * @param nodeId The node ID
+   */
+  public void acquire(Long nodeId) {
+    metricsService.recordConnectionCount(
+        nodeId.toString(), loadOf(nodeId).requests.incrementAndGet());
+  }
+
+  /**
+   * Ends a request counted by {@link #acquire}. The count never drops below zero.
+   *
+   * @param nodeId The node ID
+   */
+  public void release(Long nodeId) {
+    Load load = loads.get(nodeId);
+    if (load != null) {
+      metricsService.recordConnectionCount(
+          nodeId.toString(), load.requests.updateAndGet(count -> Math.max(0, count - 1)));
+    }
+  }
+
+  /**
+   * Gets the number of requests in flight to a node.
+   *
+   * @param nodeId The node ID
+   * @return The requests in flight
+   */
+  public int getRequests(Long nodeId) {
+    Load load = loads.get(nodeId);
+    return load == null ? 0 : load.requests.get();
+  }
+
+  /**
+   * Gets the number of bytes still to be transferred by the requests in flight to a node, as far
+   * as their sizes are known.
+   *
+   * @param nodeId The node ID
+   * @return The bytes in flight
+   */
+  public long getBytes(Long nodeId) {
+    Load load = loads.get(nodeId);
+    return load == null ? 0 : load.bytes.get();
+  }
+
+  /**
+   * Gets the requests and bytes in flight to each node.
+   *
+   * @return The load of each node, by node ID
+   */
+  public Map<Long, Map<String, Long>> getStats() {
+    Map<Long, Map<String, Long>> stats = new TreeMap<>();
+    loads.forEach(
+        (nodeId, load) ->
+            stats.put(
+                nodeId,
+                Map.of(
+                    "requests", (long) load.requests.get(),
+                    "bytes", load.bytes.get())));
+    return stats;
+  }
+
+  private Load loadOf(Long nodeId) {
+    return loads.computeIfAbsent(nodeId, id -> new Load());
+  }
+
+  private static final class Load {
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private final AtomicLong bytes = new AtomicLong(0);
+  }
+
+  /** A transfer in flight. Closing it more than once has no further effect. */
+  public final class Transfer implements AutoCloseable {
+    private final Long nodeId;
+    private final Load load;
+    private long bytes;
+    private boolean closed;
+
+    private Transfer(Long nodeId, Load load, long bytes) {
+      this.nodeId = nodeId;
+      this.load = load;
+      this.bytes = bytes;
+    }
+
+    /**
+     * Adds bytes that became known after the transfer started, e.g. a download's length once
+     * the node has answered.
+     *
+     * @param additionalBytes The additional bytes
+     */
+    public synchronized void addBytes(long additionalBytes) {
+      if (additionalBytes > 0 && !closed) {
+        bytes += additionalBytes;
+        load.bytes.addAndGet(additionalBytes);
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      if (!closed) {
+        closed = true;
+        load.bytes.addAndGet(-bytes);
+        metricsService.recordConnectionCount(nodeId.toString(), load.requests.decrementAndGet());
+      }
+    }
+  }
+}
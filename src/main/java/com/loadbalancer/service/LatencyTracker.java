@@ -0,0 +1,115 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps a peak exponentially weighted moving average of each node's response time. A sample above
+ * the estimate replaces it at once, so a slow disk or a GC pause shows up on the first slow
+ * response; lower samples pull it down with a weight that grows with the time since the previous
+ * sample. Updates are lock-free.
+ *
+ * <p>Samples are the time until a node's response headers arrive for a download, which does not
+ * grow with the file size or the client's bandwidth the way the whole transfer does. Other requests
+ * only add a sample when they fail.
+ *
+ * <p>The estimate also decays towards zero with the time since the last sample whenever it is
+ * read. A node that one slow response made the strategies avoid would otherwise get no new
+ * samples and keep its peak for good; with the decay it is tried again within a few decay times.
+ */
+@Service
+public class LatencyTracker {
+  private final long decayNanos;
+  private final double failurePenalty;
+  private final Map<Long, AtomicReference<Estimate>> estimates = new ConcurrentHashMap<>();
+
+  public LatencyTracker(LoadBalancerConfig config) {
+    this.decayNanos =
+        Math.max(TimeUnit.MILLISECONDS.toNanos(config.getPeakEwma().getDecayTime()), 1);
+    this.failurePenalty = config.getPeakEwma().getFailurePenalty();
+  }
+
+  /**
+   * Adds a response time to a node's estimate.
+   *
+   * @param nodeId The node ID
+   * @param responseTime The time until the node's response headers arrived (ms)
+   */
+  public void observe(Long nodeId, double responseTime) {
+    add(nodeId, Math.max(responseTime, 0));
+  }
+
+  /**
+   * Adds a failed request to a node's estimate. It counts as the failure penalty, so a node that
+   * fails fast does not look fast.
+   *
+   * @param nodeId The node ID
+   */
+  public void observeFailure(Long nodeId) {
+    add(nodeId, failurePenalty);
+  }
+
+  private void add(Long nodeId, double sample) {
+    long now = System.nanoTime();
+    estimates
+        .computeIfAbsent(nodeId, id -> new AtomicReference<>())
+        .updateAndGet(previous -> update(previous, sample, now));
+  }
+
+  /**
+   * Gets a node's current response time estimate.
+   *
+   * @param nodeId The node ID
+   * @return The estimate (ms), or 0 if the node has not answered yet
+   */
+  public double getLatency(Long nodeId) {
+    AtomicReference<Estimate> estimate = estimates.get(nodeId);
+    Estimate current = estimate == null ? null : estimate.get();
+    return current == null ? 0 : decayed(current, System.nanoTime());
+  }
+
+  /**
+   * Gets the latency a node is assumed to have for a request while it has no estimate yet.
+   *
+   * @return The failure penalty (ms)
+   */
+  public double getFailurePenalty() {
+    return failurePenalty;
+  }
+
+  /**
+   * Gets the current response time estimate of each node.
+   *
+   * @return The estimates (ms), by node ID
+   */
+  public Map<Long, Double> getLatencies() {
+    Map<Long, Double> latencies = new TreeMap<>();
+    estimates.keySet().forEach(nodeId -> latencies.put(nodeId, getLatency(nodeId)));
+    return latencies;
+  }
+
+  private Estimate update(Estimate previous, double sample, long now) {
+    if (previous == null || sample >= decayed(previous, now)) {
+      return new Estimate(sample, now);
+    }
+    double weight = weight(previous, now);
+    return new Estimate(previous.latency() * weight + sample * (1 - weight), now);
+  }
+
+  /** The estimate as of {@code now}, decayed towards zero since its last sample. */
+  private double decayed(Estimate estimate, long now) {
+    return estimate.latency() * weight(estimate, now);
+  }
+
+  private double weight(Estimate estimate, long now) {
+    long elapsed = Math.max(now - estimate.stamp(), 0);
+    return Math.exp(-(double) elapsed / decayNanos);
+  }
+
+  private record Estimate(double latency, long stamp) {}
+}
@@ -2,54 +2,316 @@ package com.loadbalancer.service;
 
 import com.loadbalancer.config.LoadBalancerConfig;
 import com.loadbalancer.exception.NoAvailableNodesException;
+import com.loadbalancer.exception.NodeOverloadedException;
 import com.loadbalancer.exception.StrategyNotFoundException;
+import com.loadbalancer.model.dto.PlacementDecision;
 import com.loadbalancer.model.entity.FileMetadata;
 import com.loadbalancer.model.entity.StorageNode;
 import com.loadbalancer.model.enums.NodeStatus;
 import com.loadbalancer.strategy.LoadBalancerStrategy;
+import com.loadbalancer.strategy.RendezvousHashStrategy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class LoadBalancerService {
   private final Map<String, LoadBalancerStrategy> strategies;
+  private final RendezvousHashStrategy rendezvousHashStrategy;
   private final StorageNodeService storageNodeService;
   private final FileMetadataService fileMetadataService;
   private final MetricsService metricsService;
+  private final AccessTimeBuffer accessTimeBuffer;
   private final LoadBalancerConfig config;
   private final RestTemplate restTemplate;
-  private final Map<String, Integer> nodeConnectionCounts = new ConcurrentHashMap<>();
+  private final Executor taskExecutor;
+  private final InFlightTracker inFlightTracker;
+  private final CapacityLedger capacityLedger;
+  private final ConcurrencyLimiter concurrencyLimiter;
+
+  private static final String NO_SUFFICIENT_CAPACITY = "No node with sufficient capacity";
+  // Selections retried when a concurrent upload takes the selected node's space first
+  private static final int MAX_RESERVATION_ATTEMPTS = 3;
 
   // Cache to store file-to-node mapping for quick access
   private final Map<Long, Long> fileNodeCache = new ConcurrentHashMap<>();
 
+  public LoadBalancerService(
+      Map<String, LoadBalancerStrategy> strategies,
+      RendezvousHashStrategy rendezvousHashStrategy,
+      StorageNodeService storageNodeService,
+      FileMetadataService fileMetadataService,
+      MetricsService metricsService,
+      AccessTimeBuffer accessTimeBuffer,
+      LoadBalancerConfig config,
+      RestTemplate restTemplate,
+      @Qualifier("taskExecutor") Executor taskExecutor,
+      InFlightTracker inFlightTracker,
+      CapacityLedger capacityLedger,
+      ConcurrencyLimiter concurrencyLimiter) {
+    this.strategies = strategies;
+    this.rendezvousHashStrategy = rendezvousHashStrategy;
+    this.storageNodeService = storageNodeService;
+    this.fileMetadataService = fileMetadataService;
+    this.metricsService = metricsService;
+    this.accessTimeBuffer = accessTimeBuffer;
+    this.config = config;
+    this.restTemplate = restTemplate;
+    this.taskExecutor = taskExecutor;
+    this.inFlightTracker = inFlightTracker;
+    this.capacityLedger = capacityLedger;
+    this.concurrencyLimiter = concurrencyLimiter;
+  }
+
   public StorageNode selectNode(String strategyName, long fileSize) {
-    String selectedStrategy =
-        Optional.ofNullable(strategyName).orElse(config.getStrategies().getDefaultStrategy());
+    return selectNode(strategyName, fileSize, null);
+  }
+
+  /**
+   * Selects a node for a file identified by a key, for strategies with key affinity.
+   *
+   * @param strategyName The strategy to use, or null for the default strategy
+   * @param fileSize The size of the file
+   * @param fileKey The file key, or null if the file has none
+   * @return The selected node
+   */
+  public StorageNode selectNode(String strategyName, long fileSize, String fileKey) {
+    return selectNode(PlacementDecision.ofStrategy(strategyName), fileSize, fileKey);
+  }
+
+  /**
+   * Selects a node for a file within the pool and with the strategy of a placement, on one of
+   * its preferred tiers if any of them can take the file.
+   *
+   * @param placement The placement of the file
+   * @param fileSize The size of the file
+   * @param fileKey The file key, or null if the file has none
+   * @return The selected node
+   */
+  public StorageNode selectNode(PlacementDecision placement, long fileSize, String fileKey) {
+    String selectedStrategy = strategyName(placement);
+    LoadBalancerStrategy strategy = strategyFor(selectedStrategy);
+    StorageNode selectedNode =
+        preferTiers(
+            candidates(placement, availableNodes()),
+            nodes -> strategy.selectNode(nodes, fileSize, fileKey));
+    log.debug(
+        "Selected node {} using strategy {}", selectedNode.getContainerId(), selectedStrategy);
+    return selectedNode;
+  }
+
+  /**
+   * Selects a node for a file to be uploaded through the load balancer and reserves space for it
+   * there, so concurrent uploads see each other before the node's next heartbeat. The
+   * reservation must be committed once the upload has succeeded and closed in any case.
+   *
+   * @param placement The placement of the file
+   * @param fileSize The size of the file to be stored
+   * @param fileKey The placement key of the file, or null if it has none
+   * @return The reservation on the selected node
+   */
+  public CapacityLedger.Reservation reserveNode(
+      PlacementDecision placement, long fileSize, String fileKey) {
+    return reserveNodes(
+            List.of(placement), List.of(fileSize), Collections.singletonList(fileKey))
+        .get(0);
+  }
+
+  /**
+   * Selects nodes for several files to be uploaded and reserves space for each. Either every
+   * file gets a reservation or none does.
+   *
+   * @param placements The placement of each file
+   * @param fileSizes The sizes of the files to be stored
+   * @param fileKeys The placement keys of the files, or null if they have none
+   * @return One reservation per file, in the same order
+   */
+  public List<CapacityLedger.Reservation> reserveNodes(
+      List<PlacementDecision> placements, List<Long> fileSizes, List<String> fileKeys) {
+    List<StorageNode> availableNodes = availableNodes();
+    // Files with the same placement select from the same lists, so they are filtered only once
+    Map<PlacementDecision, Candidates> candidates = new HashMap<>();
+
+    List<CapacityLedger.Reservation> reservations = new ArrayList<>(fileSizes.size());
+    try {
+      for (int i = 0; i < fileSizes.size(); i++) {
+        PlacementDecision placement = placements.get(i);
+        String selectedStrategy = strategyName(placement);
+        LoadBalancerStrategy strategy = strategyFor(selectedStrategy);
+        long fileSize = fileSizes.get(i);
+        String fileKey = fileKeys == null ? null : fileKeys.get(i);
+        CapacityLedger.Reservation reservation =
+            preferTiers(
+                candidates.computeIfAbsent(
+                    placement, unused -> candidates(placement, availableNodes)),
+                nodes -> reserve(strategy, nodes, fileSize, fileKey));
+        log.debug(
+            "Selected node {} using strategy {}",
+            reservation.getNode().getContainerId(),
+            selectedStrategy);
+        reservations.add(reservation);
+      }
+    } catch (RuntimeException e) {
+      reservations.forEach(CapacityLedger.Reservation::close);
+      throw e;
+    }
+    return reservations;
+  }
 
-    LoadBalancerStrategy strategy =
-        Optional.ofNullable(strategies.get(selectedStrategy))
-            .orElseThrow(
-                () -> new StrategyNotFoundException("Invalid strategy: " + selectedStrategy));
+  /**
+   * Selects distinct nodes for the columns of a striped file and reserves space for a column on
+   * each. Each column is placed by the default strategy among the nodes not yet chosen.
+   *
+   * @param width The number of columns wanted
+   * @param columnSize The approximate size of each column
+   * @return Up to {@code width} reservations on distinct nodes; fewer if fewer nodes can take a
+   *     column
+   */
+  public List<CapacityLedger.Reservation> reserveStripeNodes(int width, long columnSize) {
+    LoadBalancerStrategy strategy = strategyFor(config.getStrategies().getDefaultStrategy());
+    List<StorageNode> candidates = new ArrayList<>(availableNodes());
 
+    List<CapacityLedger.Reservation> reservations = new ArrayList<>(width);
+    while (reservations.size() < width && !candidates.isEmpty()) {
+      CapacityLedger.Reservation reservation;
+      try {
+        reservation = reserve(strategy, candidates, columnSize, null);
+      } catch (IllegalStateException | NodeOverloadedException e) {
+        // The remaining nodes cannot take a column; stripe across the ones already chosen
+        if (reservations.isEmpty()) {
+          throw e;
+        }
+        break;
+      }
+      Long nodeId = reservation.getNode().getContainerId();
+      candidates.removeIf(node -> node.getContainerId().equals(nodeId));
+      reservations.add(reservation);
+    }
+    return reservations;
+  }
+
+  /**
+   * Selects a node and reserves the file's space on it. A node whose last free space was taken
+   * by a concurrent upload between selection and reservation is no longer eligible when the
+   * strategy is asked again, since strategies see the reserved space. Nodes at their
+   * concurrency limit are skipped, so the file goes to another node rather than waiting.
+   */
+  private CapacityLedger.Reservation reserve(
+      LoadBalancerStrategy strategy, List<StorageNode> nodes, long fileSize, String fileKey) {
+    List<StorageNode> openNodes = concurrencyLimiter.belowLimit(nodes);
+    for (int attempt = 0; attempt < MAX_RESERVATION_ATTEMPTS; attempt++) {
+      StorageNode node = strategy.selectNode(openNodes, fileSize, fileKey);
+      CapacityLedger.Reservation reservation = capacityLedger.tryReserve(node, fileSize);
+      if (reservation != null) {
+        return reservation;
+      }
+      log.debug("Lost the space on node {} to a concurrent upload", node.getContainerId());
+    }
+    throw new IllegalStateException(NO_SUFFICIENT_CAPACITY);
+  }
+
+  private LoadBalancerStrategy strategyFor(String strategyName) {
+    return Optional.ofNullable(strategies.get(strategyName))
+        .orElseThrow(() -> new StrategyNotFoundException("Invalid strategy: " + strategyName));
+  }
+
+  private List<StorageNode> availableNodes() {
     List<StorageNode> availableNodes = storageNodeService.getAvailableNodes();
     if (availableNodes.isEmpty()) {
       throw new NoAvailableNodesException("No storage nodes available");
     }
+    return availableNodes;
+  }
 
-    StorageNode selectedNode = strategy.selectNode(availableNodes, fileSize);
-    log.debug(
-        "Selected node {} using strategy {}", selectedNode.getContainerId(), selectedStrategy);
+  /** Narrows the available nodes to the placement's pool, if it has one. */
+  private List<StorageNode> availableNodes(
+      PlacementDecision placement, List<StorageNode> availableNodes) {
+    if (placement.getNodeIds() == null) {
+      return availableNodes;
+    }
+    List<StorageNode> poolNodes =
+        availableNodes.stream()
+            .filter(node -> placement.getNodeIds().contains(node.getContainerId()))
+            .toList();
+    if (poolNodes.isEmpty()) {
+      throw new NoAvailableNodesException(
+          "No storage nodes available in pool " + placement.getPool());
+    }
+    return poolNodes;
+  }
 
-    return selectedNode;
+  /**
+   * Narrows the available nodes to the placement's pool, and within it to the nodes of the
+   * placement's preferred tiers.
+   */
+  private Candidates candidates(PlacementDecision placement, List<StorageNode> availableNodes) {
+    List<StorageNode> nodes = availableNodes(placement, availableNodes);
+    if (placement.getTiers() == null) {
+      return new Candidates(nodes, nodes);
+    }
+    List<StorageNode> preferred =
+        nodes.stream().filter(node -> placement.getTiers().contains(node.getTier())).toList();
+    boolean noPreference = preferred.isEmpty() || preferred.size() == nodes.size();
+    return new Candidates(nodes, noPreference ? nodes : preferred);
+  }
+
+  /**
+   * Selects from the preferred nodes, falling back to the whole pool when none of them can take
+   * the file. Preferred tiers only steer placement; they never make an upload fail.
+   */
+  private <T> T preferTiers(Candidates candidates, Function<List<StorageNode>, T> selection) {
+    if (candidates.preferred() != candidates.nodes()) {
+      try {
+        return selection.apply(candidates.preferred());
+      } catch (IllegalStateException | NodeOverloadedException e) {
+        log.debug("No node of the preferred tiers can take the file; selecting from all tiers");
+      }
+    }
+    return selection.apply(candidates.nodes());
+  }
+
+  /** The nodes of a placement's pool, and those of its preferred tiers or the same list. */
+  private record Candidates(List<StorageNode> nodes, List<StorageNode> preferred) {}
+
+  private String strategyName(PlacementDecision placement) {
+    return Optional.ofNullable(placement.getStrategy())
+        .orElse(config.getStrategies().getDefaultStrategy());
+  }
+
+  /**
+   * Builds the placement key of a file from its owner and name, so that the same user's file of
+   * the same name is placed the same way.
+   *
+   * @param userId The ID of the user storing the file
+   * @param fileName The file name, or null if unknown
+   * @return The file key, or null if the name is unknown
+   */
+  public static String fileKey(Long userId, String fileName) {
+    return fileName == null || fileName.isBlank() ? null : userId + "/" + fileName;
+  }
+
+  /**
+   * Gets the name a storage node stored an uploaded file under, from the node's upload response.
+   *
+   * @param nodeResponse The node's response for the stored file
+   * @return The stored file name, or the original file name for a node that does not report it
+   */
+  public static String storedFileName(Map<String, Object> nodeResponse) {
+    Object storedFileName = nodeResponse.get("storedFileName");
+    return String.valueOf(storedFileName != null ? storedFileName : nodeResponse.get("fileName"));
   }
 
   public StorageNode getNodeForFile(Long fileId) {
@@ -70,32 +332,55 @@ public class LoadBalancerService {
       }
     }
 
-    // Last resort: query each storage node (for legacy files not in database)
-    List<StorageNode> activeNodes = storageNodeService.getAvailableNodes();
-    for (StorageNode node : activeNodes) {
-      try {
-        String checkUrl =
-            String.format(
-                "http://%s:%d/api/v1/files/%d/exists",
-                node.getHostAddress(), node.getPort(), fileId);
-        Boolean exists = restTemplate.getForObject(checkUrl, Boolean.class);
-
-        if (Boolean.TRUE.equals(exists)) {
-          // Update cache and return node
-          fileNodeCache.put(fileId, node.getContainerId());
-          log.warn("Found file {} on node {} but not in database - consider data migration",
-                   fileId, node.getContainerId());
-          return node;
-        }
-      } catch (Exception e) {
-        log.warn(
-            "Error checking file existence on node {}: {}", node.getContainerId(), e.getMessage());
+    // Last resort: ask the storage nodes (for legacy files not in database). The nodes are
+    // ranked by rendezvous hashing of the file ID; the predicted node is asked alone first, and
+    // only if it misses are all the others asked at once instead of one after another.
+    List<StorageNode> rankedNodes =
+        rendezvousHashStrategy.rankNodes(storageNodeService.getAvailableNodes(), "file-" + fileId);
+    if (rankedNodes.isEmpty()) {
+      throw new NoAvailableNodesException("No node found containing file: " + fileId);
+    }
+    if (fileExistsOn(rankedNodes.get(0), fileId)) {
+      return foundOnNode(fileId, rankedNodes.get(0));
+    }
+
+    List<StorageNode> otherNodes = rankedNodes.subList(1, rankedNodes.size());
+    List<CompletableFuture<Boolean>> probes =
+        otherNodes.stream()
+            .map(
+                node ->
+                    CompletableFuture.supplyAsync(() -> fileExistsOn(node, fileId), taskExecutor))
+            .toList();
+    for (int i = 0; i < otherNodes.size(); i++) {
+      if (probes.get(i).join()) {
+        return foundOnNode(fileId, otherNodes.get(i));
       }
     }
 
     throw new NoAvailableNodesException("No node found containing file: " + fileId);
   }
 
+  private boolean fileExistsOn(StorageNode node, Long fileId) {
+    try {
+      String checkUrl =
+          String.format(
+              "http://%s:%d/api/v1/files/%d/exists", node.getHostAddress(), node.getPort(), fileId);
+      return Boolean.TRUE.equals(restTemplate.getForObject(checkUrl, Boolean.class));
+    } catch (Exception e) {
+      log.warn(
+          "Error checking file existence on node {}: {}", node.getContainerId(), e.getMessage());
+      return false;
+    }
+  }
+
+  private StorageNode foundOnNode(Long fileId, StorageNode node) {
+    // Update cache and return node
+    fileNodeCache.put(fileId, node.getContainerId());
+    log.warn("Found file {} on node {} but not in database - consider data migration",
+             fileId, node.getContainerId());
+    return node;
+  }
+
   public FileMetadata storeFileMetadata(String originalFilename, String storedFilename,
                                        Long fileSize, String contentType, Long nodeId,
                                        Long userId, String checksum) {
@@ -104,6 +389,10 @@ public class LoadBalancerService {
                                                   userId, checksum);
   }
 
+  public void storeFileMetadataBatch(List<FileMetadata> metadata) {
+    fileMetadataService.createFileMetadataBatch(metadata);
+  }
+
   public boolean deleteFileMetadata(Long fileId) {
     // Remove from cache
     fileNodeCache.remove(fileId);
@@ -111,35 +400,75 @@ public class LoadBalancerService {
     return fileMetadataService.deleteFileMetadata(fileId);
   }
 
+  public Map<Long, Long> getNodeIdsForFiles(Collection<Long> fileIds) {
+    return fileMetadataService.getNodeIdsForFiles(fileIds);
+  }
+
+  public int deleteFileMetadataBatch(Collection<Long> fileIds) {
+    fileIds.forEach(fileNodeCache::remove);
+    return fileMetadataService.deleteFileMetadataBatch(fileIds);
+  }
+
+  /**
+   * Records a file access. The time is buffered and written to the database with the next flush.
+   *
+   * @param fileId The ID of the accessed file
+   */
   public void updateFileAccess(Long fileId) {
-    fileMetadataService.updateLastAccessed(fileId);
+    accessTimeBuffer.record(fileId);
   }
 
   public void recordRequest(String nodeId, boolean success, long duration) {
     metricsService.recordRequest(nodeId, success, duration);
+    concurrencyLimiter.observe(Long.valueOf(nodeId), success);
+  }
+
+  /**
+   * Records how long a node took to start answering a download, which unlike the whole transfer
+   * does not depend on the file size.
+   *
+   * @param node The node
+   * @param firstByteTime The time until the node's response headers arrived (ms)
+   */
+  public void recordFirstByte(StorageNode node, long firstByteTime) {
+    metricsService.recordFirstByte(node.getContainerId(), firstByteTime);
+    concurrencyLimiter.observeFirstByte(node.getContainerId(), firstByteTime);
+  }
+
+  /**
+   * Starts tracking a proxied transfer to a node, so that it counts towards the node's load until
+   * it is closed.
+   *
+   * @param node The node
+   * @param bytes The bytes to be transferred, if known; 0 otherwise
+   * @return The transfer, to be closed when it is over
+   */
+  public InFlightTracker.Transfer beginTransfer(StorageNode node, long bytes) {
+    return inFlightTracker.begin(node.getContainerId(), bytes);
+  }
+
+  /**
+   * Starts a proxied transfer to a node like {@link #beginTransfer}, unless the node is at its
+   * concurrency limit.
+   *
+   * @param node The node
+   * @param bytes The bytes to be transferred, if known; 0 otherwise
+   * @return The transfer, to be closed when it is over
+   * @throws NodeOverloadedException If the node is at its concurrency limit
+   */
+  public InFlightTracker.Transfer beginLimitedTransfer(StorageNode node, long bytes) {
+    return concurrencyLimiter.begin(node, bytes);
   }
 
   public void incrementNodeConnections(String nodeId) {
-    nodeConnectionCounts.compute(
-        nodeId,
-        (key, count) -> {
-          int newCount = (count == null) ? 1 : count + 1;
-          metricsService.recordConnectionCount(nodeId, newCount);
-          return newCount;
-        });
+    inFlightTracker.acquire(Long.valueOf(nodeId));
   }
 
   public void decrementNodeConnections(String nodeId) {
-    nodeConnectionCounts.computeIfPresent(
-        nodeId,
-        (key, count) -> {
-          int newCount = Math.max(0, count - 1);
-          metricsService.recordConnectionCount(nodeId, newCount);
-          return newCount;
-        });
+    inFlightTracker.release(Long.valueOf(nodeId));
   }
 
   public int getNodeConnections(String nodeId) {
-    return nodeConnectionCounts.getOrDefault(nodeId, 0);
+    return inFlightTracker.getRequests(Long.valueOf(nodeId));
   }
 }
@@ -4,6 +4,7 @@ package com.loadbalancer.service;
 import com.loadbalancer.config.LoadBalancerConfig;
 import com.loadbalancer.model.dto.NodeMetrics;
 import com.loadbalancer.model.dto.RequestStats;
+import com.loadbalancer.model.dto.TransferStats;
 import com.loadbalancer.model.entity.StorageNode;
 import com.loadbalancer.model.enums.NodeStatus;
 import java.time.LocalDateTime;
@@ -21,12 +22,20 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class MetricsService {
   private final LoadBalancerConfig config;
+  private final LatencyTracker latencyTracker;
   private final Map<String, NodeMetrics> nodeMetrics = new ConcurrentHashMap<>();
   private final Map<String, Integer> nodeConnections = new ConcurrentHashMap<>();
   private final ConcurrentLinkedQueue<Double> responseTimes = new ConcurrentLinkedQueue<>();
   private final AtomicLong totalRequests = new AtomicLong(0);
   private final AtomicLong successfulRequests = new AtomicLong(0);
   private final AtomicLong failedRequests = new AtomicLong(0);
+  private final AtomicLong activeTransfers = new AtomicLong(0);
+  private final AtomicLong bytesInFlight = new AtomicLong(0);
+  private final AtomicLong completedTransfers = new AtomicLong(0);
+  private final AtomicLong failedTransfers = new AtomicLong(0);
+  private final AtomicLong totalBytesTransferred = new AtomicLong(0);
+  private final AtomicLong compressedTransfers = new AtomicLong(0);
+  private final AtomicLong compressedBytesTransferred = new AtomicLong(0);
 
   public void recordRequest(String nodeId, boolean success, double responseTime) {
     totalRequests.incrementAndGet();
@@ -38,10 +47,79 @@ public class MetricsService {
 
     responseTimes.offer(responseTime);
     updateNodeMetrics(nodeId, success, responseTime);
+    // The duration grows with the transfer, so only the outcome feeds the latency estimate
+    if (!success) {
+      latencyTracker.observeFailure(Long.valueOf(nodeId));
+    }
     log.debug(
         "Recorded request for node {}: success={}, responseTime={}", nodeId, success, responseTime);
   }
 
+  /**
+   * Records how long a node took to send its response headers for a download, which unlike the
+   * whole transfer does not depend on the file size.
+   *
+   * @param nodeId The node ID
+   * @param firstByteTime The time until the response headers arrived (ms)
+   */
+  public void recordFirstByte(Long nodeId, double firstByteTime) {
+    latencyTracker.observe(nodeId, firstByteTime);
+  }
+
+  /** Marks the start of a proxied transfer between a client and a storage node. */
+  public void recordTransferStarted() {
+    activeTransfers.incrementAndGet();
+  }
+
+  /**
+   * Records bytes relayed by a transfer that is still open. They stay counted as in flight until
+   * the transfer finishes.
+   */
+  public void recordTransferProgress(long bytes) {
+    bytesInFlight.addAndGet(bytes);
+    totalBytesTransferred.addAndGet(bytes);
+  }
+
+  /**
+   * Marks the end of a proxied transfer and releases its bytes from the in-flight total.
+   *
+   * @param bytes total bytes relayed by the transfer
+   * @param success whether the transfer reached the end of the stream
+   */
+  public void recordTransferFinished(long bytes, boolean success) {
+    activeTransfers.decrementAndGet();
+    bytesInFlight.addAndGet(-bytes);
+    if (success) {
+      completedTransfers.incrementAndGet();
+    } else {
+      failedTransfers.incrementAndGet();
+    }
+  }
+
+  /**
+   * Records a finished download that a storage node sent compressed and that was relayed to the
+   * client without being decompressed.
+   *
+   * @param bytes compressed bytes relayed
+   */
+  public void recordCompressedTransfer(long bytes) {
+    compressedTransfers.incrementAndGet();
+    compressedBytesTransferred.addAndGet(bytes);
+  }
+
+  public TransferStats getTransferStats() {
+    return TransferStats.builder()
+        .activeTransfers(activeTransfers.get())
+        .bytesInFlight(bytesInFlight.get())
+        .completedTransfers(completedTransfers.get())
+        .failedTransfers(failedTransfers.get())
+        .totalBytesTransferred(totalBytesTransferred.get())
+        .compressedTransfers(compressedTransfers.get())
+        .compressedBytesTransferred(compressedBytesTransferred.get())
+        .bufferSize(config.getTransfer().getBufferSize())
+        .build();
+  }
+
   public void recordConnectionCount(String nodeId, int connections) {
     nodeConnections.put(nodeId, connections);
     log.debug("Updated connection count for node {}: {}", nodeId, connections);
@@ -0,0 +1,114 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.model.enums.NodeStatus;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory registry of storage nodes, so node selection does not query the database. Readers get
+ * an immutable snapshot without locking; every change builds a new snapshot and publishes it with
+ * a single volatile write (copy-on-write).
+ *
+ * <p>Snapshots hold detached copies of the node entities. They must be treated as read-only;
+ * changes go through {@link StorageNodeService}, which persists them and then updates the
+ * registry.
+ */
+@Component
+@Slf4j
+public class NodeRegistry {
+  private volatile Snapshot snapshot = new Snapshot(Map.of(), List.of());
+
+  /**
+   * Gets the active nodes, ordered by node ID.
+   *
+   * @return An immutable list of the active nodes
+   */
+  public List<StorageNode> getActiveNodes() {
+    return snapshot.activeNodes();
+  }
+
+  /**
+   * Gets all registered nodes, whatever their status.
+   *
+   * @return An immutable collection of the nodes
+   */
+  public Collection<StorageNode> getNodes() {
+    return snapshot.nodes().values();
+  }
+
+  /**
+   * Gets a node by ID, whatever its status.
+   *
+   * @param nodeId The node ID
+   * @return The node, or empty if it is not registered
+   */
+  public Optional<StorageNode> getNode(Long nodeId) {
+    return Optional.ofNullable(snapshot.nodes().get(nodeId));
+  }
+
+  /**
+   * Publishes the current state of a node. The update is ignored if the registry already holds
+   * a newer version of the node.
+   *
+   * @param node The node as persisted
+   */
+  public synchronized void update(StorageNode node) {
+    StorageNode existing = snapshot.nodes().get(node.getContainerId());
+    if (existing != null && isNewer(existing, node)) {
+      return;
+    }
+    Map<Long, StorageNode> nodes = new HashMap<>(snapshot.nodes());
+    nodes.put(node.getContainerId(), copy(node));
+    snapshot = Snapshot.of(nodes);
+  }
+
+  /**
+   * Replaces the registry with the nodes loaded from the database, keeping any node for which
+   * the registry already holds a newer version than the one loaded.
+   *
+   * @param loadedNodes All registered nodes
+   */
+  public synchronized void replaceAll(Collection<StorageNode> loadedNodes) {
+    Map<Long, StorageNode> nodes = new HashMap<>();
+    for (StorageNode node : loadedNodes) {
+      StorageNode existing = snapshot.nodes().get(node.getContainerId());
+      nodes.put(
+          node.getContainerId(),
+          existing != null && isNewer(existing, node) ? existing : copy(node));
+    }
+    snapshot = Snapshot.of(nodes);
+    log.debug(
+        "Reloaded node registry: {} nodes, {} active",
+        nodes.size(),
+        snapshot.activeNodes().size());
+  }
+
+  private boolean isNewer(StorageNode existing, StorageNode node) {
+    return existing.getVersion() != null
+        && node.getVersion() != null
+        && existing.getVersion() > node.getVersion();
+  }
+
+  private StorageNode copy(StorageNode node) {
+    return node.toBuilder().build();
+  }
+
+  /** All registered nodes by ID, and the active ones in ID order. */
+  private record Snapshot(Map<Long, StorageNode> nodes, List<StorageNode> activeNodes) {
+    static Snapshot of(Map<Long, StorageNode> nodes) {
+      List<StorageNode> activeNodes =
+          nodes.values().stream()
+              .filter(node -> node.getStatus() == NodeStatus.ACTIVE)
+              .sorted(Comparator.comparing(StorageNode::getContainerId))
+              .toList();
+      return new Snapshot(Map.copyOf(nodes), activeNodes);
+    }
+  }
+}
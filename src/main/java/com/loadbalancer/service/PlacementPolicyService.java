@@ -0,0 +1,207 @@
+package com.loadbalancer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.exception.LoadBalancerException;
+import com.loadbalancer.model.dto.PlacementDecision;
+import com.loadbalancer.model.enums.StorageTier;
+import com.loadbalancer.strategy.LoadBalancerStrategy;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Decides the strategy and node pool for each upload from its size, content type and user, or
+ * from a policy named explicitly by the client. The pools and rules come from the
+ * {@code loadbalancer.placement} settings, or from a JSON rules file of the same shape that is
+ * reloaded whenever it changes, so rules can be changed without a restart.
+ *
+ * <p>Rules are compiled into {@link PlacementRules} on load and swapped in as a whole; a rules
+ * file that fails to parse or compile is rejected and the previous rules stay in force.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PlacementPolicyService {
+  private static final PlacementDecision DEFAULT_PLACEMENT = PlacementDecision.ofStrategy(null);
+
+  private final LoadBalancerConfig config;
+  private final Map<String, LoadBalancerStrategy> strategies;
+  private final ObjectMapper objectMapper;
+
+  private volatile PlacementRules rules = PlacementRules.EMPTY;
+  private volatile String source = "none";
+  private volatile LocalDateTime loadedAt;
+  private volatile long rulesFileModified;
+
+  private Set<StorageTier> fastTiers;
+  private Set<StorageTier> denseTiers;
+  private PlacementDecision smallFilePlacement;
+  private PlacementDecision largeFilePlacement;
+
+  /** Loads the rules before the first upload. Invalid rules fail the startup. */
+  @PostConstruct
+  public void loadRules() {
+    LoadBalancerConfig.Tiering tiering = config.getTiering();
+    fastTiers = Set.copyOf(tiering.getFastTiers());
+    denseTiers = Set.copyOf(tiering.getDenseTiers());
+    smallFilePlacement = DEFAULT_PLACEMENT.toBuilder().tiers(fastTiers).build();
+    largeFilePlacement = DEFAULT_PLACEMENT.toBuilder().tiers(denseTiers).build();
+    reload();
+  }
+
+  /**
+   * Reloads the rules file if it has changed since it was last read. A rejected file is not read
+   * again until it changes.
+   */
+  @Scheduled(
+      initialDelayString = "${loadbalancer.placement.reload-interval:10000}",
+      fixedDelayString = "${loadbalancer.placement.reload-interval:10000}")
+  public void reloadIfChanged() {
+    Path rulesFile = rulesFile();
+    if (rulesFile == null) {
+      return;
+    }
+    long modified;
+    try {
+      modified = Files.getLastModifiedTime(rulesFile).toMillis();
+    } catch (IOException e) {
+      log.warn("Cannot check placement rules file {}: {}", rulesFile, e.getMessage());
+      return;
+    }
+    if (modified == rulesFileModified) {
+      return;
+    }
+    try {
+      reload();
+    } catch (IllegalArgumentException e) {
+      rulesFileModified = modified;
+      log.error("Keeping the current placement rules; reloading {} failed", rulesFile, e);
+    }
+  }
+
+  /**
+   * Loads and compiles the pools and rules, from the rules file if one is configured, and
+   * replaces the current rules with them.
+   *
+   * @return The loaded rules
+   * @throws IllegalArgumentException If the rules cannot be read or are invalid
+   */
+  public synchronized Map<String, Object> reload() {
+    Path rulesFile = rulesFile();
+    LoadBalancerConfig.Placement settings = config.getPlacement();
+    long modified = 0;
+    if (rulesFile != null) {
+      try {
+        modified = Files.getLastModifiedTime(rulesFile).toMillis();
+        settings = objectMapper.readValue(rulesFile.toFile(), LoadBalancerConfig.Placement.class);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Cannot read placement rules from " + rulesFile, e);
+      }
+    }
+
+    rules =
+        PlacementRules.compile(settings.getPools(), settings.getRules(), strategies.keySet());
+    rulesFileModified = modified;
+    source = rulesFile != null ? rulesFile.toString() : "configuration";
+    loadedAt = LocalDateTime.now();
+    log.info("Loaded {} placement rules from {}", rules.getRuleCount(), source);
+    return getPolicyStats();
+  }
+
+  /**
+   * Decides where an upload goes. A policy named by the client takes precedence over the rules;
+   * otherwise the first matching rule applies, and with no match the default strategy places
+   * the file on any active node. Unless the placement names tiers itself, small files prefer the
+   * fast tiers and large files the dense ones.
+   *
+   * @param userId The uploading user, or null if unknown
+   * @param fileSize The file size, or a negative value if unknown
+   * @param contentType The file's content type, or null if unknown
+   * @param policyName The policy named by the client, or null
+   * @return The placement
+   * @throws LoadBalancerException If the named policy does not exist
+   */
+  public PlacementDecision resolve(
+      Long userId, long fileSize, String contentType, String policyName) {
+    PlacementRules current = rules;
+    if (policyName != null) {
+      PlacementDecision named = current.named(policyName);
+      if (named == null) {
+        throw new LoadBalancerException(
+            "Unknown placement policy: " + policyName,
+            HttpStatus.BAD_REQUEST,
+            "UNKNOWN_PLACEMENT_POLICY");
+      }
+      return withSizeClass(named, fileSize);
+    }
+    PlacementDecision matched = current.resolve(userId, fileSize, contentType);
+    return withSizeClass(matched != null ? matched : DEFAULT_PLACEMENT, fileSize);
+  }
+
+  /** Adds the tiers preferred for the file's size class to a placement that names none. */
+  private PlacementDecision withSizeClass(PlacementDecision placement, long fileSize) {
+    LoadBalancerConfig.Tiering tiering = config.getTiering();
+    if (!tiering.isEnabled() || placement.getTiers() != null || fileSize < 0) {
+      return placement;
+    }
+    if (fileSize <= tiering.getSmallFileMaxSize()) {
+      return placement == DEFAULT_PLACEMENT
+          ? smallFilePlacement
+          : placement.toBuilder().tiers(fastTiers).build();
+    }
+    if (fileSize >= tiering.getLargeFileMinSize()) {
+      return placement == DEFAULT_PLACEMENT
+          ? largeFilePlacement
+          : placement.toBuilder().tiers(denseTiers).build();
+    }
+    return placement;
+  }
+
+  /**
+   * Gets where the current rules were loaded from and when, with the pools they define.
+   *
+   * @return The policy statistics
+   */
+  public Map<String, Object> getPolicyStats() {
+    PlacementRules current = rules;
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("source", source);
+    stats.put("loadedAt", loadedAt);
+    stats.put("rules", current.getRuleCount());
+    stats.put("pools", new TreeMap<>(current.getPools()));
+    return stats;
+  }
+
+  /**
+   * Guesses the content type of an upload from its file name, for uploads whose own content type
+   * is the multipart envelope's.
+   *
+   * @param fileName The file name, or null if unknown
+   * @return The content type, or null if the name is unknown or has no known extension
+   */
+  public static String contentTypeFor(String fileName) {
+    if (fileName == null || fileName.isBlank()) {
+      return null;
+    }
+    return MediaTypeFactory.getMediaType(fileName).map(MediaType::toString).orElse(null);
+  }
+
+  private Path rulesFile() {
+    String rulesFile = config.getPlacement().getRulesFile();
+    return rulesFile == null || rulesFile.isBlank() ? null : Path.of(rulesFile);
+  }
+}
@@ -0,0 +1,216 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.model.dto.PlacementDecision;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Placement rules compiled for lookup. Each rule's content types are split into an exact-match
+ * set and type prefixes, and the rules are indexed by tenant: a user gets the array of rules that
+ * name them or name no tenant, in the declared order, so resolving an upload only evaluates rules
+ * that can apply to its user. Immutable; a reload builds a new instance.
+ */
+final class PlacementRules {
+  static final PlacementRules EMPTY =
+      new PlacementRules(new Rule[0], Map.of(), Map.of(), Map.of());
+
+  private final Rule[] anyTenant;
+  private final Map<Long, Rule[]> byTenant;
+  private final Map<String, Rule> byName;
+  private final Map<String, Set<Long>> pools;
+
+  private PlacementRules(
+      Rule[] anyTenant,
+      Map<Long, Rule[]> byTenant,
+      Map<String, Rule> byName,
+      Map<String, Set<Long>> pools) {
+    this.anyTenant = anyTenant;
+    this.byTenant = byTenant;
+    this.byName = byName;
+    this.pools = pools;
+  }
+
+  /**
+   * Compiles pools and rules.
+   *
+   * @param poolNodes The node IDs of each pool, by pool name
+   * @param ruleSettings The rules, in priority order
+   * @param strategies The names of the known strategies
+   * @return The compiled rules
+   * @throws IllegalArgumentException If a rule has no name, a duplicate name, or names an unknown
+   *     strategy or pool
+   */
+  static PlacementRules compile(
+      Map<String, List<Long>> poolNodes,
+      List<LoadBalancerConfig.Placement.Rule> ruleSettings,
+      Set<String> strategies) {
+    Map<String, Set<Long>> pools = new HashMap<>();
+    poolNodes.forEach((name, nodeIds) -> pools.put(name, Set.copyOf(nodeIds)));
+
+    List<Rule> rules = new ArrayList<>(ruleSettings.size());
+    Map<String, Rule> byName = new HashMap<>();
+    for (LoadBalancerConfig.Placement.Rule settings : ruleSettings) {
+      Rule rule = compileRule(settings, pools, strategies);
+      if (byName.putIfAbsent(rule.name, rule) != null) {
+        throw new IllegalArgumentException("Duplicate placement rule: " + rule.name);
+      }
+      rules.add(rule);
+    }
+
+    Set<Long> tenants = new HashSet<>();
+    rules.forEach(rule -> tenants.addAll(rule.tenants));
+    Map<Long, Rule[]> byTenant = new HashMap<>();
+    for (Long tenant : tenants) {
+      byTenant.put(
+          tenant,
+          rules.stream()
+              .filter(rule -> rule.tenants.isEmpty() || rule.tenants.contains(tenant))
+              .toArray(Rule[]::new));
+    }
+    Rule[] anyTenant = rules.stream().filter(rule -> rule.tenants.isEmpty()).toArray(Rule[]::new);
+    return new PlacementRules(anyTenant, byTenant, byName, pools);
+  }
+
+  /**
+   * Finds the first rule that matches an upload.
+   *
+   * @param userId The uploading user, or null if unknown
+   * @param fileSize The file size, or a negative value if unknown
+   * @param contentType The file's content type, or null if unknown
+   * @return The matching rule's placement, or null if no rule matches
+   */
+  PlacementDecision resolve(Long userId, long fileSize, String contentType) {
+    Rule[] candidates = userId == null ? anyTenant : byTenant.getOrDefault(userId, anyTenant);
+    String type = normalize(contentType);
+    for (Rule rule : candidates) {
+      if (rule.matches(fileSize, type)) {
+        return rule.decision;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets a rule by name, for requests that ask for a policy explicitly.
+   *
+   * @param name The rule name
+   * @return The rule's placement, or null if there is no such rule
+   */
+  PlacementDecision named(String name) {
+    Rule rule = byName.get(name);
+    return rule == null ? null : rule.decision;
+  }
+
+  int getRuleCount() {
+    return byName.size();
+  }
+
+  Map<String, Set<Long>> getPools() {
+    return pools;
+  }
+
+  private static Rule compileRule(
+      LoadBalancerConfig.Placement.Rule settings,
+      Map<String, Set<Long>> pools,
+      Set<String> strategies) {
+    String name = settings.getName();
+    if (name == null || name.isBlank()) {
+      throw new IllegalArgumentException("Placement rule without a name");
+    }
+    if (settings.getStrategy() != null && !strategies.contains(settings.getStrategy())) {
+      throw new IllegalArgumentException(
+          "Placement rule " + name + " uses unknown strategy " + settings.getStrategy());
+    }
+    Set<Long> nodeIds = null;
+    if (settings.getPool() != null) {
+      nodeIds = pools.get(settings.getPool());
+      if (nodeIds == null) {
+        throw new IllegalArgumentException(
+            "Placement rule " + name + " uses unknown pool " + settings.getPool());
+      }
+    }
+
+    Set<String> exactTypes = new HashSet<>();
+    List<String> typePrefixes = new ArrayList<>();
+    for (String contentType : settings.getContentTypes()) {
+      String type = normalize(contentType);
+      if (type.equals("*/*")) {
+        // Any type, including none, as if no content types were listed
+        exactTypes.clear();
+        typePrefixes.clear();
+        break;
+      }
+      if (type.endsWith("/*")) {
+        typePrefixes.add(type.substring(0, type.length() - 1));
+      } else {
+        exactTypes.add(type);
+      }
+    }
+
+    PlacementDecision decision =
+        PlacementDecision.builder()
+            .rule(name)
+            .strategy(settings.getStrategy())
+            .pool(settings.getPool())
+            .nodeIds(nodeIds)
+            .tiers(settings.getTiers().isEmpty() ? null : Set.copyOf(settings.getTiers()))
+            .build();
+    return new Rule(
+        name,
+        Set.copyOf(settings.getTenants()),
+        settings.getMinSize() != null ? settings.getMinSize() : Long.MIN_VALUE,
+        settings.getMaxSize() != null ? settings.getMaxSize() : Long.MAX_VALUE,
+        settings.getMinSize() != null || settings.getMaxSize() != null,
+        exactTypes,
+        typePrefixes.toArray(String[]::new),
+        decision);
+  }
+
+  /** Lower-cases a content type and drops its parameters, e.g. {@code ; charset=UTF-8}. */
+  private static String normalize(String contentType) {
+    if (contentType == null) {
+      return null;
+    }
+    int parameters = contentType.indexOf(';');
+    String type = parameters >= 0 ? contentType.substring(0, parameters) : contentType;
+    return type.trim().toLowerCase(Locale.ROOT);
+  }
+
+  private record Rule(
+      String name,
+      Set<Long> tenants,
+      long minSize,
+      long maxSize,
+      boolean sizeBounded,
+      Set<String> exactTypes,
+      String[] typePrefixes,
+      PlacementDecision decision) {
+
+    boolean matches(long fileSize, String contentType) {
+      if (sizeBounded && (fileSize < 0 || fileSize < minSize || fileSize > maxSize)) {
+        return false;
+      }
+      if (exactTypes.isEmpty() && typePrefixes.length == 0) {
+        return true;
+      }
+      if (contentType == null) {
+        return false;
+      }
+      if (exactTypes.contains(contentType)) {
+        return true;
+      }
+      for (String prefix : typePrefixes) {
+        if (contentType.startsWith(prefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,344 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.exception.LoadBalancerException;
+import com.loadbalancer.model.dto.PlacementDecision;
+import com.loadbalancer.model.dto.SignedUrl;
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.util.UrlSigner;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Service for resumable uploads of large files. The load balancer picks a node when the upload is
+ * initiated; the parts, progress queries and completion are then routed to that node, which
+ * assembles the file on disk and discards abandoned uploads itself.
+ *
+ * <p>The upload ID returned to clients is the node ID followed by the node's own upload ID, so no
+ * upload state is kept on the load balancer and uploads survive a load balancer restart.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ResumableUploadService {
+  private final LoadBalancerService loadBalancerService;
+  private final StorageNodeService storageNodeService;
+  private final PlacementPolicyService placementPolicyService;
+  private final FileTransferService fileTransferService;
+  private final RestTemplate restTemplate;
+  private final UrlSigner urlSigner;
+
+  // Constants
+  private static final String HEADER_USER_ID = "X-User-ID";
+  private static final String FILES_PATH = "/api/v1/files/";
+  private static final String UPLOADS_PATH = "uploads";
+  private static final String UPLOAD_PATH = "uploads/%s";
+  private static final String PART_PATH = "uploads/%s/parts/%d";
+  private static final String COMPLETE_PATH = "uploads/%s/complete";
+  private static final String KEY_UPLOAD_ID = "uploadId";
+  private static final String KEY_MESSAGE = "message";
+  private static final String UPLOAD_NOT_FOUND = "Upload not found";
+  private static final String NODE_FAILED = "Storage node request failed";
+  private static final ParameterizedTypeReference<Map<String, Object>> RESULT_MAP_TYPE =
+      new ParameterizedTypeReference<>() {};
+
+  @Value("${api.storage.path.format:http://%s:%d/api/v1/files/%s}")
+  private String apiPathFormat;
+
+  /**
+   * Starts a resumable upload on a node selected for the file size.
+   *
+   * @param request The file name, content type, file size and optional part size
+   * @param userId The ID of the user uploading the file
+   * @param policyName The placement policy to apply, or null to apply the placement rules
+   * @return The upload ID, the part size and count, and the selected node
+   */
+  public Map<String, Object> initiate(
+      Map<String, Object> request, Long userId, String policyName) {
+    Object fileSize = request.get("fileSize");
+    if (fileSize == null || Long.parseLong(fileSize.toString()) <= 0) {
+      throw new LoadBalancerException(
+          "fileSize must be positive", HttpStatus.BAD_REQUEST, "INVALID_UPLOAD");
+    }
+
+    Object fileName = request.get("fileName");
+    Object contentType = request.get("contentType");
+    PlacementDecision placement =
+        placementPolicyService.resolve(
+            userId,
+            Long.parseLong(fileSize.toString()),
+            contentType == null ? null : contentType.toString(),
+            policyName);
+    StorageNode node =
+        loadBalancerService.selectNode(
+            placement,
+            Long.parseLong(fileSize.toString()),
+            LoadBalancerService.fileKey(userId, fileName == null ? null : fileName.toString()));
+    return initiate(node, request, userId);
+  }
+
+  /**
+   * Starts a resumable upload on the given node.
+   *
+   * @param node The node to upload to
+   * @param request The file name, content type, file size and optional part size
+   * @param userId The ID of the user uploading the file
+   * @return The upload ID, the part size and count, and the node
+   */
+  public Map<String, Object> initiate(StorageNode node, Map<String, Object> request, Long userId) {
+    Object fileSize = request.get("fileSize");
+    HttpHeaders headers = userHeaders(userId);
+    headers.setContentType(MediaType.APPLICATION_JSON);
+
+    Map<String, Object> response =
+        call(
+            node,
+            () ->
+                restTemplate
+                    .exchange(
+                        nodeUrl(node, HttpMethod.POST, UPLOADS_PATH, userId),
+                        HttpMethod.POST,
+                        new HttpEntity<>(request, headers),
+                        RESULT_MAP_TYPE)
+                    .getBody());
+    log.info(
+        "Initiated resumable upload {} on node {}, size: {}",
+        response.get(KEY_UPLOAD_ID),
+        node.getContainerId(),
+        fileSize);
+    response.put(KEY_UPLOAD_ID, node.getContainerId() + "-" + response.get(KEY_UPLOAD_ID));
+    return withNode(response, node);
+  }
+
+  /**
+   * Relays one part of an upload to the node holding the upload.
+   *
+   * @param uploadId The upload ID
+   * @param partNumber The part number, starting at 1
+   * @param body The part content
+   * @param contentLength The part length, or -1 if unknown
+   * @param userId The ID of the user uploading the file
+   * @return The node's receipt for the part
+   */
+  public Map<String, Object> uploadPart(
+      String uploadId, int partNumber, InputStream body, long contentLength, Long userId) {
+    UploadTarget target = resolve(uploadId);
+    String path = String.format(PART_PATH, target.nodeUploadId(), partNumber);
+    Map<String, Object> response =
+        call(
+            target.node(),
+            contentLength,
+            () ->
+                fileTransferService.streamUpload(
+                    nodeUrl(target.node(), HttpMethod.PUT, path, userId),
+                    HttpMethod.PUT,
+                    body,
+                    MediaType.APPLICATION_OCTET_STREAM,
+                    contentLength,
+                    userHeaders(userId)));
+    response.put(KEY_UPLOAD_ID, uploadId);
+    return response;
+  }
+
+  /**
+   * Issues a signed URL for uploading one part straight to the node holding the upload.
+   *
+   * @param uploadId The upload ID
+   * @param partNumber The part number, starting at 1
+   * @param userId The ID of the user uploading the file
+   * @return The signed part URL
+   */
+  public SignedUrl createPartUrl(String uploadId, int partNumber, Long userId) {
+    UploadTarget target = resolve(uploadId);
+    String path = FILES_PATH + String.format(PART_PATH, target.nodeUploadId(), partNumber);
+    return urlSigner.sign(target.node(), HttpMethod.PUT, path, userId);
+  }
+
+  /**
+   * Gets the parts received so far and when the upload expires if left idle.
+   *
+   * @param uploadId The upload ID
+   * @param userId The ID of the user uploading the file
+   * @return The upload progress
+   */
+  public Map<String, Object> getProgress(String uploadId, Long userId) {
+    UploadTarget target = resolve(uploadId);
+    String path = String.format(UPLOAD_PATH, target.nodeUploadId());
+    Map<String, Object> response =
+        call(
+            target.node(),
+            () ->
+                restTemplate
+                    .exchange(
+                        nodeUrl(target.node(), HttpMethod.GET, path, userId),
+                        HttpMethod.GET,
+                        new HttpEntity<>(userHeaders(userId)),
+                        RESULT_MAP_TYPE)
+                    .getBody());
+    response.put(KEY_UPLOAD_ID, uploadId);
+    return withNode(response, target.node());
+  }
+
+  /**
+   * Completes an upload once all parts have been received and records the file metadata.
+   *
+   * @param uploadId The upload ID
+   * @param userId The ID of the user uploading the file
+   * @return The stored file details
+   */
+  public Map<String, Object> complete(String uploadId, Long userId) {
+    StorageNode node = resolve(uploadId).node();
+    Map<String, Object> response = completeOnNode(uploadId, userId);
+
+    String fileName = String.valueOf(response.get("fileName"));
+    String contentType =
+        response.get("contentType") != null ? response.get("contentType").toString() : null;
+    loadBalancerService.storeFileMetadata(
+        fileName,
+        LoadBalancerService.storedFileName(response),
+        Long.valueOf(response.get("fileSize").toString()),
+        contentType,
+        node.getContainerId(),
+        userId,
+        null);
+    log.info("Completed resumable upload {} on node {}", uploadId, node.getContainerId());
+    return response;
+  }
+
+  /**
+   * Completes an upload on its node without recording file metadata, for callers that record
+   * the stored file themselves.
+   *
+   * @param uploadId The upload ID
+   * @param userId The ID of the user uploading the file
+   * @return The node's details of the stored file, including its node file ID
+   */
+  public Map<String, Object> completeOnNode(String uploadId, Long userId) {
+    UploadTarget target = resolve(uploadId);
+    String path = String.format(COMPLETE_PATH, target.nodeUploadId());
+    return withNode(
+        call(
+            target.node(),
+            () ->
+                restTemplate
+                    .exchange(
+                        nodeUrl(target.node(), HttpMethod.POST, path, userId),
+                        HttpMethod.POST,
+                        new HttpEntity<>(userHeaders(userId)),
+                        RESULT_MAP_TYPE)
+                    .getBody()),
+        target.node());
+  }
+
+  /**
+   * Aborts an upload and discards the parts received so far.
+   *
+   * @param uploadId The upload ID
+   * @param userId The ID of the user uploading the file
+   */
+  public void abort(String uploadId, Long userId) {
+    UploadTarget target = resolve(uploadId);
+    String path = String.format(UPLOAD_PATH, target.nodeUploadId());
+    call(
+        target.node(),
+        () ->
+            restTemplate
+                .exchange(
+                    nodeUrl(target.node(), HttpMethod.DELETE, path, userId),
+                    HttpMethod.DELETE,
+                    new HttpEntity<>(userHeaders(userId)),
+                    RESULT_MAP_TYPE)
+                .getBody());
+    log.info("Aborted resumable upload {}", uploadId);
+  }
+
+  /**
+   * Calls a node, recording the request and passing the node's client errors, such as a missing
+   * upload or an incomplete part, back to the client.
+   */
+  private Map<String, Object> call(StorageNode node, Supplier<Map<String, Object>> request) {
+    return call(node, 0, request);
+  }
+
+  /** Sends a request to a node, counting it and its bytes as in flight until it completes. */
+  private Map<String, Object> call(
+      StorageNode node, long bytes, Supplier<Map<String, Object>> request) {
+    long startTime = System.currentTimeMillis();
+    try (InFlightTracker.Transfer transfer = loadBalancerService.beginTransfer(node, bytes)) {
+      Map<String, Object> response = request.get();
+      loadBalancerService.recordRequest(
+          node.getContainerId().toString(), true, System.currentTimeMillis() - startTime);
+      return response != null ? new HashMap<>(response) : new HashMap<>();
+    } catch (HttpStatusCodeException e) {
+      // A client error still means the node handled the request
+      boolean clientError = e.getStatusCode().is4xxClientError();
+      loadBalancerService.recordRequest(
+          node.getContainerId().toString(), clientError, System.currentTimeMillis() - startTime);
+      HttpStatus status = HttpStatus.valueOf(e.getStatusCode().value());
+      if (status == HttpStatus.NOT_FOUND) {
+        throw new LoadBalancerException(
+            UPLOAD_NOT_FOUND, HttpStatus.NOT_FOUND, "UPLOAD_NOT_FOUND");
+      }
+      Map<?, ?> body = e.getResponseBodyAs(Map.class);
+      String message =
+          body != null && body.get(KEY_MESSAGE) != null
+              ? body.get(KEY_MESSAGE).toString()
+              : NODE_FAILED;
+      throw new LoadBalancerException(
+          message, clientError ? status : HttpStatus.BAD_GATEWAY, "UPLOAD_FAILED");
+    }
+  }
+
+  /** Splits a client upload ID into the node holding the upload and the node's upload ID. */
+  private UploadTarget resolve(String uploadId) {
+    int separator = uploadId.indexOf('-');
+    if (separator > 0) {
+      try {
+        Long nodeId = Long.valueOf(uploadId.substring(0, separator));
+        StorageNode node = storageNodeService.getNode(nodeId).orElse(null);
+        if (node != null) {
+          return new UploadTarget(node, uploadId.substring(separator + 1));
+        }
+      } catch (NumberFormatException e) {
+        log.debug("Invalid upload ID {}", uploadId);
+      }
+    }
+    throw new LoadBalancerException(
+        UPLOAD_NOT_FOUND + ": " + uploadId, HttpStatus.NOT_FOUND, "UPLOAD_NOT_FOUND");
+  }
+
+  private Map<String, Object> withNode(Map<String, Object> response, StorageNode node) {
+    response.put("nodeId", node.getContainerId());
+    response.put("nodeName", node.getContainerName());
+    return response;
+  }
+
+  private HttpHeaders userHeaders(Long userId) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HEADER_USER_ID, userId.toString());
+    return headers;
+  }
+
+  private String nodeUrl(StorageNode node, HttpMethod method, String path, Long userId) {
+    if (urlSigner.isEnabled()) {
+      return urlSigner.sign(node, method, FILES_PATH + path, userId).getUrl();
+    }
+    return String.format(apiPathFormat, node.getHostAddress(), node.getPort(), path);
+  }
+
+  /** The node holding an upload and the upload's ID on that node. */
+  private record UploadTarget(StorageNode node, String nodeUploadId) {}
+}
@@ -2,39 +2,96 @@ package com.loadbalancer.service;
 
 import com.loadbalancer.model.entity.StorageNode;
 import com.loadbalancer.model.enums.NodeStatus;
+import com.loadbalancer.model.enums.StorageTier;
 import com.loadbalancer.repository.StorageNodeRepository;
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityNotFoundException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+/**
+ * Service for registering storage nodes and tracking their status and used space.
+ *
+ * <p>Node lookups are served from the in-memory {@link NodeRegistry}. Changes are written to the
+ * database and published to the registry once committed; the registry is also reloaded
+ * periodically to pick up changes made by other load balancer instances.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class StorageNodeService {
   private final StorageNodeRepository storageNodeRepository;
+  private final NodeRegistry nodeRegistry;
+  private final CapacityLedger capacityLedger;
 
-  @Transactional(readOnly = true)
+  /** Loads the registry before the first request is served. */
+  @PostConstruct
+  public void loadRegistry() {
+    reloadRegistry();
+  }
+
+  /** Reloads the registry from the database. */
+  @Scheduled(
+      initialDelayString = "${loadbalancer.registry.refresh-interval:30000}",
+      fixedDelayString = "${loadbalancer.registry.refresh-interval:30000}")
+  public void reloadRegistry() {
+    nodeRegistry.replaceAll(storageNodeRepository.findAll());
+  }
+
+  /**
+   * Gets the active nodes from the registry, without a database query.
+   *
+   * @return An immutable list of the active nodes
+   */
   public List<StorageNode> getAvailableNodes() {
-    return storageNodeRepository.findByStatus(NodeStatus.ACTIVE);
+    return nodeRegistry.getActiveNodes();
+  }
+
+  /**
+   * Gets all registered nodes from the registry, whatever their status.
+   *
+   * @return An immutable collection of the nodes
+   */
+  public Collection<StorageNode> getAllNodes() {
+    return nodeRegistry.getNodes();
   }
 
   @Transactional(readOnly = true)
   public boolean isNodeRegistered(Long nodeId) {
-    return storageNodeRepository.existsById(nodeId);
+    return nodeRegistry.getNode(nodeId).isPresent() || storageNodeRepository.existsById(nodeId);
   }
 
+  /**
+   * Reactivates a registered node and records the tier and throughput it advertises now, which
+   * may have changed since it first registered.
+   *
+   * @param nodeId The node ID
+   * @param tier The advertised tier, or null to keep the recorded one
+   * @param readThroughput The advertised read throughput in bytes per second, or null
+   * @param writeThroughput The advertised write throughput in bytes per second, or null
+   */
   @Transactional
-  public void activateNode(Long nodeId) {
+  public void activateNode(
+      Long nodeId, StorageTier tier, Long readThroughput, Long writeThroughput) {
     storageNodeRepository
         .findById(nodeId)
         .ifPresent(
             node -> {
               node.setStatus(NodeStatus.ACTIVE);
-              storageNodeRepository.save(node);
+              if (tier != null) {
+                node.setTier(tier);
+              }
+              node.setReadThroughput(readThroughput);
+              node.setWriteThroughput(writeThroughput);
+              publishOnCommit(storageNodeRepository.save(node));
               log.info("Activated node: {}", nodeId);
             });
   }
@@ -43,12 +100,33 @@ public class StorageNodeService {
   public StorageNode registerNode(StorageNode node) {
     node.setStatus(NodeStatus.ACTIVE);
     StorageNode savedNode = storageNodeRepository.save(node);
+    publishOnCommit(savedNode);
     log.info("Registered new node: {}", savedNode.getContainerId());
     return savedNode;
   }
 
+  /**
+   * Changes a node's status, leaving its used space as last reported by the node.
+   *
+   * @param nodeId The node ID
+   * @param status The new status
+   */
   @Transactional
-  public void updateNodeStatus(Long nodeId, NodeStatus status, Long usedSpace) {
+  public void updateNodeStatus(Long nodeId, NodeStatus status) {
+    updateNodeStatus(nodeId, status, null, 0);
+  }
+
+  /**
+   * Records a node's status and the used space it reported in a heartbeat.
+   *
+   * @param nodeId The node ID
+   * @param status The new status
+   * @param usedSpace The used space reported by the node, or null to leave it unchanged
+   * @param measuredAt When the used space was measured (epoch ms); uploads committed before then
+   *     are included in it
+   */
+  @Transactional
+  public void updateNodeStatus(Long nodeId, NodeStatus status, Long usedSpace, long measuredAt) {
     StorageNode node =
         storageNodeRepository
             .findById(nodeId)
@@ -59,12 +137,47 @@ public class StorageNodeService {
       node.setUsedSpace(usedSpace);
     }
 
-    storageNodeRepository.save(node);
+    publishOnCommit(storageNodeRepository.save(node));
+    if (usedSpace != null) {
+      // Runs after the publication, so the committed bytes a heartbeat accounts for stop being
+      // counted only once the registry shows the new used space
+      runOnCommit(() -> capacityLedger.settle(nodeId, measuredAt));
+    }
     log.debug("Updated node {} status to {} and used space to {}", nodeId, status, usedSpace);
   }
 
+  /**
+   * Gets a node from the registry, falling back to the database for nodes registered through
+   * another load balancer instance since the last reload.
+   *
+   * @param nodeId The node ID
+   * @return The node, or empty if it is not registered
+   */
   @Transactional(readOnly = true)
   public Optional<StorageNode> getNode(Long nodeId) {
-    return storageNodeRepository.findById(nodeId);
+    Optional<StorageNode> node = nodeRegistry.getNode(nodeId);
+    return node.isPresent() ? node : storageNodeRepository.findById(nodeId);
+  }
+
+  /**
+   * Publishes a node to the registry once the current transaction commits, so the registry never
+   * shows a change that was rolled back. The version is read after the commit has flushed it.
+   */
+  private void publishOnCommit(StorageNode node) {
+    runOnCommit(() -> nodeRegistry.update(node));
+  }
+
+  private void runOnCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            action.run();
+          }
+        });
   }
 }
@@ -0,0 +1,538 @@
+package com.loadbalancer.service;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.exception.LoadBalancerException;
+import com.loadbalancer.exception.NoAvailableNodesException;
+import com.loadbalancer.model.entity.FileMetadata;
+import com.loadbalancer.model.entity.FileStripe;
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.model.enums.NodeStatus;
+import com.loadbalancer.service.FileTransferService.DownloadTap;
+import com.loadbalancer.util.UrlSigner;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Service for files striped across several storage nodes, so a large download is not limited by
+ * the disk and network of a single node.
+ *
+ * <p>A striped file is split into fixed-size stripe units dealt round-robin over up to {@code
+ * max-width} nodes chosen by the load balancing strategy: unit {@code k} goes to column {@code k %
+ * width}. Each node stores its column as one file, written through the resumable upload protocol
+ * so units land at their offsets without being copied. Downloads fetch consecutive units from the
+ * different nodes in parallel, keeping at most {@code read-ahead} units in flight, and write them
+ * to the client in order.
+ */
+@Service
+@Slf4j
+public class StripedFileService {
+  private final FileMetadataService fileMetadataService;
+  private final LoadBalancerService loadBalancerService;
+  private final StorageNodeService storageNodeService;
+  private final ResumableUploadService resumableUploadService;
+  private final MetricsService metricsService;
+  private final FileTransferService fileTransferService;
+  private final RestTemplate restTemplate;
+  private final UrlSigner urlSigner;
+  private final AsyncTaskExecutor stripeFetchExecutor;
+  private final LoadBalancerConfig.Striping settings;
+
+  // Constants
+  private static final String HEADER_USER_ID = "X-User-ID";
+  private static final String FILES_PATH = "/api/v1/files/";
+  private static final String KEY_UPLOAD_ID = "uploadId";
+  private static final String STRIPE_SUFFIX = ".stripe-";
+  private static final String STRIPING_DISABLED = "Striped uploads are not enabled";
+  private static final String NODE_UNAVAILABLE = "Storage node for stripe not available: ";
+
+  @Value("${api.storage.path.format:http://%s:%d/api/v1/files/%s}")
+  private String apiPathFormat;
+
+  public StripedFileService(
+      FileMetadataService fileMetadataService,
+      LoadBalancerService loadBalancerService,
+      StorageNodeService storageNodeService,
+      ResumableUploadService resumableUploadService,
+      MetricsService metricsService,
+      FileTransferService fileTransferService,
+      RestTemplate restTemplate,
+      UrlSigner urlSigner,
+      @Qualifier("stripeFetchExecutor") AsyncTaskExecutor stripeFetchExecutor,
+      LoadBalancerConfig config) {
+    this.fileMetadataService = fileMetadataService;
+    this.loadBalancerService = loadBalancerService;
+    this.storageNodeService = storageNodeService;
+    this.resumableUploadService = resumableUploadService;
+    this.metricsService = metricsService;
+    this.fileTransferService = fileTransferService;
+    this.restTemplate = restTemplate;
+    this.urlSigner = urlSigner;
+    this.stripeFetchExecutor = stripeFetchExecutor;
+    this.settings = config.getStriping();
+  }
+
+  /**
+   * Gets the stripe map of a file.
+   *
+   * @param fileId The ID of the file
+   * @return The file's columns in order, or an empty list if the file is not striped
+   */
+  public List<FileStripe> getStripes(Long fileId) {
+    return fileMetadataService.getStripes(fileId);
+  }
+
+  /**
+   * Gets the stripe maps of several files in one query.
+   *
+   * @param fileIds The IDs of the files
+   * @return The columns of each striped file; files that are not striped are left out
+   */
+  public Map<Long, List<FileStripe>> getStripes(Collection<Long> fileIds) {
+    return fileMetadataService.getStripesForFiles(fileIds);
+  }
+
+  /**
+   * Stores a file striped across several nodes. The body is read once, in order; each stripe
+   * unit is relayed to the node of its column as it arrives.
+   *
+   * @param fileName The original file name
+   * @param contentType The content type of the file, or null
+   * @param fileSize The exact size of the body
+   * @param body The file content
+   * @param userId The ID of the user uploading the file
+   * @return The stored file details and the nodes holding its stripes
+   */
+  public Map<String, Object> upload(
+      String fileName, String contentType, long fileSize, InputStream body, Long userId) {
+    if (!settings.isEnabled()) {
+      throw new LoadBalancerException(
+          STRIPING_DISABLED, HttpStatus.SERVICE_UNAVAILABLE, "STRIPING_DISABLED");
+    }
+    if (fileSize <= 0) {
+      throw new LoadBalancerException(
+          "Striped uploads require a Content-Length", HttpStatus.BAD_REQUEST, "INVALID_UPLOAD");
+    }
+
+    long stripeSize = settings.getStripeSize();
+    long unitCount = ceilDiv(fileSize, stripeSize);
+    int maxWidth = (int) Math.min(settings.getMaxWidth(), unitCount);
+    List<CapacityLedger.Reservation> reservations =
+        loadBalancerService.reserveStripeNodes(maxWidth, ceilDiv(fileSize, maxWidth));
+    List<StorageNode> nodes =
+        reservations.stream().map(CapacityLedger.Reservation::getNode).toList();
+    int width = nodes.size();
+
+    long[] columnLengths = new long[width];
+    for (long unit = 0; unit < unitCount; unit++) {
+      columnLengths[(int) (unit % width)] += unitLength(unit, fileSize, stripeSize);
+    }
+
+    String[] uploadIds = new String[width];
+    List<FileStripe> stripes = new ArrayList<>(width);
+    try {
+      for (int column = 0; column < width; column++) {
+        uploadIds[column] =
+            initiateColumn(
+                nodes.get(column), fileName, contentType, column, columnLengths[column], userId);
+      }
+
+      for (long unit = 0; unit < unitCount; unit++) {
+        long length = unitLength(unit, fileSize, stripeSize);
+        resumableUploadService.uploadPart(
+            uploadIds[(int) (unit % width)],
+            (int) (unit / width) + 1,
+            new BoundedInputStream(body, length),
+            length,
+            userId);
+      }
+
+      for (int column = 0; column < width; column++) {
+        Map<String, Object> stored =
+            resumableUploadService.completeOnNode(uploadIds[column], userId);
+        uploadIds[column] = null;
+        stripes.add(
+            FileStripe.builder()
+                .stripeIndex(column)
+                .stripeCount(width)
+                .stripeSize(stripeSize)
+                .nodeId(nodes.get(column).getContainerId())
+                .nodeFileId(Long.valueOf(stored.get("fileId").toString()))
+                .length(columnLengths[column])
+                .build());
+      }
+      reservations.forEach(CapacityLedger.Reservation::commit);
+    } catch (RuntimeException e) {
+      log.error("Striped upload of {} failed, removing stored stripes", fileName, e);
+      reservations.forEach(CapacityLedger.Reservation::close);
+      for (String uploadId : uploadIds) {
+        if (uploadId != null) {
+          abortQuietly(uploadId, userId);
+        }
+      }
+      delete(stripes, userId);
+      throw e;
+    }
+
+    FileMetadata metadata =
+        fileMetadataService.createStripedFileMetadata(
+            FileMetadata.builder()
+                .originalFilename(fileName)
+                .storedFilename(fileName)
+                .fileSize(fileSize)
+                .contentType(contentType)
+                .nodeId(nodes.get(0).getContainerId())
+                .userId(userId)
+                .isActive(true)
+                .build(),
+            stripes);
+
+    Map<String, Object> response = new HashMap<>();
+    response.put("fileId", metadata.getFileId());
+    response.put("fileName", fileName);
+    response.put("fileSize", fileSize);
+    response.put("contentType", contentType);
+    response.put("stripeSize", stripeSize);
+    response.put("nodeIds", nodes.stream().map(StorageNode::getContainerId).toList());
+    return response;
+  }
+
+  /**
+   * Downloads a striped file, fetching stripe units from their nodes in parallel and writing them
+   * to the client in order. A single byte range is served as partial content; other Range
+   * headers are ignored and the whole file is sent.
+   *
+   * @param fileId The ID of the file
+   * @param stripes The file's stripe map
+   * @param rangeHeader The client's Range header, or null
+   * @param response The client response
+   * @param tap Observes or wraps the client stream once the headers are known
+   * @param userId The ID of the user downloading the file
+   * @throws IOException If fetching a unit or writing to the client fails
+   */
+  public void download(
+      Long fileId,
+      List<FileStripe> stripes,
+      String rangeHeader,
+      HttpServletResponse response,
+      DownloadTap tap,
+      Long userId)
+      throws IOException {
+    FileMetadata metadata =
+        fileMetadataService
+            .getFileMetadata(fileId)
+            .orElseThrow(
+                () ->
+                    new LoadBalancerException(
+                        "File not found: " + fileId, HttpStatus.NOT_FOUND, "FILE_NOT_FOUND"));
+    long length = metadata.getFileSize();
+    List<StorageNode> nodes = resolveNodes(stripes);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+    headers.setContentDisposition(
+        ContentDisposition.formData()
+            .name("attachment")
+            .filename(metadata.getOriginalFilename())
+            .build());
+
+    long start = 0;
+    long end = length - 1;
+    HttpStatus status = HttpStatus.OK;
+    HttpRange range = singleRange(rangeHeader);
+    if (range != null) {
+      start = range.getRangeStart(length);
+      end = range.getRangeEnd(length);
+      if (start >= length || start > end) {
+        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        return;
+      }
+      status = HttpStatus.PARTIAL_CONTENT;
+      headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+    }
+    headers.setContentType(
+        metadata.getContentType() != null
+            ? MediaType.parseMediaType(metadata.getContentType())
+            : MediaType.APPLICATION_OCTET_STREAM);
+    headers.setContentLength(end - start + 1);
+
+    response.setStatus(status.value());
+    fileTransferService.copyResponseHeaders(headers, response);
+    OutputStream out = tap.attach(status, headers, response.getOutputStream());
+    relayUnits(stripes, nodes, start, end, out, userId);
+  }
+
+  /**
+   * Deletes the column files of a striped file from their nodes. Columns already missing from
+   * their node count as deleted.
+   *
+   * @param stripes The file's stripe map
+   * @param userId The ID of the user deleting the file
+   * @return true if every column was deleted
+   */
+  public boolean delete(List<FileStripe> stripes, Long userId) {
+    boolean deleted = true;
+    for (FileStripe stripe : stripes) {
+      StorageNode node = storageNodeService.getNode(stripe.getNodeId()).orElse(null);
+      if (node == null) {
+        deleted = false;
+        continue;
+      }
+      HttpHeaders headers = new HttpHeaders();
+      headers.set(HEADER_USER_ID, userId.toString());
+      try (InFlightTracker.Transfer transfer = loadBalancerService.beginTransfer(node, 0)) {
+        restTemplate.exchange(
+            nodeUrl(node, HttpMethod.DELETE, stripe.getNodeFileId().toString(), userId),
+            HttpMethod.DELETE,
+            new HttpEntity<>(headers),
+            Void.class);
+      } catch (HttpClientErrorException.NotFound e) {
+        log.debug(
+            "Stripe {} already missing from node {}",
+            stripe.getNodeFileId(),
+            node.getContainerId());
+      } catch (Exception e) {
+        log.error(
+            "Failed to delete stripe {} on node {}",
+            stripe.getNodeFileId(),
+            node.getContainerId(),
+            e);
+        deleted = false;
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * Writes the units covering [start, end] to the client in order, keeping up to read-ahead units
+   * beyond the one being written in flight.
+   */
+  private void relayUnits(
+      List<FileStripe> stripes,
+      List<StorageNode> nodes,
+      long start,
+      long end,
+      OutputStream out,
+      Long userId)
+      throws IOException {
+    long stripeSize = stripes.get(0).getStripeSize();
+    long lastUnit = end / stripeSize;
+    long nextUnit = start / stripeSize;
+    Deque<Future<byte[]>> window = new ArrayDeque<>();
+
+    long transferred = 0;
+    boolean success = false;
+    metricsService.recordTransferStarted();
+    try {
+      while (nextUnit <= lastUnit || !window.isEmpty()) {
+        while (nextUnit <= lastUnit && window.size() <= settings.getReadAhead()) {
+          long unit = nextUnit++;
+          long from = Math.max(start, unit * stripeSize);
+          long to = Math.min(end, (unit + 1) * stripeSize - 1);
+          window.add(
+              stripeFetchExecutor.submit(
+                  () -> fetchUnit(stripes, nodes, unit, from, to, userId)));
+        }
+
+        byte[] content = await(window.poll());
+        out.write(content);
+        transferred += content.length;
+        metricsService.recordTransferProgress(content.length);
+      }
+      out.flush();
+      success = true;
+    } finally {
+      window.forEach(pending -> pending.cancel(true));
+      metricsService.recordTransferFinished(transferred, success);
+    }
+  }
+
+  /** Fetches the bytes [from, to] of the file, which lie within one stripe unit. */
+  private byte[] fetchUnit(
+      List<FileStripe> stripes, List<StorageNode> nodes, long unit, long from, long to, Long userId)
+      throws IOException {
+    int width = stripes.size();
+    int column = (int) (unit % width);
+    StorageNode node = nodes.get(column);
+    long stripeSize = stripes.get(column).getStripeSize();
+    long columnOffset = (unit / width) * stripeSize + (from - unit * stripeSize);
+    int length = (int) (to - from + 1);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HEADER_USER_ID, userId.toString());
+    headers.set(
+        HttpHeaders.RANGE, "bytes=" + columnOffset + "-" + (columnOffset + length - 1));
+    String url =
+        nodeUrl(node, HttpMethod.GET, stripes.get(column).getNodeFileId().toString(), userId);
+
+    long startTime = System.currentTimeMillis();
+    boolean success = false;
+    try (InFlightTracker.Transfer transfer = loadBalancerService.beginTransfer(node, length)) {
+      byte[] content =
+          restTemplate.execute(
+              url,
+              HttpMethod.GET,
+              request -> request.getHeaders().putAll(headers),
+              nodeResponse -> {
+                loadBalancerService.recordFirstByte(node, System.currentTimeMillis() - startTime);
+                return nodeResponse.getBody().readNBytes(length);
+              });
+      if (content == null || content.length != length) {
+        throw new IOException(
+            "Incomplete stripe unit " + unit + " from node " + node.getContainerId());
+      }
+      success = true;
+      return content;
+    } finally {
+      loadBalancerService.recordRequest(
+          node.getContainerId().toString(), success, System.currentTimeMillis() - startTime);
+    }
+  }
+
+  private byte[] await(Future<byte[]> unit) throws IOException {
+    try {
+      return unit.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted waiting for stripe unit", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw new IOException("Failed to fetch stripe unit: " + cause.getMessage(), cause);
+    }
+  }
+
+  private List<StorageNode> resolveNodes(List<FileStripe> stripes) {
+    List<StorageNode> nodes = new ArrayList<>(stripes.size());
+    for (FileStripe stripe : stripes) {
+      StorageNode node =
+          storageNodeService
+              .getNode(stripe.getNodeId())
+              .filter(candidate -> candidate.getStatus() == NodeStatus.ACTIVE)
+              .orElseThrow(
+                  () -> new NoAvailableNodesException(NODE_UNAVAILABLE + stripe.getNodeId()));
+      nodes.add(node);
+    }
+    return nodes;
+  }
+
+  private HttpRange singleRange(String rangeHeader) {
+    if (rangeHeader == null) {
+      return null;
+    }
+    try {
+      List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+      return ranges.size() == 1 ? ranges.get(0) : null;
+    } catch (IllegalArgumentException e) {
+      log.debug("Ignoring invalid Range header '{}': {}", rangeHeader, e.getMessage());
+      return null;
+    }
+  }
+
+  private String initiateColumn(
+      StorageNode node, String fileName, String contentType, int column, long length, Long userId) {
+    Map<String, Object> request = new HashMap<>();
+    request.put("fileName", fileName + STRIPE_SUFFIX + column);
+    request.put("contentType", contentType);
+    request.put("fileSize", length);
+    request.put("partSize", settings.getStripeSize());
+
+    Map<String, Object> upload = resumableUploadService.initiate(node, request, userId);
+    String uploadId = upload.get(KEY_UPLOAD_ID).toString();
+    if (Long.parseLong(upload.get("partSize").toString()) != settings.getStripeSize()) {
+      abortQuietly(uploadId, userId);
+      throw new LoadBalancerException(
+          "Node " + node.getContainerId() + " does not accept the configured stripe size",
+          HttpStatus.BAD_GATEWAY,
+          "STRIPE_SIZE_REJECTED");
+    }
+    return uploadId;
+  }
+
+  private void abortQuietly(String uploadId, Long userId) {
+    try {
+      resumableUploadService.abort(uploadId, userId);
+    } catch (Exception e) {
+      log.warn("Failed to abort stripe upload {}: {}", uploadId, e.getMessage());
+    }
+  }
+
+  private String nodeUrl(StorageNode node, HttpMethod method, String path, Long userId) {
+    if (urlSigner.isEnabled()) {
+      return urlSigner.sign(node, method, FILES_PATH + path, userId).getUrl();
+    }
+    return String.format(apiPathFormat, node.getHostAddress(), node.getPort(), path);
+  }
+
+  private static long unitLength(long unit, long fileSize, long stripeSize) {
+    return Math.min(stripeSize, fileSize - unit * stripeSize);
+  }
+
+  private static long ceilDiv(long dividend, long divisor) {
+    return (dividend + divisor - 1) / divisor;
+  }
+
+  /** Reads at most a fixed number of bytes from a stream, leaving the stream open. */
+  private static final class BoundedInputStream extends FilterInputStream {
+    private long remaining;
+
+    BoundedInputStream(InputStream in, long limit) {
+      super(in);
+      this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b >= 0) {
+        remaining--;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining));
+      if (read > 0) {
+        remaining -= read;
+      }
+      return read;
+    }
+
+    @Override
+    public void close() {
+      // The underlying request stream is shared by all units
+    }
+  }
+}
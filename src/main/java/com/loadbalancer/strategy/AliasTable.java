@@ -0,0 +1,156 @@
+package com.loadbalancer.strategy;
+
+import com.loadbalancer.model.entity.StorageNode;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable alias table (Vose's method) over a set of storage nodes, weighted by their free space.
+ * Each slot holds one node, the probability of keeping it and an alias taken otherwise, so a pick
+ * is one array lookup and one comparison whatever the number of nodes.
+ *
+ * <p>Picks are driven by a sequence number rather than a random number: the slot is the sequence
+ * modulo the slot count and the coin is a golden-ratio (Weyl) sequence, which is spread evenly
+ * over every slot. Consecutive picks therefore visit the nodes in a fixed, well-mixed order whose
+ * frequencies match the weights, like a round-robin.
+ */
+public final class AliasTable {
+  public static final AliasTable EMPTY =
+      new AliasTable(new StorageNode[0], new StorageNode[0], new double[0], new int[0]);
+
+  // 2^64 divided by the golden ratio, odd
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private final StorageNode[] members;
+  private final StorageNode[] nodes;
+  private final double[] probabilities;
+  private final int[] aliases;
+
+  private AliasTable(
+      StorageNode[] members, StorageNode[] nodes, double[] probabilities, int[] aliases) {
+    this.members = members;
+    this.nodes = nodes;
+    this.probabilities = probabilities;
+    this.aliases = aliases;
+  }
+
+  /**
+   * Builds a table for the given nodes, each weighted by its free space in bytes. Nodes without
+   * free space are left out. Weights are kept as doubles, so nodes of any size can be mixed.
+   *
+   * @param members The nodes to weight
+   * @return The table; empty if no node has free space
+   */
+  public static AliasTable build(List<StorageNode> members) {
+    StorageNode[] memberArray = members.toArray(StorageNode[]::new);
+    StorageNode[] nodes =
+        Arrays.stream(memberArray).filter(node -> freeSpace(node) > 0).toArray(StorageNode[]::new);
+    int size = nodes.length;
+    if (size == 0) {
+      return new AliasTable(memberArray, nodes, new double[0], new int[0]);
+    }
+
+    double totalWeight = 0;
+    for (StorageNode node : nodes) {
+      totalWeight += freeSpace(node);
+    }
+    double[] probabilities = new double[size];
+    int[] aliases = new int[size];
+    int[] small = new int[size];
+    int[] large = new int[size];
+    int smallCount = 0;
+    int largeCount = 0;
+    for (int i = 0; i < size; i++) {
+      probabilities[i] = freeSpace(nodes[i]) * size / totalWeight;
+      aliases[i] = i;
+      if (probabilities[i] < 1) {
+        small[smallCount++] = i;
+      } else {
+        large[largeCount++] = i;
+      }
+    }
+    while (smallCount > 0 && largeCount > 0) {
+      int less = small[--smallCount];
+      int more = large[--largeCount];
+      aliases[less] = more;
+      probabilities[more] -= 1 - probabilities[less];
+      if (probabilities[more] < 1) {
+        small[smallCount++] = more;
+      } else {
+        large[largeCount++] = more;
+      }
+    }
+    // Whatever is left is 1 up to rounding
+    while (largeCount > 0) {
+      probabilities[large[--largeCount]] = 1;
+    }
+    while (smallCount > 0) {
+      probabilities[small[--smallCount]] = 1;
+    }
+    return new AliasTable(memberArray, nodes, probabilities, aliases);
+  }
+
+  /**
+   * Picks the node for a sequence number. Allocates nothing.
+   *
+   * @param sequence The sequence number, e.g. from a shared counter
+   * @return The node, or null if the table is empty
+   */
+  public StorageNode pick(long sequence) {
+    if (nodes.length == 0) {
+      return null;
+    }
+    int slot = (int) Math.floorMod(sequence, (long) nodes.length);
+    // Top 53 bits of the Weyl sequence as a double in [0, 1)
+    double coin = ((sequence * GOLDEN_GAMMA) >>> 11) * 0x1p-53;
+    return coin < probabilities[slot] ? nodes[slot] : nodes[aliases[slot]];
+  }
+
+  /**
+   * Checks whether this table was built from the same node instances, in the same order. Node
+   * instances are replaced whenever the registry publishes a new snapshot, so a match means the
+   * weights are current too. Allocates nothing.
+   *
+   * @param members The nodes
+   * @return Whether the table was built from exactly these nodes
+   */
+  public boolean isBuiltFor(List<StorageNode> members) {
+    if (members.size() != this.members.length) {
+      return false;
+    }
+    for (int i = 0; i < this.members.length; i++) {
+      if (members.get(i) != this.members[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hashes the identities of the given nodes in order, to find what was built for them among
+   * cached tables or other per-subset structures. Allocates nothing.
+   *
+   * @param members The nodes
+   * @return The hash
+   */
+  public static int signature(List<StorageNode> members) {
+    int hash = members.size();
+    for (int i = 0; i < members.size(); i++) {
+      hash = 31 * hash + System.identityHashCode(members.get(i));
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Gets the number of nodes that can be picked.
+   *
+   * @return The number of nodes with free space
+   */
+  public int getNodeCount() {
+    return nodes.length;
+  }
+
+  static long freeSpace(StorageNode node) {
+    return Math.max(node.getCapacity() - node.getUsedSpace(), 0);
+  }
+}
@@ -0,0 +1,208 @@
+package com.loadbalancer.strategy;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.CapacityLedger;
+import com.loadbalancer.service.NodeRegistry;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Load balancing strategy that places files on a consistent-hash ring keyed by file key, with
+ * each node's share of the ring weighted by its capacity. Adding or removing a node only moves
+ * the keys of the ranges it gains or loses; every other key keeps its node.
+ *
+ * <p>The ring is built from all active nodes in the {@link NodeRegistry} and rebuilt only when
+ * their membership or capacities change; each rebuild records which key ranges moved. Whether the
+ * ring is current is decided by the identity of the registry snapshot, so a pick is one binary
+ * search. Selections among a subset of the nodes walk the same ring, skipping nodes that are not
+ * candidates or that lack room, so a key falls to its successor instead of being rehashed. The
+ * subsets' node IDs are cached by the identities of their nodes, so a subset seen before costs one
+ * pass over its nodes and no allocation. Files without a key are placed at a random position, i.e.
+ * spread by capacity.
+ */
+@Component(value = "consistentHash")
+@Slf4j
+public class ConsistentHashStrategy implements LoadBalancerStrategy {
+  private static final String NO_AVAILABLE_NODES = "No available nodes";
+  private static final String NO_NODE_WITH_SPACE = "No node has enough space for the file";
+  // Slots of the subset cache; a power of two. Subsets that share a slot evict each other
+  private static final int SUBSET_SLOTS = 64;
+
+  private final NodeRegistry nodeRegistry;
+  private final CapacityLedger capacityLedger;
+  private final int virtualNodes;
+  private final long referenceCapacity;
+
+  private volatile RingState state = new RingState(List.of(), HashRing.EMPTY);
+  private volatile Map<String, Object> lastChange = Map.of();
+
+  public ConsistentHashStrategy(
+      NodeRegistry nodeRegistry, CapacityLedger capacityLedger, LoadBalancerConfig config) {
+    this.nodeRegistry = nodeRegistry;
+    this.capacityLedger = capacityLedger;
+    this.virtualNodes = config.getConsistentHash().getVirtualNodes();
+    this.referenceCapacity = config.getConsistentHash().getReferenceCapacity();
+  }
+
+  @Override
+  public StorageNode selectNode(List<StorageNode> nodes, long fileSize) {
+    return selectNode(nodes, fileSize, null);
+  }
+
+  @Override
+  public StorageNode selectNode(List<StorageNode> nodes, long fileSize, String key) {
+    if (nodes.isEmpty()) {
+      throw new IllegalStateException(NO_AVAILABLE_NODES);
+    }
+
+    long hash = key != null ? HashRing.hash(key) : ThreadLocalRandom.current().nextLong();
+    RingState current = currentState();
+    StorageNode selectedNode;
+    if (nodes == current.snapshot()) {
+      selectedNode = current.ring().locate(hash, node -> capacityLedger.hasRoom(node, fileSize));
+    } else {
+      Subset subset = subsetFor(current, nodes);
+      selectedNode =
+          subset
+              .ring()
+              .locate(
+                  hash, node -> subset.contains(node) && capacityLedger.hasRoom(node, fileSize));
+    }
+    if (selectedNode == null) {
+      throw new IllegalStateException(NO_NODE_WITH_SPACE);
+    }
+    return selectedNode;
+  }
+
+  /**
+   * Gets the current ring: the number of nodes and points, each node's share of the key space
+   * and the key ranges moved by the last membership change.
+   *
+   * @return The ring statistics
+   */
+  public Map<String, Object> getRingStats() {
+    HashRing current = currentState().ring();
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("virtualNodes", virtualNodes);
+    stats.put("referenceCapacity", referenceCapacity);
+    stats.put("nodes", current.getNodeCount());
+    stats.put("points", current.getPointCount());
+    stats.put("ownership", current.getOwnership());
+    stats.put("lastChange", lastChange);
+    return stats;
+  }
+
+  /** Returns the cached subset for the nodes, building it if it is not cached yet. */
+  private Subset subsetFor(RingState current, List<StorageNode> nodes) {
+    int slot = AliasTable.signature(nodes) & (SUBSET_SLOTS - 1);
+    Subset subset = current.subsets().get(slot);
+    if (subset == null || !subset.isFor(nodes)) {
+      subset = Subset.build(current.ring(), nodes, virtualNodes, referenceCapacity);
+      current.subsets().set(slot, subset);
+    }
+    return subset;
+  }
+
+  /**
+   * Returns the ring for the current registry snapshot. A new snapshot only rebuilds the ring if
+   * the membership or capacities have changed; otherwise the ring's points are kept and its
+   * nodes replaced by the snapshot's, whose used space is current.
+   */
+  private RingState currentState() {
+    List<StorageNode> activeNodes = nodeRegistry.getActiveNodes();
+    RingState current = state;
+    if (current.snapshot() == activeNodes) {
+      return current;
+    }
+    synchronized (this) {
+      current = state;
+      if (current.snapshot() != activeNodes) {
+        HashRing next;
+        if (current.ring().isBuiltFor(activeNodes)) {
+          next = current.ring().rebind(activeNodes);
+        } else {
+          next = HashRing.build(activeNodes, virtualNodes, referenceCapacity);
+          recordChange(current.ring(), next);
+        }
+        current = new RingState(activeNodes, next);
+        state = current;
+      }
+      return current;
+    }
+  }
+
+  private void recordChange(HashRing previous, HashRing next) {
+    List<HashRing.MovedRange> moved = HashRing.diff(previous, next);
+    double movedFraction = moved.stream().mapToDouble(HashRing.MovedRange::fraction).sum();
+
+    Map<String, Object> change = new HashMap<>();
+    change.put("time", LocalDateTime.now());
+    change.put("nodesBefore", previous.getNodeCount());
+    change.put("nodesAfter", next.getNodeCount());
+    change.put("movedFraction", movedFraction);
+    change.put("movedRanges", moved);
+    lastChange = change;
+
+    log.info(
+        "Rebuilt hash ring for {} nodes ({} points); {}% of keys moved in {} ranges",
+        next.getNodeCount(),
+        next.getPointCount(),
+        String.format("%.1f", movedFraction * 100),
+        moved.size());
+  }
+
+  /** The ring of a registry snapshot and the subsets of the snapshot seen so far. */
+  private record RingState(
+      List<StorageNode> snapshot, HashRing ring, AtomicReferenceArray<Subset> subsets) {
+
+    RingState(List<StorageNode> snapshot, HashRing ring) {
+      this(snapshot, ring, new AtomicReferenceArray<>(SUBSET_SLOTS));
+    }
+  }
+
+  /**
+   * A subset of the nodes: the ring to walk for it and the sorted IDs of its nodes. Nodes the
+   * shared ring does not hold, e.g. passed in by a caller that read an older snapshot, get a
+   * ring of their own, all of whose nodes are candidates.
+   */
+  private record Subset(StorageNode[] members, HashRing ring, long[] nodeIds) {
+
+    static Subset build(
+        HashRing shared, List<StorageNode> nodes, int virtualNodes, long referenceCapacity) {
+      StorageNode[] members = nodes.toArray(StorageNode[]::new);
+      for (StorageNode node : members) {
+        if (!shared.contains(node.getContainerId())) {
+          return new Subset(members, HashRing.build(nodes, virtualNodes, referenceCapacity), null);
+        }
+      }
+      long[] nodeIds = Arrays.stream(members).mapToLong(StorageNode::getContainerId).toArray();
+      Arrays.sort(nodeIds);
+      return new Subset(members, shared, nodeIds);
+    }
+
+    /** Whether the subset was built from the same node instances, in the same order. */
+    boolean isFor(List<StorageNode> nodes) {
+      if (nodes.size() != members.length) {
+        return false;
+      }
+      for (int i = 0; i < members.length; i++) {
+        if (nodes.get(i) != members[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    boolean contains(StorageNode node) {
+      return nodeIds == null || Arrays.binarySearch(nodeIds, node.getContainerId()) >= 0;
+    }
+  }
+}
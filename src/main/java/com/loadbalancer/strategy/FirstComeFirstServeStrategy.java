@@ -1,15 +1,20 @@
 package com.loadbalancer.strategy;
 
 import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.CapacityLedger;
 import java.util.List;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 /**
  * Load balancing strategy that selects the first available node with sufficient capacity.
- * Nodes are processed in the order they appear in the list.
+ * Nodes are processed in the order they appear in the list. Free space counts the space already
+ * reserved by uploads in progress.
  */
 @Component(value = "firstComeFirstServe")
+@RequiredArgsConstructor
 public class FirstComeFirstServeStrategy implements LoadBalancerStrategy {
+  private final CapacityLedger capacityLedger;
 
   private static final String NO_AVAILABLE_NODES = "No available nodes";
   private static final String NO_SUFFICIENT_CAPACITY = "No node with sufficient capacity";
@@ -21,7 +26,7 @@ public class FirstComeFirstServeStrategy implements LoadBalancerStrategy {
     }
 
     return nodes.stream()
-            .filter(node -> (node.getCapacity() - node.getUsedSpace()) >= fileSize)
+            .filter(node -> capacityLedger.hasRoom(node, fileSize))
             .findFirst()
             .orElseThrow(() -> new IllegalStateException(NO_SUFFICIENT_CAPACITY));
   }
@@ -0,0 +1,364 @@
+package com.loadbalancer.strategy;
+
+import com.loadbalancer.model.entity.StorageNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable consistent-hash ring over a set of storage nodes. Every node is placed on the ring at
+ * several points (virtual nodes), in proportion to its capacity; a key belongs to the first point
+ * at or after its hash, wrapping around at the end.
+ *
+ * <p>The points are kept in a sorted {@code long[]}, so a lookup is one binary search over
+ * primitives. Hashes are compared as signed longs throughout; the ring covers the whole 64-bit
+ * space.
+ */
+public final class HashRing {
+  public static final HashRing EMPTY = new HashRing(new StorageNode[0], new long[0], new int[0]);
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final double RING_SIZE = 0x1p64;
+  private static final int MAX_POINTS_FACTOR = 64;
+
+  private final StorageNode[] nodes;
+  private final long[] points;
+  private final int[] owners;
+
+  private HashRing(StorageNode[] nodes, long[] points, int[] owners) {
+    this.nodes = nodes;
+    this.points = points;
+    this.owners = owners;
+  }
+
+  /**
+   * Builds a ring for the given nodes. A node of the reference capacity gets {@code virtualNodes}
+   * points; larger and smaller nodes get proportionally more or fewer, at least one and at most
+   * 64 times as many. The weighting does not depend on the other nodes, so a membership change
+   * leaves the points of the remaining nodes where they were.
+   *
+   * @param members The nodes to place on the ring
+   * @param virtualNodes The number of points for a node of the reference capacity
+   * @param referenceCapacity The capacity that gets {@code virtualNodes} points
+   * @return The ring
+   */
+  public static HashRing build(
+      List<StorageNode> members, int virtualNodes, long referenceCapacity) {
+    if (members.isEmpty()) {
+      return EMPTY;
+    }
+    StorageNode[] nodes =
+        members.stream()
+            .sorted(Comparator.comparing(StorageNode::getContainerId))
+            .toArray(StorageNode[]::new);
+    long maxPoints = (long) virtualNodes * MAX_POINTS_FACTOR;
+
+    int[] counts = new int[nodes.length];
+    int total = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      double weight = (double) capacityOf(nodes[i]) / Math.max(referenceCapacity, 1);
+      counts[i] = (int) Math.min(maxPoints, Math.max(1, Math.round(virtualNodes * weight)));
+      total += counts[i];
+    }
+
+    long[] hashes = new long[total];
+    int[] hashOwners = new int[total];
+    int position = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      for (int replica = 0; replica < counts[i]; replica++) {
+        hashes[position] = hash("node-" + nodes[i].getContainerId() + "#" + replica);
+        hashOwners[position] = i;
+        position++;
+      }
+    }
+
+    int[] order =
+        IntStream.range(0, total)
+            .boxed()
+            .sorted(Comparator.comparingLong(index -> hashes[index]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    long[] points = new long[total];
+    int[] owners = new int[total];
+    for (int i = 0; i < total; i++) {
+      points[i] = hashes[order[i]];
+      owners[i] = hashOwners[order[i]];
+    }
+    return new HashRing(nodes, points, owners);
+  }
+
+  /**
+   * Hashes a key onto the ring: 64-bit FNV-1a over its characters, followed by the MurmurHash3
+   * finalizer so that similar keys land far apart.
+   *
+   * @param key The key
+   * @return The position of the key on the ring
+   */
+  public static long hash(String key) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return mix(hash);
+  }
+
+  /** MurmurHash3 64-bit finalizer: every input bit affects every output bit. */
+  static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * Finds the node that owns a position.
+   *
+   * @param hash The position on the ring
+   * @return The owning node, or null if the ring is empty
+   */
+  public StorageNode locate(long hash) {
+    return points.length == 0 ? null : nodes[owners[pointFor(hash)]];
+  }
+
+  /**
+   * Finds the first node at or after a position that has room for a file, judged by the used
+   * space the ring's nodes were built or rebound with.
+   *
+   * @param hash The position on the ring
+   * @param fileSize The size of the file to be stored
+   * @return The node, or null if no node has room
+   */
+  public StorageNode locate(long hash, long fileSize) {
+    return locate(hash, node -> availableSpace(node) >= fileSize);
+  }
+
+  /**
+   * Finds the first node at or after a position that passes a check, e.g. membership of a
+   * subset and a free space check that counts reservations, so a key whose owner is excluded or
+   * full falls to its successor on the ring. Nothing is allocated unless a node is rejected.
+   *
+   * @param hash The position on the ring
+   * @param accepted Whether a node can take the file
+   * @return The node, or null if no node is accepted
+   */
+  public StorageNode locate(long hash, Predicate<StorageNode> accepted) {
+    if (points.length == 0) {
+      return null;
+    }
+    boolean[] rejected = null;
+    int remaining = nodes.length;
+    int point = pointFor(hash);
+    for (int step = 0; step < points.length && remaining > 0; step++) {
+      int owner = owners[(point + step) % points.length];
+      if (rejected != null && rejected[owner]) {
+        continue;
+      }
+      StorageNode node = nodes[owner];
+      if (accepted.test(node)) {
+        return node;
+      }
+      if (rejected == null) {
+        rejected = new boolean[nodes.length];
+      }
+      rejected[owner] = true;
+      remaining--;
+    }
+    return null;
+  }
+
+  /**
+   * Puts other instances of the same nodes on this ring's points, e.g. the nodes of a newer
+   * registry snapshot whose used space has changed but whose membership and capacities have not.
+   *
+   * @param members The nodes, which this ring must be built for
+   * @return A ring with the same points over the given node instances
+   * @throws IllegalArgumentException If the ring is not built for the nodes
+   */
+  public HashRing rebind(List<StorageNode> members) {
+    if (!isBuiltFor(members)) {
+      throw new IllegalArgumentException("Ring is not built for the given nodes");
+    }
+    StorageNode[] rebound = new StorageNode[nodes.length];
+    for (StorageNode member : members) {
+      rebound[indexOf(member.getContainerId())] = member;
+    }
+    return new HashRing(rebound, points, owners);
+  }
+
+  /**
+   * Checks whether this ring was built for exactly the given nodes with their current
+   * capacities. Used space is not part of the ring, so it does not need rebuilding when it
+   * changes.
+   *
+   * @param members The nodes
+   * @return Whether the ring can be used for them as it is
+   */
+  public boolean isBuiltFor(List<StorageNode> members) {
+    if (members.size() != nodes.length) {
+      return false;
+    }
+    for (StorageNode member : members) {
+      int index = indexOf(member.getContainerId());
+      if (index < 0 || capacityOf(nodes[index]) != capacityOf(member)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether a node is on this ring.
+   *
+   * @param nodeId The node ID
+   * @return Whether the node is on the ring
+   */
+  public boolean contains(Long nodeId) {
+    return indexOf(nodeId) >= 0;
+  }
+
+  /**
+   * Gets the share of the key space owned by each node.
+   *
+   * @return The fraction of all keys owned by each node, by node ID
+   */
+  public Map<Long, Double> getOwnership() {
+    Map<Long, Double> ownership = new LinkedHashMap<>();
+    for (StorageNode node : nodes) {
+      ownership.put(node.getContainerId(), 0.0);
+    }
+    for (int i = 0; i < points.length; i++) {
+      long start = points[i == 0 ? points.length - 1 : i - 1];
+      ownership.merge(nodes[owners[i]].getContainerId(), fraction(start, points[i]), Double::sum);
+    }
+    return ownership;
+  }
+
+  /**
+   * Lists the key ranges whose owner differs between two rings, i.e. the keys that would move
+   * when the membership changes from {@code previous} to {@code next}. Adjacent ranges moving
+   * between the same pair of nodes are merged. Nothing moves from or to an empty ring.
+   *
+   * @param previous The ring before the change
+   * @param next The ring after the change
+   * @return The moved ranges, in ring order
+   */
+  public static List<MovedRange> diff(HashRing previous, HashRing next) {
+    List<MovedRange> moved = new ArrayList<>();
+    if (previous.points.length == 0 || next.points.length == 0) {
+      return moved;
+    }
+    long[] boundaries = union(previous.points, next.points);
+
+    // Every key in (boundaries[i - 1], boundaries[i]] has the same owner in both rings
+    for (int i = 0; i < boundaries.length; i++) {
+      long start = boundaries[i == 0 ? boundaries.length - 1 : i - 1];
+      long end = boundaries[i];
+      Long from = previous.locate(end).getContainerId();
+      Long to = next.locate(end).getContainerId();
+      if (from.equals(to)) {
+        continue;
+      }
+      MovedRange last = moved.isEmpty() ? null : moved.get(moved.size() - 1);
+      if (last != null
+          && last.endInclusive() == start
+          && last.fromNodeId().equals(from)
+          && last.toNodeId().equals(to)) {
+        moved.set(moved.size() - 1, new MovedRange(last.startExclusive(), end, from, to));
+      } else {
+        moved.add(new MovedRange(start, end, from, to));
+      }
+    }
+    return moved;
+  }
+
+  public int getNodeCount() {
+    return nodes.length;
+  }
+
+  public int getPointCount() {
+    return points.length;
+  }
+
+  private int pointFor(long hash) {
+    int index = Arrays.binarySearch(points, hash);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return index == points.length ? 0 : index;
+  }
+
+  private int indexOf(Long nodeId) {
+    int low = 0;
+    int high = nodes.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = nodes[mid].getContainerId().compareTo(nodeId);
+      if (comparison == 0) {
+        return mid;
+      }
+      if (comparison < 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return -1;
+  }
+
+  private static long[] union(long[] a, long[] b) {
+    long[] merged = new long[a.length + b.length];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < a.length || j < b.length) {
+      long next;
+      if (j == b.length || (i < a.length && a[i] <= b[j])) {
+        next = a[i++];
+      } else {
+        next = b[j++];
+      }
+      if (size == 0 || merged[size - 1] != next) {
+        merged[size++] = next;
+      }
+    }
+    return Arrays.copyOf(merged, size);
+  }
+
+  /** Returns the fraction of the ring in (start, end]; a range from a point to itself is all. */
+  private static double fraction(long start, long end) {
+    long length = end - start;
+    if (length == 0) {
+      return 1.0;
+    }
+    double unsignedLength = length >= 0 ? length : length + RING_SIZE;
+    return unsignedLength / RING_SIZE;
+  }
+
+  private static long capacityOf(StorageNode node) {
+    return Math.max(node.getCapacity(), 1);
+  }
+
+  private static long availableSpace(StorageNode node) {
+    return node.getCapacity() - node.getUsedSpace();
+  }
+
+  /**
+   * A range of ring positions, (startExclusive, endInclusive], wrapping around if the end is
+   * below the start, whose keys move from one node to another.
+   */
+  public record MovedRange(long startExclusive, long endInclusive, Long fromNodeId, Long toNodeId) {
+    /** Returns the fraction of all keys that fall in this range. */
+    public double fraction() {
+      return HashRing.fraction(startExclusive, endInclusive);
+    }
+  }
+}
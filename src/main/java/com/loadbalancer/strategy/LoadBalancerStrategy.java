@@ -6,4 +6,17 @@ import java.util.List;
 
 public interface LoadBalancerStrategy {
   StorageNode selectNode(List<StorageNode> nodes, long fileSize);
+
+  /**
+   * Selects a node for a file identified by a key. Strategies without key affinity ignore the
+   * key.
+   *
+   * @param nodes The available nodes
+   * @param fileSize The size of the file to be stored
+   * @param key The file key, or null if the file has none
+   * @return The selected node
+   */
+  default StorageNode selectNode(List<StorageNode> nodes, long fileSize, String key) {
+    return selectNode(nodes, fileSize);
+  }
 }
@@ -0,0 +1,73 @@
+package com.loadbalancer.strategy;
+
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.CapacityLedger;
+import com.loadbalancer.service.InFlightTracker;
+import com.loadbalancer.service.LatencyTracker;
+import com.loadbalancer.service.NodeRegistry;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * Load balancing strategy that scores each node by its peak-EWMA response time multiplied by its
+ * requests in flight plus one, and picks the lower-scored of two random nodes with room for the
+ * file. A node with a slow disk or a GC pause scores high from its first slow response and gets
+ * less traffic until its responses speed up again, or until its estimate has decayed while it was
+ * avoided.
+ *
+ * <p>A node that has not answered yet scores 0 while idle, so it is tried at once, and is charged
+ * the failure penalty for each request in flight, so it does not take every request before its
+ * first response arrives.
+ */
+@Component(value = "peakEwma")
+public class PeakEwmaStrategy extends TwoChoicesStrategy {
+  private final LatencyTracker latencyTracker;
+  private final InFlightTracker inFlightTracker;
+  private final NodeRegistry nodeRegistry;
+
+  public PeakEwmaStrategy(
+      LatencyTracker latencyTracker,
+      InFlightTracker inFlightTracker,
+      NodeRegistry nodeRegistry,
+      CapacityLedger capacityLedger) {
+    super(capacityLedger);
+    this.latencyTracker = latencyTracker;
+    this.inFlightTracker = inFlightTracker;
+    this.nodeRegistry = nodeRegistry;
+  }
+
+  @Override
+  protected boolean isLessLoaded(StorageNode node, StorageNode other) {
+    return cost(node.getContainerId()) < cost(other.getContainerId());
+  }
+
+  /**
+   * Gets the live score of each active node: its response time estimate, requests in flight and
+   * the resulting cost.
+   *
+   * @return The scores, by node ID
+   */
+  public Map<Long, Map<String, Object>> getScores() {
+    Map<Long, Map<String, Object>> scores = new TreeMap<>();
+    for (StorageNode node : nodeRegistry.getActiveNodes()) {
+      Long nodeId = node.getContainerId();
+      scores.put(
+          nodeId,
+          Map.of(
+              "latency", latencyTracker.getLatency(nodeId),
+              "requests", inFlightTracker.getRequests(nodeId),
+              "cost", cost(nodeId)));
+    }
+    return scores;
+  }
+
+  private double cost(Long nodeId) {
+    double latency = latencyTracker.getLatency(nodeId);
+    int requests = inFlightTracker.getRequests(nodeId);
+    if (latency == 0) {
+      return requests * latencyTracker.getFailurePenalty();
+    }
+    return latency * (requests + 1);
+  }
+}
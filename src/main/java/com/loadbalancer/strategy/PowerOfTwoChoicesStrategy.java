@@ -0,0 +1,32 @@
+package com.loadbalancer.strategy;
+
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.CapacityLedger;
+import com.loadbalancer.service.InFlightTracker;
+import org.springframework.stereotype.Component;
+
+/**
+ * Load balancing strategy that samples two random nodes with room for the file and picks the one
+ * with fewer requests in flight, then fewer bytes in flight.
+ */
+@Component(value = "powerOfTwoChoices")
+public class PowerOfTwoChoicesStrategy extends TwoChoicesStrategy {
+  private final InFlightTracker inFlightTracker;
+
+  public PowerOfTwoChoicesStrategy(
+      InFlightTracker inFlightTracker, CapacityLedger capacityLedger) {
+    super(capacityLedger);
+    this.inFlightTracker = inFlightTracker;
+  }
+
+  @Override
+  protected boolean isLessLoaded(StorageNode node, StorageNode other) {
+    int requests = inFlightTracker.getRequests(node.getContainerId());
+    int otherRequests = inFlightTracker.getRequests(other.getContainerId());
+    if (requests != otherRequests) {
+      return requests < otherRequests;
+    }
+    return inFlightTracker.getBytes(node.getContainerId())
+        < inFlightTracker.getBytes(other.getContainerId());
+  }
+}
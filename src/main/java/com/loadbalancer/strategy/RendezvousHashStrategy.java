@@ -0,0 +1,98 @@
+package com.loadbalancer.strategy;
+
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.CapacityLedger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Load balancing strategy using weighted rendezvous (highest-random-weight) hashing. Every node
+ * gets a pseudo-random score per key, scaled by its capacity, and nodes are ranked by score. The
+ * ranking depends only on the key and the node IDs and capacities, so any load balancer instance
+ * computes the same placement without a metadata lookup, and removing a node only moves the keys
+ * it ranked first for.
+ *
+ * <p>Each node's share of keys is proportional to its capacity: the score is {@code -capacity /
+ * ln(u)} for a hash {@code u} in (0, 1) of the key and node ID.
+ */
+@Component(value = "rendezvousHash")
+@RequiredArgsConstructor
+public class RendezvousHashStrategy implements LoadBalancerStrategy {
+  private static final String NO_AVAILABLE_NODES = "No available nodes";
+  private static final String NO_SUFFICIENT_CAPACITY = "No node with sufficient capacity";
+
+  private final CapacityLedger capacityLedger;
+
+  @Override
+  public StorageNode selectNode(List<StorageNode> nodes, long fileSize) {
+    return selectNode(nodes, fileSize, null);
+  }
+
+  @Override
+  public StorageNode selectNode(List<StorageNode> nodes, long fileSize, String key) {
+    if (nodes.isEmpty()) {
+      throw new IllegalStateException(NO_AVAILABLE_NODES);
+    }
+    List<StorageNode> selected = selectNodes(nodes, fileSize, key, 1);
+    if (selected.isEmpty()) {
+      throw new IllegalStateException(NO_SUFFICIENT_CAPACITY);
+    }
+    return selected.get(0);
+  }
+
+  /**
+   * Selects the highest-ranked nodes with room for a file, e.g. to place its replicas.
+   *
+   * @param nodes The available nodes
+   * @param fileSize The size of the file to be stored
+   * @param key The file key, or null to place the file at random
+   * @param count The number of nodes wanted
+   * @return Up to {@code count} distinct nodes, best first; fewer if fewer have room
+   */
+  public List<StorageNode> selectNodes(
+      List<StorageNode> nodes, long fileSize, String key, int count) {
+    List<StorageNode> selected = new ArrayList<>(count);
+    for (StorageNode node : rankNodes(nodes, key)) {
+      if (selected.size() == count) {
+        break;
+      }
+      if (capacityLedger.hasRoom(node, fileSize)) {
+        selected.add(node);
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Ranks all nodes for a key, regardless of free space. The first node is where the key is
+   * placed when every node has room.
+   *
+   * @param nodes The nodes to rank
+   * @param key The key, or null for a random ranking
+   * @return The nodes, highest score first
+   */
+  public List<StorageNode> rankNodes(List<StorageNode> nodes, String key) {
+    long keyHash = key != null ? HashRing.hash(key) : ThreadLocalRandom.current().nextLong();
+    double[] scores = new double[nodes.size()];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = score(keyHash, nodes.get(i));
+    }
+    return IntStream.range(0, scores.length)
+        .boxed()
+        .sorted(Comparator.comparingDouble((Integer index) -> scores[index]).reversed())
+        .map(nodes::get)
+        .toList();
+  }
+
+  private static double score(long keyHash, StorageNode node) {
+    long hash = HashRing.mix(keyHash ^ HashRing.mix(node.getContainerId()));
+    // Top 53 bits as a double strictly between 0 and 1
+    double unit = ((hash >>> 11) + 0.5) * 0x1p-53;
+    return -Math.max(node.getCapacity(), 1) / Math.log(unit);
+  }
+}
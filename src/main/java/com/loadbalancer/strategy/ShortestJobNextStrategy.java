@@ -1,16 +1,21 @@
 package com.loadbalancer.strategy;
 
 import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.CapacityLedger;
 import java.util.Comparator;
 import java.util.List;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 /**
  * Load balancing strategy that selects the node with the least used space.
- * This helps distribute storage more evenly across available nodes.
+ * This helps distribute storage more evenly across available nodes. Used space includes the space
+ * reserved by uploads in progress, so a burst of uploads does not all go to the same node.
  */
 @Component(value = "shortestJobNext")
+@RequiredArgsConstructor
 public class ShortestJobNextStrategy implements LoadBalancerStrategy {
+  private final CapacityLedger capacityLedger;
 
   private static final String NO_AVAILABLE_NODES = "No available nodes";
   private static final String NO_SUFFICIENT_CAPACITY = "No node with sufficient capacity";
@@ -22,8 +27,8 @@ public class ShortestJobNextStrategy implements LoadBalancerStrategy {
     }
 
     return nodes.stream()
-            .filter(node -> (node.getCapacity() - node.getUsedSpace()) >= fileSize)
-            .min(Comparator.comparingLong(StorageNode::getUsedSpace))
+            .filter(node -> capacityLedger.hasRoom(node, fileSize))
+            .min(Comparator.comparingLong(capacityLedger::getUsedSpace))
             .orElseThrow(() -> new IllegalStateException(NO_SUFFICIENT_CAPACITY));
   }
 }
\ No newline at end of file
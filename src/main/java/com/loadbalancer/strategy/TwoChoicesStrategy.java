@@ -0,0 +1,75 @@
+package com.loadbalancer.strategy;
+
+import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.CapacityLedger;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Base for strategies that sample two random nodes with room for the file and keep the one a
+ * load measure prefers. Unlike always taking the global minimum, concurrent selections do not all
+ * pile onto the same node, and a pick costs O(1) instead of a scan of every node. Room is judged
+ * by free space less the space reserved by uploads in progress.
+ */
+abstract class TwoChoicesStrategy implements LoadBalancerStrategy {
+  private static final String NO_AVAILABLE_NODES = "No available nodes";
+  private static final String NO_SUFFICIENT_CAPACITY = "No node with sufficient capacity";
+  // Random draws before falling back to a scan, which is only reached when most nodes are full
+  private static final int MAX_DRAWS = 4;
+
+  private final CapacityLedger capacityLedger;
+
+  protected TwoChoicesStrategy(CapacityLedger capacityLedger) {
+    this.capacityLedger = capacityLedger;
+  }
+
+  @Override
+  public StorageNode selectNode(List<StorageNode> nodes, long fileSize) {
+    if (nodes.isEmpty()) {
+      throw new IllegalStateException(NO_AVAILABLE_NODES);
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    StorageNode first = sample(nodes, fileSize, null, random);
+    if (first == null) {
+      throw new IllegalStateException(NO_SUFFICIENT_CAPACITY);
+    }
+    StorageNode second = sample(nodes, fileSize, first, random);
+    if (second == null) {
+      return first;
+    }
+    return isLessLoaded(second, first) ? second : first;
+  }
+
+  /**
+   * Compares the load of two nodes.
+   *
+   * @param node The node to compare
+   * @param other The node to compare it with
+   * @return Whether {@code node} should be preferred over {@code other}
+   */
+  protected abstract boolean isLessLoaded(StorageNode node, StorageNode other);
+
+  /** Draws a random node with room for the file, other than {@code excluded}; null if none. */
+  private StorageNode sample(
+      List<StorageNode> nodes, long fileSize, StorageNode excluded, ThreadLocalRandom random) {
+    for (int draw = 0; draw < MAX_DRAWS; draw++) {
+      StorageNode node = nodes.get(random.nextInt(nodes.size()));
+      if (node != excluded && hasRoom(node, fileSize)) {
+        return node;
+      }
+    }
+    int offset = random.nextInt(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      StorageNode node = nodes.get((offset + i) % nodes.size());
+      if (node != excluded && hasRoom(node, fileSize)) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  private boolean hasRoom(StorageNode node, long fileSize) {
+    return capacityLedger.hasRoom(node, fileSize);
+  }
+}
@@ -1,20 +1,38 @@
 package com.loadbalancer.strategy;
 
 import com.loadbalancer.model.entity.StorageNode;
+import com.loadbalancer.service.CapacityLedger;
+import com.loadbalancer.service.NodeRegistry;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 /**
  * Load balancing strategy that uses a weighted round-robin approach based on node capacity.
  * Nodes with more available space receive proportionally more requests.
+ *
+ * <p>The weights are precomputed into an {@link AliasTable}, rebuilt only when the registry
+ * publishes a new node snapshot, so a pick from the snapshot is O(1) and allocates nothing.
+ * Subsets of the snapshot, such as a placement pool, the nodes of preferred tiers or those below
+ * their concurrency limit, are new lists on every selection; their tables are cached by the
+ * identities of their nodes, so a pick from a subset seen before costs one pass over its nodes
+ * without allocating, rather than a rebuild.
  */
 @Component(value = "weightedRoundRobin")
+@RequiredArgsConstructor
 public class WeightedRoundRobinStrategy implements LoadBalancerStrategy {
-  private final AtomicInteger counter = new AtomicInteger(0);
+  private final AtomicLong counter = new AtomicLong(0);
+  private final NodeRegistry nodeRegistry;
+  private final CapacityLedger capacityLedger;
+
+  private volatile Tables tables = new Tables(List.of(), AliasTable.EMPTY);
 
   private static final String NO_AVAILABLE_NODES = "No available nodes";
-  private static final int MEGABYTE = 1024 * 1024;
+  private static final String NO_SUFFICIENT_CAPACITY = "No node with sufficient capacity";
+  // Slots of the subset table cache; a power of two. Subsets that share a slot evict each other
+  private static final int SUBSET_SLOTS = 64;
 
   @Override
   public StorageNode selectNode(List<StorageNode> nodes, long fileSize) {
@@ -22,34 +40,73 @@ public class WeightedRoundRobinStrategy implements LoadBalancerStrategy {
       throw new IllegalStateException(NO_AVAILABLE_NODES);
     }
 
-    int totalWeight = nodes.stream().mapToInt(node -> calculateWeight(node, fileSize)).sum();
+    StorageNode node = tableFor(nodes).pick(counter.getAndIncrement());
+    if (node != null && capacityLedger.hasRoom(node, fileSize)) {
+      return node;
+    }
+    return largestFit(nodes, fileSize);
+  }
 
-    int position = counter.getAndIncrement() % totalWeight;
-    int currentWeight = 0;
+  /** Returns the table for the nodes, building it if it is not cached for the current snapshot. */
+  private AliasTable tableFor(List<StorageNode> nodes) {
+    Tables current = tablesFor(nodeRegistry.getActiveNodes());
+    if (nodes == current.snapshot()) {
+      return current.snapshotTable();
+    }
+    int slot = AliasTable.signature(nodes) & (SUBSET_SLOTS - 1);
+    AliasTable table = current.subsetTables().get(slot);
+    if (table == null || !table.isBuiltFor(nodes)) {
+      table = AliasTable.build(nodes);
+      current.subsetTables().set(slot, table);
+    }
+    return table;
+  }
 
-    for (StorageNode node : nodes) {
-      currentWeight += calculateWeight(node, fileSize);
-      if (position < currentWeight) {
-        return node;
+  /** Returns the tables of the snapshot, dropping every cached table if the snapshot changed. */
+  private Tables tablesFor(List<StorageNode> snapshot) {
+    Tables current = tables;
+    if (current.snapshot() == snapshot) {
+      return current;
+    }
+    synchronized (this) {
+      current = tables;
+      if (current.snapshot() != snapshot) {
+        current = new Tables(snapshot, AliasTable.build(snapshot));
+        tables = current;
       }
+      return current;
     }
-
-    return nodes.get(0);
   }
 
   /**
-   * Calculate weight for a node based on its available space.
-   *
-   * @param node The storage node
-   * @param fileSize The size of the file to be stored
-   * @return The calculated weight value
+   * Falls back to the node with the most free space when the picked node cannot hold the file,
+   * which happens for files larger than some node's free space, or once uploads in progress have
+   * reserved most of the picked node's space.
    */
-  private int calculateWeight(StorageNode node, long fileSize) {
-    long availableSpace = node.getCapacity() - node.getUsedSpace();
-    if (availableSpace < fileSize) {
-      return 0;
+  private StorageNode largestFit(List<StorageNode> nodes, long fileSize) {
+    StorageNode best = null;
+    long bestFreeSpace = fileSize - 1;
+    for (StorageNode node : nodes) {
+      long freeSpace = capacityLedger.getFreeSpace(node);
+      if (freeSpace > bestFreeSpace) {
+        best = node;
+        bestFreeSpace = freeSpace;
+      }
+    }
+    if (best == null) {
+      throw new IllegalStateException(NO_SUFFICIENT_CAPACITY);
+    }
+    return best;
+  }
+
+  /** The table of a node snapshot and the tables of its subsets built so far. */
+  private record Tables(
+      List<StorageNode> snapshot,
+      AliasTable snapshotTable,
+      AtomicReferenceArray<AliasTable> subsetTables) {
+
+    Tables(List<StorageNode> snapshot, AliasTable snapshotTable) {
+      this(snapshot, snapshotTable, new AtomicReferenceArray<>(SUBSET_SLOTS));
     }
-    // Convert to MB for weight calculation
-    return (int) (availableSpace / MEGABYTE);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package com.loadbalancer.util;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import java.util.StringJoiner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Utility class for choosing the content encodings to request from a storage node on behalf of a
+ * client. Every configured encoding the client accepts is forwarded, so the node can send a file
+ * stored compressed as it is whenever the client accepts its encoding. The list is forwarded in
+ * the configured order, so clients that accept the same configured encodings forward the same
+ * list, and any response the node sends for it can be shared between them.
+ */
+@Component
+public class ContentEncodingNegotiator {
+  private final LoadBalancerConfig.Compression settings;
+
+  /**
+   * Creates a new ContentEncodingNegotiator using the compression settings.
+   *
+   * @param config The load balancer configuration
+   */
+  public ContentEncodingNegotiator(LoadBalancerConfig config) {
+    this.settings = config.getCompression();
+  }
+
+  /**
+   * Lists the configured encodings that the client accepts, in order of preference, as the
+   * Accept-Encoding header to forward to the node.
+   *
+   * @param acceptEncoding The client's Accept-Encoding header, or null
+   * @return The encodings to request, e.g. {@code zstd, gzip}, or null to request uncompressed
+   *     content
+   */
+  public String negotiate(String acceptEncoding) {
+    if (!settings.isEnabled() || acceptEncoding == null) {
+      return null;
+    }
+    StringJoiner accepted = new StringJoiner(", ");
+    for (String encoding : settings.getEncodings()) {
+      if (accepts(acceptEncoding, encoding)) {
+        accepted.add(encoding);
+      }
+    }
+    return accepted.length() > 0 ? accepted.toString() : null;
+  }
+
+  /** Checks an Accept-Encoding header for an encoding, honouring q=0 and the * wildcard. */
+  private boolean accepts(String acceptEncoding, String encoding) {
+    boolean wildcard = false;
+    for (String entry : acceptEncoding.split(",")) {
+      String[] parts = entry.trim().split(";");
+      String coding = parts[0].trim();
+      boolean allowed = parts.length < 2 || !isZeroQuality(parts[1]);
+      if (coding.equalsIgnoreCase(encoding)) {
+        return allowed;
+      }
+      if (coding.equals("*")) {
+        wildcard = allowed;
+      }
+    }
+    return wildcard;
+  }
+
+  private boolean isZeroQuality(String parameter) {
+    String[] pair = parameter.trim().split("=");
+    if (pair.length != 2 || !pair[0].trim().equalsIgnoreCase("q")) {
+      return false;
+    }
+    try {
+      return Double.parseDouble(pair[1].trim()) == 0;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+}
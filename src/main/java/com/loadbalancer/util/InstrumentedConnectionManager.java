@@ -0,0 +1,93 @@
+package com.loadbalancer.util;
+
+import com.loadbalancer.model.dto.ConnectionPoolStats;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * Pooling connection manager for load balancer to storage node traffic. Each storage node is a
+ * separate route with its own connection limit; the time callers spend waiting to lease a
+ * connection is recorded so pool exhaustion shows up in the metrics.
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+  private final AtomicLong leaseRequests = new AtomicLong(0);
+  private final AtomicLong totalLeaseWaitNanos = new AtomicLong(0);
+  private final AtomicLong maxLeaseWaitNanos = new AtomicLong(0);
+
+  @Override
+  public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+    LeaseRequest delegate = super.lease(id, route, requestTimeout, state);
+    return new LeaseRequest() {
+      @Override
+      public ConnectionEndpoint get(Timeout timeout)
+          throws InterruptedException, ExecutionException, TimeoutException {
+        long start = System.nanoTime();
+        try {
+          return delegate.get(timeout);
+        } finally {
+          recordLeaseWait(System.nanoTime() - start);
+        }
+      }
+
+      @Override
+      public boolean cancel() {
+        return delegate.cancel();
+      }
+    };
+  }
+
+  /**
+   * Builds a snapshot of pool utilization, overall and per storage node.
+   *
+   * @return Current connection pool statistics
+   */
+  public ConnectionPoolStats getConnectionPoolStats() {
+    PoolStats total = getTotalStats();
+    Map<String, ConnectionPoolStats.NodePoolStats> nodes = new HashMap<>();
+    for (HttpRoute route : getRoutes()) {
+      PoolStats stats = getStats(route);
+      nodes.put(
+          route.getTargetHost().toHostString(),
+          ConnectionPoolStats.NodePoolStats.builder()
+              .leased(stats.getLeased())
+              .available(stats.getAvailable())
+              .pending(stats.getPending())
+              .max(stats.getMax())
+              .build());
+    }
+
+    long requests = leaseRequests.get();
+    return ConnectionPoolStats.builder()
+        .leased(total.getLeased())
+        .available(total.getAvailable())
+        .pending(total.getPending())
+        .maxTotal(total.getMax())
+        .maxPerNode(getDefaultMaxPerRoute())
+        .utilization(total.getMax() > 0 ? (double) total.getLeased() / total.getMax() : 0.0)
+        .leaseRequests(requests)
+        .averageLeaseWaitMs(requests > 0 ? toMillis(totalLeaseWaitNanos.get()) / requests : 0.0)
+        .maxLeaseWaitMs(toMillis(maxLeaseWaitNanos.get()))
+        .nodes(nodes)
+        .build();
+  }
+
+  private void recordLeaseWait(long waitNanos) {
+    leaseRequests.incrementAndGet();
+    totalLeaseWaitNanos.addAndGet(waitNanos);
+    maxLeaseWaitNanos.accumulateAndGet(waitNanos, Math::max);
+  }
+
+  private double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
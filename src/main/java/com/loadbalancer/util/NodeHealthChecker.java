@@ -21,10 +21,12 @@ public class NodeHealthChecker {
   private static final String HEALTH_CHECK_FAILED_LOG = "Health check failed for node {}: {}";
 
   /**
-   * Creates a new NodeHealthChecker with a default RestTemplate.
+   * Creates a new NodeHealthChecker that uses the shared pooled RestTemplate.
+   *
+   * @param restTemplate The RestTemplate used for health requests
    */
-  public NodeHealthChecker() {
-    this.restTemplate = new RestTemplate();
+  public NodeHealthChecker(RestTemplate restTemplate) {
+    this.restTemplate = restTemplate;
   }
 
   /**
@@ -0,0 +1,104 @@
+package com.loadbalancer.util;
+
+import com.loadbalancer.config.LoadBalancerConfig;
+import com.loadbalancer.exception.LoadBalancerException;
+import com.loadbalancer.model.dto.SignedUrl;
+import com.loadbalancer.model.entity.StorageNode;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Utility class for issuing short-lived signed URLs that let clients talk to a storage node
+ * directly. The node verifies the signature with the shared secret, without calling back.
+ *
+ * <p>The signature is an HMAC-SHA256 over the method, path, user ID and expiry time. Storage nodes
+ * compute the same value in {@code SignedUrlInterceptor}, so the two must be kept in step.
+ */
+@Component
+public class UrlSigner {
+  private final LoadBalancerConfig config;
+
+  // Constants
+  public static final String PARAM_USER = "user";
+  public static final String PARAM_EXPIRES = "expires";
+  public static final String PARAM_SIGNATURE = "signature";
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final String NODE_URL_FORMAT = "http://%s:%d%s";
+  private static final String SIGNING_DISABLED = "Signed URLs are not configured";
+
+  /**
+   * Creates a new UrlSigner using the direct access settings.
+   *
+   * @param config The load balancer configuration
+   */
+  public UrlSigner(LoadBalancerConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * Checks whether a signing secret has been configured.
+   *
+   * @return true if URLs can be signed
+   */
+  public boolean isEnabled() {
+    String secret = config.getDirect().getSecret();
+    return secret != null && !secret.isEmpty();
+  }
+
+  /**
+   * Creates a signed URL for a request to a storage node.
+   *
+   * @param node The storage node the URL points at
+   * @param method The HTTP method the URL is valid for
+   * @param path The request path on the node
+   * @param userId The user the URL is issued to
+   * @return The signed URL and its expiry time
+   */
+  public SignedUrl sign(StorageNode node, HttpMethod method, String path, Long userId) {
+    if (!isEnabled()) {
+      throw new LoadBalancerException(
+          SIGNING_DISABLED, HttpStatus.SERVICE_UNAVAILABLE, "SIGNED_URLS_DISABLED");
+    }
+
+    long expires = Instant.now().getEpochSecond() + config.getDirect().getUrlTtl();
+    String signature = signature(method.name(), path, userId, expires);
+
+    String url =
+        UriComponentsBuilder.fromHttpUrl(
+                String.format(NODE_URL_FORMAT, node.getHostAddress(), node.getPort(), path))
+            .queryParam(PARAM_USER, userId)
+            .queryParam(PARAM_EXPIRES, expires)
+            .queryParam(PARAM_SIGNATURE, signature)
+            .build()
+            .toUriString();
+
+    return SignedUrl.builder()
+        .url(url)
+        .method(method.name())
+        .expiresAt(Instant.ofEpochSecond(expires))
+        .nodeId(node.getContainerId())
+        .build();
+  }
+
+  private String signature(String method, String path, Long userId, long expires) {
+    String canonical = method + "\n" + path + "\n" + userId + "\n" + expires;
+    try {
+      Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+      mac.init(
+          new SecretKeySpec(
+              config.getDirect().getSecret().getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+      byte[] digest = mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8));
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unable to sign URL", e);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+-- Create FileStripe table holding the stripe map of files striped across several nodes
+-- Migration V4: Add striped file layout
+
+CREATE TABLE FileStripe (
+    stripe_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    file_id BIGINT NOT NULL,
+    stripe_index INT NOT NULL,
+    stripe_count INT NOT NULL,
+    stripe_size BIGINT NOT NULL,
+    node_id BIGINT NOT NULL,
+    node_file_id BIGINT NOT NULL,
+    length BIGINT NOT NULL,
+    UNIQUE INDEX idx_file_stripe (file_id, stripe_index),
+    INDEX idx_stripe_node (node_id),
+    CONSTRAINT fk_file_stripe_file
+        FOREIGN KEY (file_id)
+        REFERENCES FileMetadata(file_id)
+        ON DELETE CASCADE,
+    CONSTRAINT fk_file_stripe_node
+        FOREIGN KEY (node_id)
+        REFERENCES StorageContainers(container_id)
+        ON DELETE CASCADE
+);
+
+ALTER TABLE FileStripe
+    COMMENT = 'Stripe map of files split into fixed-size units across several storage nodes';
+
+ALTER TABLE FileStripe
+    MODIFY COLUMN stripe_index INT NOT NULL
+    COMMENT 'Column of the stripe layout; unit k is held by column k % stripe_count';
+
+ALTER TABLE FileStripe
+    MODIFY COLUMN stripe_size BIGINT NOT NULL
+    COMMENT 'Size of one stripe unit in bytes';
+
+ALTER TABLE FileStripe
+    MODIFY COLUMN node_file_id BIGINT NOT NULL
+    COMMENT 'ID of the column file on the storage node';
+
+ALTER TABLE FileStripe
+    MODIFY COLUMN length BIGINT NOT NULL
+    COMMENT 'Size of the column file in bytes';
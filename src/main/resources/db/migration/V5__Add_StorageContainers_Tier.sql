@@ -0,0 +1,16 @@
+-- Add the device class and throughput that storage nodes advertise at registration
+-- Migration V5: Add storage tiers
+
+ALTER TABLE StorageContainers
+    ADD COLUMN tier VARCHAR(16) NOT NULL DEFAULT 'SSD'
+    COMMENT 'Device class of the node: NVME, SSD or HDD';
+
+ALTER TABLE StorageContainers
+    ADD COLUMN read_throughput BIGINT NULL
+    COMMENT 'Sustained read throughput advertised by the node in bytes per second';
+
+ALTER TABLE StorageContainers
+    ADD COLUMN write_throughput BIGINT NULL
+    COMMENT 'Sustained write throughput advertised by the node in bytes per second';
+
+CREATE INDEX idx_storage_containers_tier ON StorageContainers (tier);
@@ -0,0 +1,98 @@
+package com.storagenode.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Verifies URLs signed by the load balancer, so clients can upload and download directly from
+ * this node while deletes stay reserved to the load balancer. The signature is checked locally with
+ * the shared secret and must match the load balancer's UrlSigner: an HMAC-SHA256 over the method,
+ * path, user ID and expiry time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SignedUrlInterceptor implements HandlerInterceptor {
+    public static final String USER_ATTRIBUTE = "signedUserId";
+
+    private static final String PARAM_USER = "user";
+    private static final String PARAM_EXPIRES = "expires";
+    private static final String PARAM_SIGNATURE = "signature";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final StorageConfig storageConfig;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        String method = request.getMethod();
+        if (!HttpMethod.GET.matches(method) && !HttpMethod.POST.matches(method)
+                && !HttpMethod.PUT.matches(method) && !HttpMethod.DELETE.matches(method)) {
+            return true;
+        }
+
+        String signature = request.getParameter(PARAM_SIGNATURE);
+        if (signature == null) {
+            if (storageConfig.getSigning().isRequired()) {
+                response.sendError(HttpStatus.FORBIDDEN.value(), "Signed URL required");
+                return false;
+            }
+            return true;
+        }
+
+        String secret = storageConfig.getSigning().getSecret();
+        String user = request.getParameter(PARAM_USER);
+        String expires = request.getParameter(PARAM_EXPIRES);
+        if (secret == null || secret.isEmpty() || user == null || expires == null) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Invalid signed URL");
+            return false;
+        }
+
+        long userId;
+        long expiresAt;
+        try {
+            userId = Long.parseLong(user);
+            expiresAt = Long.parseLong(expires);
+        } catch (NumberFormatException e) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Invalid signed URL");
+            return false;
+        }
+
+        if (Instant.now().getEpochSecond() > expiresAt) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Signed URL has expired");
+            return false;
+        }
+
+        String canonical = method + "\n" + request.getRequestURI() + "\n" + userId + "\n" + expiresAt;
+        byte[] expected = sign(secret, canonical).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII))) {
+            log.warn("Rejected signed URL with invalid signature for {} {}", method, request.getRequestURI());
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Invalid signed URL");
+            return false;
+        }
+
+        request.setAttribute(USER_ATTRIBUTE, userId);
+        return true;
+    }
+
+    private String sign(String secret, String canonical) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+        byte[] digest = mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+}
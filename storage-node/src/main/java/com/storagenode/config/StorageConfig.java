@@ -4,13 +4,20 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "storage")
 @Data
 public class StorageConfig {
     private String basePath = "/app/storage";
+    private Long transferChunkSize = 1048576L; // 1MB per transferTo call
     private Node node = new Node();
     private LoadBalancer loadbalancer = new LoadBalancer();
+    private Signing signing = new Signing();
+    private Upload upload = new Upload();
+    private Compression compression = new Compression();
 
     @Data
     public static class Node {
@@ -18,6 +25,35 @@ public class StorageConfig {
         private Long capacity = 10737418240L; // 10GB
         private String host = "localhost";
         private Integer port = 8081;
+        private String tier = "SSD"; // Device class advertised at registration: NVME, SSD or HDD
+        private Long readThroughput; // Sustained read throughput in bytes per second, if known
+        private Long writeThroughput; // Sustained write throughput in bytes per second, if known
+    }
+
+    @Data
+    public static class Signing {
+        private String secret; // Shared with the load balancer
+        private boolean required = false; // Reject unsigned uploads and downloads
+    }
+
+    @Data
+    public static class Upload {
+        private Long defaultPartSize = 8388608L; // 8MB
+        private Long maxPartSize = 134217728L; // 128MB
+        private Integer maxParts = 10000;
+        private Long sessionTimeout = 86400000L; // Idle time before an unfinished upload is discarded (ms)
+    }
+
+    @Data
+    public static class Compression {
+        private boolean enabled = true;
+        private String storeEncoding = "gzip"; // gzip, zstd, or identity to store files as uploaded
+        private Long minSize = 1024L; // Smaller files are never compressed
+        private Long maxSize = 8388608L; // Larger files are stored as uploaded so ranges stay seekable
+        private Double minSavings = 0.1; // Share of the size a compressed copy must save to be kept
+        private Integer gzipLevel = 6;
+        private Integer zstdLevel = 3;
+        private List<String> skipTypes = new ArrayList<>(); // Already-compressed content types or prefixes
     }
 
     @Data
@@ -1,14 +1,27 @@
 package com.storagenode.config;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
-public class WebConfig {
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+    private final SignedUrlInterceptor signedUrlInterceptor;
 
     @Bean
     public RestTemplate restTemplate() {
         return new RestTemplate();
     }
-}
\ No newline at end of file
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Uploads, downloads and deletes; existence and metadata lookups stay open to the load balancer
+        registry.addInterceptor(signedUrlInterceptor)
+                .addPathPatterns("/api/v1/files/*", "/api/v1/files/upload/batch", "/api/v1/files/delete/batch",
+                        "/api/v1/files/uploads/**");
+    }
+}
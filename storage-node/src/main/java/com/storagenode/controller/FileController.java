@@ -1,18 +1,29 @@
 package com.storagenode.controller;
 
+import com.storagenode.config.SignedUrlInterceptor;
 import com.storagenode.model.FileMetadata;
+import com.storagenode.service.CompressionService;
 import com.storagenode.service.FileStorageService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,17 +32,24 @@ import java.util.Map;
 @Slf4j
 public class FileController {
     private final FileStorageService fileStorageService;
+    private final CompressionService compressionService;
 
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> uploadFile(
             @RequestParam("file") MultipartFile file,
-            @RequestHeader("X-User-ID") Long userId) {
+            @RequestHeader(value = "X-User-ID", required = false) Long headerUserId,
+            @RequestAttribute(value = SignedUrlInterceptor.USER_ATTRIBUTE, required = false) Long signedUserId) {
+        Long userId = signedUserId != null ? signedUserId : headerUserId;
+        if (userId == null) {
+            return ResponseEntity.badRequest().build();
+        }
         try {
             FileMetadata metadata = fileStorageService.storeFile(file, userId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("fileId", metadata.getFileId());
             response.put("fileName", metadata.getOriginalFileName());
+            response.put("storedFileName", metadata.getFileName());
             response.put("fileSize", metadata.getFileSize());
             response.put("contentType", metadata.getContentType());
             response.put("timestamp", Instant.now());
@@ -48,32 +66,181 @@ public class FileController {
         }
     }
 
+    /**
+     * Stores several files sent in one multipart request, reporting the outcome of each file in
+     * request order. A failure to store one file does not affect the others.
+     */
+    @PostMapping("/upload/batch")
+    public ResponseEntity<List<Map<String, Object>>> uploadFiles(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestHeader(value = "X-User-ID", required = false) Long headerUserId,
+            @RequestAttribute(value = SignedUrlInterceptor.USER_ATTRIBUTE, required = false) Long signedUserId) {
+        Long userId = signedUserId != null ? signedUserId : headerUserId;
+        if (userId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("fileName", file.getOriginalFilename());
+            try {
+                FileMetadata metadata = fileStorageService.storeFile(file, userId);
+                result.put("fileId", metadata.getFileId());
+                result.put("storedFileName", metadata.getFileName());
+                result.put("fileSize", metadata.getFileSize());
+                result.put("contentType", metadata.getContentType());
+            } catch (Exception e) {
+                log.error("Batch upload failed for file {}", file.getOriginalFilename(), e);
+                result.put("error", e.getMessage());
+            }
+            results.add(result);
+        }
+        return ResponseEntity.ok(results);
+    }
+
     @GetMapping("/{fileId}")
-    public ResponseEntity<byte[]> downloadFile(
+    public void downloadFile(
             @PathVariable Long fileId,
-            @RequestHeader("X-User-ID") Long userId) {
+            @RequestHeader(value = "X-User-ID", required = false) Long headerUserId,
+            @RequestAttribute(value = SignedUrlInterceptor.USER_ATTRIBUTE, required = false) Long signedUserId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) {
+        // Signed URLs carry the user in the query string instead of the X-User-ID header
+        if (signedUserId == null && headerUserId == null) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
         try {
             FileMetadata metadata = fileStorageService.getFileMetadata(fileId);
             if (metadata == null) {
-                return ResponseEntity.notFound().build();
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
 
-            byte[] fileContent = fileStorageService.retrieveFile(fileId);
+            long length = metadata.getFileSize();
+            String contentType = metadata.getContentType() != null
+                    ? metadata.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(metadata.getContentType()));
-            headers.setContentDispositionFormData("attachment", metadata.getOriginalFileName());
-            headers.setContentLength(fileContent.length);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.formData()
+                    .name("attachment")
+                    .filename(metadata.getOriginalFileName())
+                    .build()
+                    .toString());
+            if (metadata.getContentEncoding() != null || compressionService.canCompress(metadata)) {
+                response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+
+            List<long[]> ranges = rangeHeader != null ? resolveRanges(rangeHeader, length) : null;
+            if (ranges == null) {
+                response.setStatus(HttpStatus.OK.value());
+                response.setContentType(contentType);
+                writeFile(metadata, acceptEncoding, response);
+                return;
+            }
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(fileContent);
+            if (ranges.isEmpty()) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            if (ranges.size() == 1) {
+                long[] range = ranges.get(0);
+                response.setContentType(contentType);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+                response.setContentLengthLong(range[1] - range[0] + 1);
+                fileStorageService.transferFile(
+                        fileId, range[0], range[1] - range[0] + 1, response.getOutputStream());
+            } else {
+                writeMultipartRanges(fileId, ranges, length, contentType, response);
+            }
         } catch (Exception e) {
             log.error("File download failed for file ID: {}", fileId, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
+    /**
+     * Writes a whole file in the best encoding the client accepts. A file stored compressed is
+     * sent as stored when the client accepts its encoding and decompressed otherwise; a file
+     * stored as uploaded is compressed on the fly if its type allows. Ranges always refer to the
+     * uncompressed content and are never compressed.
+     */
+    private void writeFile(FileMetadata metadata, String acceptEncoding, HttpServletResponse response)
+            throws IOException {
+        Long fileId = metadata.getFileId();
+        String storedEncoding = metadata.getContentEncoding();
+        if (storedEncoding != null && compressionService.accepts(acceptEncoding, storedEncoding)) {
+            long storedSize = fileStorageService.getStoredSize(fileId);
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, storedEncoding);
+            response.setContentLengthLong(storedSize);
+            fileStorageService.transferStoredFile(fileId, 0, storedSize, response.getOutputStream());
+            return;
+        }
+
+        String encoding = compressionService.canCompress(metadata)
+                ? compressionService.negotiate(acceptEncoding) : null;
+        if (encoding != null) {
+            // The compressed length is not known up front, so the response is chunked
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+            fileStorageService.transferCompressed(fileId, encoding, response.getOutputStream());
+            return;
+        }
+
+        response.setContentLengthLong(metadata.getFileSize());
+        fileStorageService.transferFile(fileId, 0, metadata.getFileSize(), response.getOutputStream());
+    }
+
+    /**
+     * Resolves a Range header against the file length into inclusive [start, end] pairs.
+     * Returns an empty list when no range is satisfiable, or null when the header is malformed
+     * and should be ignored.
+     */
+    private List<long[]> resolveRanges(String rangeHeader, long length) {
+        List<long[]> resolved = new ArrayList<>();
+        try {
+            for (HttpRange range : HttpRange.parseRanges(rangeHeader)) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                if (start < length && start <= end) {
+                    resolved.add(new long[] {start, end});
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring invalid Range header '{}': {}", rangeHeader, e.getMessage());
+            return null;
+        }
+        return resolved;
+    }
+
+    private void writeMultipartRanges(Long fileId, List<long[]> ranges, long length,
+                                      String contentType, HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        OutputStream out = response.getOutputStream();
+        for (long[] range : ranges) {
+            String partHeaders = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + "\r\n\r\n";
+            out.write(partHeaders.getBytes(StandardCharsets.US_ASCII));
+            fileStorageService.transferFile(fileId, range[0], range[1] - range[0] + 1, out);
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private String contentRange(long[] range, long length) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + length;
+    }
+
     @DeleteMapping("/{fileId}")
     public ResponseEntity<Void> deleteFile(
             @PathVariable Long fileId,
@@ -91,6 +258,36 @@ public class FileController {
         }
     }
 
+    /**
+     * Deletes several files, reporting which were deleted, which did not exist and which failed.
+     */
+    @PostMapping("/delete/batch")
+    public ResponseEntity<Map<String, Object>> deleteFiles(
+            @RequestBody List<Long> fileIds,
+            @RequestHeader("X-User-ID") Long userId) {
+        List<Long> deleted = new ArrayList<>();
+        List<Long> notFound = new ArrayList<>();
+        Map<Long, String> failed = new HashMap<>();
+        for (Long fileId : fileIds) {
+            try {
+                if (fileStorageService.deleteFile(fileId)) {
+                    deleted.add(fileId);
+                } else {
+                    notFound.add(fileId);
+                }
+            } catch (Exception e) {
+                log.error("Batch deletion failed for file ID: {}", fileId, e);
+                failed.put(fileId, e.getMessage());
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("deleted", deleted);
+        response.put("notFound", notFound);
+        response.put("failed", failed);
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/{fileId}/exists")
     public ResponseEntity<Boolean> fileExists(@PathVariable Long fileId) {
         boolean exists = fileStorageService.fileExists(fileId);
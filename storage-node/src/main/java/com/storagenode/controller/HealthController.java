@@ -1,5 +1,6 @@
 package com.storagenode.controller;
 
+import com.storagenode.service.CompressionService;
 import com.storagenode.service.FileStorageService;
 import com.storagenode.service.NodeRegistrationService;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +18,7 @@ import java.util.Map;
 public class HealthController {
     private final FileStorageService fileStorageService;
     private final NodeRegistrationService nodeRegistrationService;
+    private final CompressionService compressionService;
 
     @GetMapping
     public ResponseEntity<Map<String, Object>> health() {
@@ -28,6 +30,14 @@ public class HealthController {
         return ResponseEntity.ok(health);
     }
 
+    /**
+     * Compression ratios and CPU time for stored files and compressed or decompressed responses.
+     */
+    @GetMapping("/compression")
+    public ResponseEntity<Map<String, Object>> compression() {
+        return ResponseEntity.ok(compressionService.getStats());
+    }
+
     @GetMapping("/status")
     public ResponseEntity<String> status() {
         return ResponseEntity.ok("OK");
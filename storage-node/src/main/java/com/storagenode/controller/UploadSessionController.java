@@ -0,0 +1,182 @@
+package com.storagenode.controller;
+
+import com.storagenode.config.SignedUrlInterceptor;
+import com.storagenode.model.FileMetadata;
+import com.storagenode.model.UploadSession;
+import com.storagenode.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resumable uploads: initiate an upload, upload its parts (in parallel and retried individually if
+ * needed), query the progress, then complete or abort it.
+ */
+@RestController
+@RequestMapping("/api/v1/files/uploads")
+@RequiredArgsConstructor
+@Slf4j
+public class UploadSessionController {
+    private final UploadSessionService uploadSessionService;
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> initiateUpload(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = "X-User-ID", required = false) Long headerUserId,
+            @RequestAttribute(value = SignedUrlInterceptor.USER_ATTRIBUTE, required = false) Long signedUserId) {
+        Long userId = signedUserId != null ? signedUserId : headerUserId;
+        if (userId == null || request.get("fileSize") == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            Object partSize = request.get("partSize");
+            UploadSession session = uploadSessionService.initiate(
+                    (String) request.get("fileName"),
+                    (String) request.get("contentType"),
+                    Long.parseLong(request.get("fileSize").toString()),
+                    partSize != null ? Long.valueOf(partSize.toString()) : null,
+                    userId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(progress(session));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, "Invalid upload", e);
+        } catch (Exception e) {
+            log.error("Failed to initiate upload", e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Upload failed", e);
+        }
+    }
+
+    @PutMapping("/{uploadId}/parts/{partNumber}")
+    public ResponseEntity<Map<String, Object>> uploadPart(
+            @PathVariable String uploadId,
+            @PathVariable int partNumber,
+            @RequestHeader(value = "X-User-ID", required = false) Long headerUserId,
+            @RequestAttribute(value = SignedUrlInterceptor.USER_ATTRIBUTE, required = false) Long signedUserId,
+            HttpServletRequest request) {
+        UploadSession session = uploadSessionService.getSession(uploadId);
+        ResponseEntity<Map<String, Object>> rejection = checkAccess(session, signedUserId, headerUserId);
+        if (rejection != null) {
+            return rejection;
+        }
+        try {
+            long written = uploadSessionService.writePart(session, partNumber, request.getInputStream());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("uploadId", uploadId);
+            response.put("partNumber", partNumber);
+            response.put("size", written);
+            response.put("receivedParts", session.getReceivedParts().size());
+            response.put("partCount", session.getPartCount());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, "Invalid part", e);
+        } catch (Exception e) {
+            log.error("Failed to write part {} of upload {}", partNumber, uploadId, e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Part upload failed", e);
+        }
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getUploadProgress(
+            @PathVariable String uploadId,
+            @RequestHeader(value = "X-User-ID", required = false) Long headerUserId,
+            @RequestAttribute(value = SignedUrlInterceptor.USER_ATTRIBUTE, required = false) Long signedUserId) {
+        UploadSession session = uploadSessionService.getSession(uploadId);
+        ResponseEntity<Map<String, Object>> rejection = checkAccess(session, signedUserId, headerUserId);
+        if (rejection != null) {
+            return rejection;
+        }
+        return ResponseEntity.ok(progress(session));
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<Map<String, Object>> completeUpload(
+            @PathVariable String uploadId,
+            @RequestHeader(value = "X-User-ID", required = false) Long headerUserId,
+            @RequestAttribute(value = SignedUrlInterceptor.USER_ATTRIBUTE, required = false) Long signedUserId) {
+        UploadSession session = uploadSessionService.getSession(uploadId);
+        ResponseEntity<Map<String, Object>> rejection = checkAccess(session, signedUserId, headerUserId);
+        if (rejection != null) {
+            return rejection;
+        }
+        try {
+            FileMetadata metadata = uploadSessionService.complete(session);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("fileId", metadata.getFileId());
+            response.put("fileName", metadata.getOriginalFileName());
+            response.put("storedFileName", metadata.getFileName());
+            response.put("fileSize", metadata.getFileSize());
+            response.put("contentType", metadata.getContentType());
+            response.put("timestamp", Instant.now());
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            Map<String, Object> response = error(HttpStatus.CONFLICT, "Upload incomplete", e).getBody();
+            response.put("missingParts", uploadSessionService.getMissingParts(session));
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (Exception e) {
+            log.error("Failed to complete upload {}", uploadId, e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Upload failed", e);
+        }
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Map<String, Object>> abortUpload(
+            @PathVariable String uploadId,
+            @RequestHeader(value = "X-User-ID", required = false) Long headerUserId,
+            @RequestAttribute(value = SignedUrlInterceptor.USER_ATTRIBUTE, required = false) Long signedUserId) {
+        UploadSession session = uploadSessionService.getSession(uploadId);
+        ResponseEntity<Map<String, Object>> rejection = checkAccess(session, signedUserId, headerUserId);
+        if (rejection != null) {
+            return rejection;
+        }
+        uploadSessionService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Returns the response for a request that may not access the upload, or null if it may.
+     */
+    private ResponseEntity<Map<String, Object>> checkAccess(UploadSession session, Long signedUserId,
+                                                            Long headerUserId) {
+        Long userId = signedUserId != null ? signedUserId : headerUserId;
+        if (userId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!userId.equals(session.getUserId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return null;
+    }
+
+    private Map<String, Object> progress(UploadSession session) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadId", session.getUploadId());
+        response.put("fileName", session.getFileName());
+        response.put("fileSize", session.getFileSize());
+        response.put("partSize", session.getPartSize());
+        response.put("partCount", session.getPartCount());
+        response.put("receivedParts", session.getReceivedParts().stream().sorted().toList());
+        response.put("missingParts", uploadSessionService.getMissingParts(session));
+        response.put("receivedBytes", uploadSessionService.getReceivedBytes(session));
+        response.put("expiresAt", uploadSessionService.getExpiryTime(session));
+        return response;
+    }
+
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String error, Exception e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", error);
+        errorResponse.put("message", e.getMessage());
+        errorResponse.put("timestamp", Instant.now());
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+}
@@ -17,6 +17,9 @@ public class FileMetadata {
     private String originalFileName;
     private Long fileSize;
     private String contentType;
+    private String contentEncoding; // null when stored as uploaded
+    private Long storedSize;
+    private boolean incompressible;
     private String filePath;
     private LocalDateTime uploadTime;
     private Long userId;
@@ -13,4 +13,6 @@ public class NodeHeartbeat {
     private Long containerId;
     private String status;
     private Long usedSpace;
+    // When usedSpace was measured (epoch ms)
+    private Long timestamp;
 }
\ No newline at end of file
@@ -15,4 +15,7 @@ public class NodeRegistration {
     private String hostAddress;
     private Integer port;
     private Long capacity;
+    private String tier; // NVME, SSD or HDD
+    private Long readThroughput; // Bytes per second; null if not advertised
+    private Long writeThroughput; // Bytes per second; null if not advertised
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.storagenode.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * A resumable upload in progress. Parts are written straight into a staging file preallocated to
+ * the full file size, at the offset given by their part number.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+    private String uploadId;
+    private Long userId;
+    private String fileName;
+    private String contentType;
+    private Long fileSize;
+    private Long partSize;
+    private Integer partCount;
+    private String stagingPath;
+    private Set<Integer> receivedParts;
+    private LocalDateTime createdAt;
+    private volatile LocalDateTime lastActivity;
+
+    /**
+     * Returns the expected length of a part; only the last part may be shorter than the part size.
+     */
+    public long partLength(int partNumber) {
+        long offset = partOffset(partNumber);
+        return Math.min(partSize, fileSize - offset);
+    }
+
+    /**
+     * Returns the offset of a part in the file; part numbers start at 1.
+     */
+    public long partOffset(int partNumber) {
+        return (partNumber - 1) * partSize;
+    }
+}
@@ -0,0 +1,279 @@
+package com.storagenode.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.storagenode.config.StorageConfig;
+import com.storagenode.model.FileMetadata;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of file content with gzip and zstd. Files are compressed once when stored, so a
+ * client that accepts the stored encoding is sent the stored bytes as they are; other clients get
+ * the content decompressed. Content types that are already compressed are never compressed again.
+ *
+ * <p>Every compression and decompression is recorded with its input and output sizes and the CPU
+ * time it took.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CompressionService {
+    public static final String GZIP = "gzip";
+    public static final String ZSTD = "zstd";
+    private static final String IDENTITY = "identity";
+    private static final int BUFFER_SIZE = 65536;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final StorageConfig storageConfig;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final AtomicLong incompressibleFiles = new AtomicLong(0);
+
+    /**
+     * Returns the encoding a new file should be stored with, or null to store it as uploaded.
+     * Files larger than the configured maximum are stored as uploaded, since a range of a
+     * compressed file can only be read by decompressing everything before it.
+     */
+    public String getStoreEncoding(String contentType, long size) {
+        String encoding = normalize(storageConfig.getCompression().getStoreEncoding());
+        if (encoding == null || size > storageConfig.getCompression().getMaxSize()
+                || !isCompressible(contentType, size)) {
+            return null;
+        }
+        return encoding;
+    }
+
+    /**
+     * Returns whether a stored file may be compressed when it is sent: it is stored as uploaded,
+     * its type is not already compressed and compressing it has not been found to be pointless.
+     */
+    public boolean canCompress(FileMetadata metadata) {
+        return metadata.getContentEncoding() == null
+                && !metadata.isIncompressible()
+                && isCompressible(metadata.getContentType(), metadata.getFileSize());
+    }
+
+    /**
+     * Returns whether a compressed copy saves enough space to be kept instead of the original.
+     */
+    public boolean isWorthKeeping(long originalSize, long compressedSize) {
+        boolean keep = compressedSize <= originalSize * (1 - storageConfig.getCompression().getMinSavings());
+        if (!keep) {
+            incompressibleFiles.incrementAndGet();
+        }
+        return keep;
+    }
+
+    /**
+     * Picks the encoding to compress a response with from an Accept-Encoding header, preferring
+     * zstd over gzip. Returns null if the client accepts neither.
+     */
+    public String negotiate(String acceptEncoding) {
+        if (accepts(acceptEncoding, ZSTD)) {
+            return ZSTD;
+        }
+        return accepts(acceptEncoding, GZIP) ? GZIP : null;
+    }
+
+    /**
+     * Returns whether an Accept-Encoding header allows the given encoding. A missing header is
+     * treated as accepting only uncompressed content.
+     */
+    public boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.trim().split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean allowed = parts.length < 2 || !isZeroQuality(parts[1]);
+            if (coding.equals(encoding)) {
+                return allowed;
+            }
+            if (coding.equals("*")) {
+                wildcard = allowed;
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * Compresses a stream into the given output, recording the operation under the given name.
+     * The output is not closed.
+     *
+     * @return the number of compressed bytes written
+     */
+    public long compress(InputStream in, String encoding, OutputStream out, String operation) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(out);
+        long cpuStart = cpuTime();
+        long read;
+        try (OutputStream encoder = encoder(encoding, counter)) {
+            read = in.transferTo(encoder);
+        }
+        record(operation, encoding, read, counter.count, cpuTime() - cpuStart);
+        return counter.count;
+    }
+
+    /**
+     * Wraps a stream of stored content in a decoder for the encoding it was stored with.
+     */
+    public InputStream decoder(String encoding, InputStream in) throws IOException {
+        return switch (encoding) {
+            case GZIP -> new GZIPInputStream(in, BUFFER_SIZE);
+            case ZSTD -> new ZstdInputStream(in);
+            default -> throw new IllegalArgumentException("Unsupported content encoding: " + encoding);
+        };
+    }
+
+    /**
+     * Records a decompression, e.g. of a stored file for a client that does not accept its
+     * encoding.
+     */
+    public void recordDecompression(String encoding, long compressedBytes, long bytes, long cpuNanos) {
+        record("decompress", encoding, compressedBytes, bytes, cpuNanos);
+    }
+
+    /**
+     * Returns the CPU time used by the current thread so far, or 0 if it cannot be measured.
+     */
+    public long cpuTime() {
+        long cpuTime = THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+        return Math.max(cpuTime, 0);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> byOperation = new TreeMap<>();
+        operations.forEach((name, operation) -> byOperation.put(name, operation.toMap()));
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", storageConfig.getCompression().isEnabled());
+        stats.put("storeEncoding", storageConfig.getCompression().getStoreEncoding());
+        stats.put("incompressibleFiles", incompressibleFiles.get());
+        stats.put("operations", byOperation);
+        return stats;
+    }
+
+    private boolean isCompressible(String contentType, Long size) {
+        StorageConfig.Compression settings = storageConfig.getCompression();
+        if (!settings.isEnabled() || size == null || size < settings.getMinSize()) {
+            return false;
+        }
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return settings.getSkipTypes().stream().noneMatch(type::startsWith);
+    }
+
+    private OutputStream encoder(String encoding, OutputStream out) throws IOException {
+        StorageConfig.Compression settings = storageConfig.getCompression();
+        return switch (encoding) {
+            case GZIP -> new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(settings.getGzipLevel());
+                }
+            };
+            case ZSTD -> new ZstdOutputStream(out, settings.getZstdLevel());
+            default -> throw new IllegalArgumentException("Unsupported content encoding: " + encoding);
+        };
+    }
+
+    private void record(String operation, String encoding, long inputBytes, long outputBytes, long cpuNanos) {
+        operations.computeIfAbsent(operation + "." + encoding, key -> new Operation())
+                .add(inputBytes, outputBytes, cpuNanos);
+        log.debug("{} {}: {} -> {} bytes in {}us CPU", operation, encoding, inputBytes, outputBytes, cpuNanos / 1000);
+    }
+
+    private static String normalize(String encoding) {
+        if (encoding == null || encoding.isBlank() || encoding.equalsIgnoreCase(IDENTITY)) {
+            return null;
+        }
+        String normalized = encoding.trim().toLowerCase(Locale.ROOT);
+        if (!normalized.equals(GZIP) && !normalized.equals(ZSTD)) {
+            throw new IllegalArgumentException("Unsupported content encoding: " + encoding);
+        }
+        return normalized;
+    }
+
+    private static boolean isZeroQuality(String parameter) {
+        String[] pair = parameter.trim().split("=");
+        if (pair.length != 2 || !pair[0].trim().equalsIgnoreCase("q")) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(pair[1].trim()) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /** Running totals for one kind of operation with one encoding. */
+    private static final class Operation {
+        private final AtomicLong count = new AtomicLong(0);
+        private final AtomicLong inputBytes = new AtomicLong(0);
+        private final AtomicLong outputBytes = new AtomicLong(0);
+        private final AtomicLong cpuNanos = new AtomicLong(0);
+
+        void add(long input, long output, long cpu) {
+            count.incrementAndGet();
+            inputBytes.addAndGet(input);
+            outputBytes.addAndGet(output);
+            cpuNanos.addAndGet(cpu);
+        }
+
+        Map<String, Object> toMap() {
+            long input = inputBytes.get();
+            long output = outputBytes.get();
+            Map<String, Object> map = new HashMap<>();
+            map.put("count", count.get());
+            map.put("inputBytes", input);
+            map.put("outputBytes", output);
+            map.put("ratio", input > 0 ? (double) output / input : 0.0);
+            map.put("cpuMillis", cpuNanos.get() / 1_000_000);
+            return map;
+        }
+    }
+
+    /** Counts the bytes written through it; closing it leaves the underlying stream open. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
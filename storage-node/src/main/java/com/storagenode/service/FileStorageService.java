@@ -8,10 +8,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.UUID;
@@ -22,6 +28,7 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class FileStorageService {
     private final StorageConfig storageConfig;
+    private final CompressionService compressionService;
     private final Map<Long, FileMetadata> fileRegistry = new ConcurrentHashMap<>();
     private Long fileIdCounter = 1L;
 
@@ -38,8 +45,27 @@ public class FileStorageService {
         String storedFileName = fileId + "_" + UUID.randomUUID().toString() + fileExtension;
         Path filePath = storageDir.resolve(storedFileName);
 
-        // Store the file
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        // Store the file, compressed if its type allows and compressing saves enough space
+        String contentEncoding = compressionService.getStoreEncoding(file.getContentType(), file.getSize());
+        boolean incompressible = false;
+        long storedSize = file.getSize();
+        if (contentEncoding != null) {
+            long compressedSize;
+            try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(filePath)) {
+                compressedSize = compressionService.compress(in, contentEncoding, out, "store");
+            }
+            if (compressionService.isWorthKeeping(file.getSize(), compressedSize)) {
+                storedSize = compressedSize;
+            } else {
+                contentEncoding = null;
+                incompressible = true;
+            }
+        }
+        if (contentEncoding == null) {
+            // Moves the spooled upload into place where possible instead of copying it again
+            Files.deleteIfExists(filePath);
+            file.transferTo(filePath.toAbsolutePath().toFile());
+        }
 
         // Create metadata
         FileMetadata metadata = FileMetadata.builder()
@@ -48,6 +74,9 @@ public class FileStorageService {
                 .originalFileName(file.getOriginalFilename())
                 .fileSize(file.getSize())
                 .contentType(file.getContentType())
+                .contentEncoding(contentEncoding)
+                .storedSize(storedSize)
+                .incompressible(incompressible)
                 .filePath(filePath.toString())
                 .uploadTime(LocalDateTime.now())
                 .userId(userId)
@@ -56,11 +85,127 @@ public class FileStorageService {
         // Store in registry
         fileRegistry.put(fileId, metadata);
 
-        log.info("Stored file {} with ID {} for user {}", file.getOriginalFilename(), fileId, userId);
+        log.info("Stored file {} with ID {} for user {} ({} bytes, {} on disk)",
+                file.getOriginalFilename(), fileId, userId, file.getSize(), storedSize);
         return metadata;
     }
 
-    public byte[] retrieveFile(Long fileId) throws IOException {
+    /**
+     * Registers a file that was assembled on disk by a resumable upload. The file is renamed
+     * into the storage directory rather than copied, so it must be on the same file system.
+     */
+    public FileMetadata storeAssembledFile(Path assembledFile, String originalFileName,
+                                           String contentType, Long userId) throws IOException {
+        Path storageDir = Paths.get(storageConfig.getBasePath());
+        Long fileId = generateFileId();
+        String storedFileName = fileId + "_" + UUID.randomUUID().toString() + getFileExtension(originalFileName);
+        Path filePath = storageDir.resolve(storedFileName);
+
+        Files.move(assembledFile, filePath, StandardCopyOption.ATOMIC_MOVE);
+
+        // Stored as uploaded; responses may still be compressed on the fly
+        long size = Files.size(filePath);
+        FileMetadata metadata = FileMetadata.builder()
+                .fileId(fileId)
+                .fileName(storedFileName)
+                .originalFileName(originalFileName)
+                .fileSize(size)
+                .contentType(contentType)
+                .storedSize(size)
+                .filePath(filePath.toString())
+                .uploadTime(LocalDateTime.now())
+                .userId(userId)
+                .build();
+        fileRegistry.put(fileId, metadata);
+
+        log.info("Stored assembled file {} with ID {} for user {}", originalFileName, fileId, userId);
+        return metadata;
+    }
+
+    /**
+     * Returns the number of bytes the file occupies on disk.
+     */
+    public long getStoredSize(Long fileId) throws IOException {
+        return Files.size(resolveFilePath(fileId));
+    }
+
+    /**
+     * Streams a region of a file's content to the given output stream. Files stored uncompressed
+     * are sent with positional {@link FileChannel#transferTo} calls of at most one chunk each, so
+     * memory use does not depend on the file size; compressed files are decompressed from the
+     * start, skipping the bytes before the region, which is why only files up to
+     * {@code compression.max-size} are stored compressed.
+     *
+     * @return the number of bytes written
+     */
+    public long transferFile(Long fileId, long position, long count, OutputStream out) throws IOException {
+        FileMetadata metadata = fileRegistry.get(fileId);
+        if (metadata != null && metadata.getContentEncoding() != null) {
+            return transferDecompressed(metadata, position, count, out);
+        }
+        return transferStoredFile(fileId, position, count, out);
+    }
+
+    /**
+     * Streams a region of a file as it is stored on disk, compressed or not.
+     *
+     * @return the number of bytes written
+     */
+    public long transferStoredFile(Long fileId, long position, long count, OutputStream out) throws IOException {
+        Path filePath = resolveFilePath(fileId);
+        long chunkSize = storageConfig.getTransferChunkSize();
+        // The target channel wraps the caller's stream and must not be closed here
+        WritableByteChannel target = Channels.newChannel(out);
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long transferred = 0;
+            while (transferred < count) {
+                long written = channel.transferTo(
+                        position + transferred, Math.min(chunkSize, count - transferred), target);
+                if (written <= 0) {
+                    break;
+                }
+                transferred += written;
+            }
+            return transferred;
+        }
+    }
+
+    /**
+     * Compresses a file stored uncompressed into the given output stream as it is sent.
+     *
+     * @return the number of compressed bytes written
+     */
+    public long transferCompressed(Long fileId, String encoding, OutputStream out) throws IOException {
+        try (InputStream in = Files.newInputStream(resolveFilePath(fileId))) {
+            return compressionService.compress(in, encoding, out, "response");
+        }
+    }
+
+    private long transferDecompressed(FileMetadata metadata, long position, long count, OutputStream out)
+            throws IOException {
+        String encoding = metadata.getContentEncoding();
+        long cpuStart = compressionService.cpuTime();
+        try (FileChannel channel = FileChannel.open(resolveFilePath(metadata.getFileId()), StandardOpenOption.READ);
+             InputStream in = compressionService.decoder(encoding, Channels.newInputStream(channel))) {
+            in.skipNBytes(position);
+            byte[] buffer = new byte[(int) Math.min(storageConfig.getTransferChunkSize(), 65536)];
+            long transferred = 0;
+            while (transferred < count) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, count - transferred));
+                if (read < 0) {
+                    break;
+                }
+                out.write(buffer, 0, read);
+                transferred += read;
+            }
+            compressionService.recordDecompression(encoding, channel.position(), position + transferred,
+                    compressionService.cpuTime() - cpuStart);
+            return transferred;
+        }
+    }
+
+    private Path resolveFilePath(Long fileId) {
         FileMetadata metadata = fileRegistry.get(fileId);
         if (metadata == null) {
             throw new IllegalArgumentException("File not found: " + fileId);
@@ -70,8 +215,7 @@ public class FileStorageService {
         if (!Files.exists(filePath)) {
             throw new IllegalArgumentException("File does not exist on disk: " + fileId);
         }
-
-        return Files.readAllBytes(filePath);
+        return filePath;
     }
 
     public boolean deleteFile(Long fileId) {
@@ -102,7 +246,8 @@ public class FileStorageService {
 
     public long getUsedSpace() {
         return fileRegistry.values().stream()
-                .mapToLong(FileMetadata::getFileSize)
+                .mapToLong(metadata -> metadata.getStoredSize() != null
+                        ? metadata.getStoredSize() : metadata.getFileSize())
                 .sum();
     }
 
@@ -31,6 +31,9 @@ public class NodeRegistrationService {
                     .hostAddress(storageConfig.getNode().getHost())
                     .port(storageConfig.getNode().getPort())
                     .capacity(storageConfig.getNode().getCapacity())
+                    .tier(storageConfig.getNode().getTier())
+                    .readThroughput(storageConfig.getNode().getReadThroughput())
+                    .writeThroughput(storageConfig.getNode().getWriteThroughput())
                     .build();
 
             String registrationUrl = storageConfig.getLoadbalancer().getRegistrationUrl();
@@ -58,10 +61,13 @@ public class NodeRegistrationService {
         }
 
         try {
+            // Taken before measuring, so every file counted was stored before this time
+            long measuredAt = System.currentTimeMillis();
             NodeHeartbeat heartbeat = NodeHeartbeat.builder()
                     .containerId(nodeId)
                     .status("ACTIVE")
                     .usedSpace(fileStorageService.getUsedSpace())
+                    .timestamp(measuredAt)
                     .build();
 
             String heartbeatUrl = storageConfig.getLoadbalancer().getHeartbeatUrl();
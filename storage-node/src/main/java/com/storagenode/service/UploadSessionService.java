@@ -0,0 +1,248 @@
+package com.storagenode.service;
+
+import com.storagenode.config.StorageConfig;
+import com.storagenode.model.FileMetadata;
+import com.storagenode.model.UploadSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Service for resumable uploads. An upload is initiated with the file size, its parts are then
+ * uploaded in any order (and retried individually) and written in place into a preallocated
+ * staging file, and completing the upload renames the staging file into the storage directory.
+ * Parts are never copied after they have been received.
+ *
+ * <p>Uploads with no activity for the configured session timeout are discarded together with
+ * their staging files.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UploadSessionService {
+    private static final String STAGING_DIR = ".uploads";
+    private static final String STAGING_SUFFIX = ".part";
+
+    private final StorageConfig storageConfig;
+    private final FileStorageService fileStorageService;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public UploadSession initiate(String fileName, String contentType, long fileSize, Long partSize,
+                                  Long userId) throws IOException {
+        if (fileSize <= 0) {
+            throw new IllegalArgumentException("File size must be positive");
+        }
+
+        StorageConfig.Upload settings = storageConfig.getUpload();
+        long size = partSize != null ? partSize : settings.getDefaultPartSize();
+        if (size <= 0) {
+            throw new IllegalArgumentException("Part size must be positive");
+        }
+        // Grow the parts rather than exceed the part limit
+        size = Math.max(size, ceilDiv(fileSize, settings.getMaxParts()));
+        if (size > settings.getMaxPartSize()) {
+            throw new IllegalArgumentException("Part size exceeds the maximum of " + settings.getMaxPartSize());
+        }
+
+        String uploadId = UUID.randomUUID().toString();
+        Path stagingDir = stagingDir();
+        Files.createDirectories(stagingDir);
+        Path stagingFile = stagingDir.resolve(uploadId + STAGING_SUFFIX);
+
+        // Preallocate the full length so parts can be written at their offsets in any order
+        try (RandomAccessFile file = new RandomAccessFile(stagingFile.toFile(), "rw")) {
+            file.setLength(fileSize);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = UploadSession.builder()
+                .uploadId(uploadId)
+                .userId(userId)
+                .fileName(fileName)
+                .contentType(contentType)
+                .fileSize(fileSize)
+                .partSize(size)
+                .partCount((int) ceilDiv(fileSize, size))
+                .stagingPath(stagingFile.toString())
+                .receivedParts(ConcurrentHashMap.newKeySet())
+                .createdAt(now)
+                .lastActivity(now)
+                .build();
+        sessions.put(uploadId, session);
+
+        log.info("Initiated upload {} of {} ({} bytes in {} parts) for user {}",
+                uploadId, fileName, fileSize, session.getPartCount(), userId);
+        return session;
+    }
+
+    public UploadSession getSession(String uploadId) {
+        return sessions.get(uploadId);
+    }
+
+    /**
+     * Writes one part at its offset in the staging file. A part may be uploaded again, e.g. after
+     * a failed attempt; it only counts as received once all of its bytes have been written.
+     *
+     * @return the number of bytes written
+     */
+    public long writePart(UploadSession session, int partNumber, InputStream body) throws IOException {
+        if (partNumber < 1 || partNumber > session.getPartCount()) {
+            throw new IllegalArgumentException(
+                    "Part number must be between 1 and " + session.getPartCount());
+        }
+
+        long offset = session.partOffset(partNumber);
+        long length = session.partLength(partNumber);
+        long chunkSize = storageConfig.getTransferChunkSize();
+        session.getReceivedParts().remove(partNumber);
+        session.setLastActivity(LocalDateTime.now());
+
+        // The source channel wraps the request stream and must not be closed here
+        ReadableByteChannel source = Channels.newChannel(body);
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(session.getStagingPath()), StandardOpenOption.WRITE)) {
+            while (written < length) {
+                long transferred = channel.transferFrom(
+                        source, offset + written, Math.min(chunkSize, length - written));
+                if (transferred <= 0) {
+                    break;
+                }
+                written += transferred;
+            }
+        }
+        if (written != length || body.read() != -1) {
+            throw new IllegalArgumentException("Part " + partNumber + " must be " + length + " bytes");
+        }
+
+        session.getReceivedParts().add(partNumber);
+        session.setLastActivity(LocalDateTime.now());
+        log.debug("Received part {}/{} of upload {}", partNumber, session.getPartCount(), session.getUploadId());
+        return written;
+    }
+
+    public List<Integer> getMissingParts(UploadSession session) {
+        return IntStream.rangeClosed(1, session.getPartCount())
+                .filter(part -> !session.getReceivedParts().contains(part))
+                .boxed()
+                .toList();
+    }
+
+    public long getReceivedBytes(UploadSession session) {
+        return session.getReceivedParts().stream()
+                .mapToLong(session::partLength)
+                .sum();
+    }
+
+    public LocalDateTime getExpiryTime(UploadSession session) {
+        return session.getLastActivity().plus(Duration.ofMillis(storageConfig.getUpload().getSessionTimeout()));
+    }
+
+    /**
+     * Completes an upload once every part has been received, moving the staging file into the
+     * storage directory.
+     *
+     * @throws IllegalStateException if parts are missing or the upload has already finished
+     */
+    public FileMetadata complete(UploadSession session) throws IOException {
+        List<Integer> missingParts = getMissingParts(session);
+        if (!missingParts.isEmpty()) {
+            throw new IllegalStateException(missingParts.size() + " parts have not been uploaded");
+        }
+        if (!sessions.remove(session.getUploadId(), session)) {
+            throw new IllegalStateException("Upload has already finished");
+        }
+
+        FileMetadata metadata = fileStorageService.storeAssembledFile(
+                Paths.get(session.getStagingPath()), session.getFileName(), session.getContentType(),
+                session.getUserId());
+        log.info("Completed upload {} as file {}", session.getUploadId(), metadata.getFileId());
+        return metadata;
+    }
+
+    public boolean abort(String uploadId) {
+        UploadSession session = sessions.remove(uploadId);
+        if (session == null) {
+            return false;
+        }
+        deleteStagingFile(Paths.get(session.getStagingPath()));
+        log.info("Aborted upload {}", uploadId);
+        return true;
+    }
+
+    public int getActiveUploadCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Discards uploads that have been idle longer than the session timeout, and staging files
+     * left behind without a session, e.g. by a restart.
+     */
+    @Scheduled(fixedDelayString = "${storage.upload.cleanup-interval:600000}")
+    public void removeExpiredSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        sessions.values().removeIf(session -> {
+            if (getExpiryTime(session).isAfter(now)) {
+                return false;
+            }
+            deleteStagingFile(Paths.get(session.getStagingPath()));
+            log.info("Discarded abandoned upload {} of {}", session.getUploadId(), session.getFileName());
+            return true;
+        });
+
+        Path stagingDir = stagingDir();
+        if (!Files.isDirectory(stagingDir)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minusMillis(storageConfig.getUpload().getSessionTimeout());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stagingDir, "*" + STAGING_SUFFIX)) {
+            for (Path file : files) {
+                String uploadId = file.getFileName().toString().replace(STAGING_SUFFIX, "");
+                if (!sessions.containsKey(uploadId)
+                        && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    deleteStagingFile(file);
+                    log.info("Deleted orphaned staging file {}", file);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to clean up staging directory {}", stagingDir, e);
+        }
+    }
+
+    private void deleteStagingFile(Path stagingFile) {
+        try {
+            Files.deleteIfExists(stagingFile);
+        } catch (IOException e) {
+            log.error("Failed to delete staging file {}", stagingFile, e);
+        }
+    }
+
+    private Path stagingDir() {
+        // Inside the storage directory so completing an upload is a rename, not a copy
+        return Paths.get(storageConfig.getBasePath()).resolve(STAGING_DIR);
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}